@@ -1,15 +1,34 @@
 package CharacterStuff;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /*
  * The Character class represents a players character in a Massive Multiplayer Online Game (MMOG).
  * It includes name, height, weight, health, and moral alignment.
+ * Health and moral alignment are packed into one int and updated with compare-and-set, so
+ * any number of threads can heal, injure or change a character without locking or losing updates.
  **/
 public class Character implements CharacterInterface{
     private String name;
     private int height;
     private int weight;
-    private int health;
-    private double moralAlign;
+    // health and moral alignment, packed by CharacterState
+    private volatile int state;
+    // told about every change to health and alignment while the character is in a database, otherwise null
+    volatile CharacterListener listener;
+    // times heals, injuries and changes, set by the store, null for none
+    volatile DatabaseMetrics metrics;
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Character.class, "state", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     /**
     * construcvtor for creating a new instatance of Character
@@ -20,14 +39,27 @@ public class Character implements CharacterInterface{
     * @throws IllegalArgumentException if moral alignment is not in range
     * */
     public Character(String name, int height, int weight, double moralAlign) {
+        this(name, height, weight, CharacterState.MAX_HEALTH, moralAlign);
+    }
+
+    /**
+     * constructor for restoring a saved character with its health
+     * @param name name of character
+     * @param height height of character
+     * @param weight weight of character
+     * @param health health of character from 0 to 100
+     * @param moralAlign moral alignment of character from 0.0 to 1.0
+     * @throws IllegalArgumentException if health or moral alignment is not in range
+     */
+    Character(String name, int height, int weight, int health, double moralAlign) {
         if (moralAlign < 0.0 || moralAlign > 1.0) {
             throw new IllegalArgumentException("Moral alignment must be greater than 0.0 and less than 1.0");
         }
+        CharacterState.checkHealth(health);
         setName(name);
         setHeight(height);
         setWeight(weight);
-        this.moralAlign = Math.round(moralAlign * 10) / 10.0;
-        health = 100;
+        state = CharacterState.pack(health, CharacterState.toTenths(moralAlign));
     }
 
     /**
@@ -63,7 +95,7 @@ public class Character implements CharacterInterface{
      * @return health of player
      */
     public int getHealth() {
-        return health;
+        return CharacterState.health(state);
     }
 
     /**
@@ -72,7 +104,7 @@ public class Character implements CharacterInterface{
      * @return moral alignment
      */
     public double getMoralAlign() {
-        return moralAlign;
+        return CharacterState.moralAlign(state);
     }
 
     /**
@@ -121,10 +153,19 @@ public class Character implements CharacterInterface{
      * @throws IllegalArgumentException "Must be a positive number"
      */
     public void heal(int healAmount) {
-        if (healAmount <= 0) {
-            throw new IllegalArgumentException("Must be a positive number");
+        CharacterState.checkAmount(healAmount);
+        DatabaseMetrics timing = metrics;
+        long start = (timing == null) ? 0 : System.nanoTime();
+        int current;
+        int updated;
+        do {
+            current = state;
+            updated = CharacterState.heal(current, healAmount);
+        } while (!STATE.weakCompareAndSet(this, current, updated));
+        CharacterState.report(listener, name, updated);
+        if (timing != null) {
+            timing.recordSince(DatabaseOperation.HEAL, start);
         }
-        health = Math.min(health + healAmount, 100);
     }
 
     /**
@@ -135,10 +176,56 @@ public class Character implements CharacterInterface{
      * @throws IllegalArgumentException "Must be a positive number"
      */
     public void injure(int injureAmount) {
-        if (injureAmount <= 0) {
-            throw new IllegalArgumentException("Must be a positive number");
+        CharacterState.checkAmount(injureAmount);
+        DatabaseMetrics timing = metrics;
+        long start = (timing == null) ? 0 : System.nanoTime();
+        int current;
+        int updated;
+        do {
+            current = state;
+            updated = CharacterState.injure(current, injureAmount);
+        } while (!STATE.weakCompareAndSet(this, current, updated));
+        CharacterState.report(listener, name, updated);
+        if (timing != null) {
+            timing.recordSince(DatabaseOperation.INJURE, start);
         }
-        health = Math.max(health - injureAmount, 0);
+    }
+
+    /**
+     * Returns the character's health, alignment and version, packed by CharacterState
+     *
+     * @return packed state
+     */
+    int getState() {
+        return state;
+    }
+
+    /**
+     * Replaces the character's state with a saved one, version included
+     *
+     * @param saved packed state to restore
+     */
+    void restoreState(int saved) {
+        state = saved;
+        CharacterState.report(listener, name, saved);
+    }
+
+    /**
+     * Heals and injures the character by a run of amounts in one update, with the same capping
+     * as heal and injure
+     *
+     * @param amounts amounts, positive to heal and negative to injure
+     * @param from index of the first amount
+     * @param to index after the last amount
+     */
+    void applyHealthChanges(int[] amounts, int from, int to) {
+        int current;
+        int updated;
+        do {
+            current = state;
+            updated = CharacterState.applyHealthChanges(current, amounts, from, to);
+        } while (!STATE.weakCompareAndSet(this, current, updated));
+        CharacterState.report(listener, name, updated);
     }
 
     /**
@@ -148,11 +235,18 @@ public class Character implements CharacterInterface{
      * @throws IllegalArgumentException if the resulting moral alignment is not within the valid range.
      */
     public void change(double moralAlign) {
-        if (this.moralAlign + moralAlign < 0.0 || this.moralAlign + moralAlign > 1.0) {
-            throw new IllegalArgumentException("Moral alignment must not exceed 1.0 or be below 0.0");
+        DatabaseMetrics timing = metrics;
+        long start = (timing == null) ? 0 : System.nanoTime();
+        int current;
+        int updated;
+        do {
+            current = state;
+            updated = CharacterState.change(current, moralAlign);
+        } while (!STATE.weakCompareAndSet(this, current, updated));
+        CharacterState.report(listener, name, updated);
+        if (timing != null) {
+            timing.recordSince(DatabaseOperation.CHANGE, start);
         }
-        this.moralAlign += moralAlign;
-        this.moralAlign = Math.round(this.moralAlign * 10) / 10.0;
     }
 
     /**
@@ -162,7 +256,7 @@ public class Character implements CharacterInterface{
      */
     @Override
     public String toString() {
-        return "Name: " + name + ", Height: " + height + ", Weight: " + weight + ", Health: " +
-                health + " Moral Alignment: " + moralAlign;
+        // state is read once, so health and alignment come from the same moment
+        return CharacterState.format(name, height, weight, state);
     }
 }
@@ -0,0 +1,445 @@
+package CharacterStuff;
+
+import Dictionary.CollisionResolution;
+import Dictionary.HashMixing;
+import Dictionary.ObjectIntHashedDictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The CharacterAttributeIndex finds the characters of a CharacterDatabase by health or moral alignment.
+ * Health only takes the values 0 to 100 and moral alignment the values 0.0 to 1.0 in steps of 0.1, so each
+ * value gets a bucket holding every character with that value. A range query visits only the buckets in the
+ * range, and a count only reads their sizes, so neither looks at characters outside the range.
+ * The index listens to the database and moves a character between buckets on every heal, injure, change and
+ * removal, each in constant time: a character is removed from a bucket by moving the bucket's last character
+ * into its place.
+ * Heals, injures and changes are applied in parallel: each takes the index's read lock, one of a set of
+ * striped locks for the character and the locks of the two buckets it moves between. Adding and removing
+ * characters take the write lock, and queries lock one bucket at a time, so a query running alongside
+ * changes may see a character that moved during the query in both buckets or in neither.
+ */
+public class CharacterAttributeIndex implements CharacterListener {
+    private static final int INITIAL_CAPACITY = 16;
+    // version of a character whose next reported change is always applied
+    private static final int UNKNOWN_VERSION = -1;
+    // number of locks the characters' ids are spread over, a power of two
+    private static final int ID_STRIPES = 64;
+
+    // held for reading by changes and queries, and for writing while ids are handed out or taken back
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // lock of each stripe of ids, serializing the changes to one character
+    private final Object[] idLocks = new Object[ID_STRIPES];
+
+    // id of every indexed character
+    private final ObjectIntHashedDictionary<String> ids;
+    // name and last applied version of each id, with a stack of unused ids
+    private String[] names;
+    private int[] versions;
+    private int[] freeIds;
+    private int freeCount;
+    private int idCount;
+    private final Buckets healthBuckets;
+    private final Buckets alignmentBuckets;
+
+    /**
+     * Creates an index of the characters in a database and keeps it up to date by listening to the
+     * database. The database must not be changed while the index is created.
+     *
+     * @param database database to index
+     * @throws IllegalArgumentException if the database is null
+     */
+    public CharacterAttributeIndex(CharacterDatabase database) {
+        if (database == null) {
+            throw new IllegalArgumentException("Database must not be null");
+        }
+        CharacterStore store = database.characterStore;
+        int capacity = Math.max(store.getSlotCount(), INITIAL_CAPACITY);
+        // seeded like the database's own index, so crafted names can not make every lookup collide
+        ids = new ObjectIntHashedDictionary<>(capacity, CollisionResolution.QUADRATIC_PROBING,
+                HashMixing.SEEDED_FINALIZER, false);
+        names = new String[capacity];
+        versions = new int[capacity];
+        freeIds = new int[capacity];
+        //Runtime: O(1), a fixed number of stripes
+        for (int stripe = 0; stripe < ID_STRIPES; stripe++) {
+            idLocks[stripe] = new Object();
+        }
+        healthBuckets = new Buckets(CharacterState.MAX_HEALTH + 1, capacity);
+        alignmentBuckets = new Buckets(CharacterState.MAX_ALIGNMENT_TENTHS + 1, capacity);
+
+        //Runtime: O(n), where n is the number of slots in the store
+        for (int slot = 0; slot < store.getSlotCount(); slot++) {
+            CharacterInterface character = store.get(slot);
+            if (character != null) {
+                insert(character.getName(), character.getHealth(), CharacterState.toTenths(character.getMoralAlign()),
+                        UNKNOWN_VERSION);
+            }
+        }
+        database.addCharacterListener(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void characterAdded(String name, int height, int weight, int health, double moralAlign) {
+        lock.writeLock().lock();
+        try {
+            int id = ids.getValue(name);
+            if (id == ObjectIntHashedDictionary.NO_VALUE) {
+                insert(name, health, CharacterState.toTenths(moralAlign), 0);
+            } else {
+                // a character replacing one with the same name starts counting versions again
+                update(id, health, CharacterState.toTenths(moralAlign));
+                versions[id] = 0;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void characterRemoved(String name) {
+        lock.writeLock().lock();
+        try {
+            int id = ids.remove(name);
+            if (id != ObjectIntHashedDictionary.NO_VALUE) {
+                healthBuckets.delete(id);
+                alignmentBuckets.delete(id);
+                names[id] = null;
+                freeIds[freeCount++] = id;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void characterChanged(String name, int health, double moralAlign, int version) {
+        lock.readLock().lock();
+        try {
+            int id = ids.getValue(name);
+            if (id == ObjectIntHashedDictionary.NO_VALUE) {
+                return;
+            }
+            synchronized (idLocks[id & (ID_STRIPES - 1)]) {
+                // a report overtaken by a later one is dropped
+                if (versions[id] == UNKNOWN_VERSION || CharacterState.isNewer(version, versions[id])) {
+                    update(id, health, CharacterState.toTenths(moralAlign));
+                    versions[id] = version;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of indexed characters
+     *
+     * @return number of characters
+     */
+    public int getSize() {
+        lock.readLock().lock();
+        try {
+            return ids.getSize();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of characters with a health in the given range. Bounds outside 0 to 100 are
+     * clamped.
+     *
+     * @param minHealth lowest health, inclusive
+     * @param maxHealth highest health, inclusive
+     * @return number of characters in the range
+     */
+    public int countByHealth(int minHealth, int maxHealth) {
+        lock.readLock().lock();
+        try {
+            return healthBuckets.count(minHealth, maxHealth);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the names of the characters with a health in the given range, from the lowest health
+     * to the highest. Bounds outside 0 to 100 are clamped.
+     *
+     * @param minHealth lowest health, inclusive
+     * @param maxHealth highest health, inclusive
+     * @return names of the characters in the range
+     */
+    public List<String> findByHealth(int minHealth, int maxHealth) {
+        lock.readLock().lock();
+        try {
+            return healthBuckets.collect(minHealth, maxHealth, names);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of characters with a moral alignment in the given range. Bounds outside 0.0
+     * to 1.0 are clamped.
+     *
+     * @param minMoralAlign lowest moral alignment, inclusive
+     * @param maxMoralAlign highest moral alignment, inclusive
+     * @return number of characters in the range
+     */
+    public int countByMoralAlign(double minMoralAlign, double maxMoralAlign) {
+        lock.readLock().lock();
+        try {
+            return alignmentBuckets.count(lowestTenths(minMoralAlign), highestTenths(maxMoralAlign));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the names of the characters with a moral alignment in the given range, from the lowest
+     * alignment to the highest. Bounds outside 0.0 to 1.0 are clamped.
+     *
+     * @param minMoralAlign lowest moral alignment, inclusive
+     * @param maxMoralAlign highest moral alignment, inclusive
+     * @return names of the characters in the range
+     */
+    public List<String> findByMoralAlign(double minMoralAlign, double maxMoralAlign) {
+        lock.readLock().lock();
+        try {
+            return alignmentBuckets.collect(lowestTenths(minMoralAlign), highestTenths(maxMoralAlign), names);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a character to the index under a new id. The write lock must be held, unless the index is
+     * still being built.
+     *
+     * @param name name of character
+     * @param health health of character
+     * @param alignmentTenths moral alignment of character, in tenths
+     * @param version version of the character's state
+     */
+    private void insert(String name, int health, int alignmentTenths, int version) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            if (idCount == names.length) {
+                int capacity = names.length * 2;
+                names = Arrays.copyOf(names, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+                freeIds = Arrays.copyOf(freeIds, capacity);
+                healthBuckets.grow(capacity);
+                alignmentBuckets.grow(capacity);
+            }
+            id = idCount++;
+        }
+        names[id] = name;
+        versions[id] = version;
+        healthBuckets.insert(id, health);
+        alignmentBuckets.insert(id, alignmentTenths);
+        ids.add(name, id);
+    }
+
+    /**
+     * Moves an indexed character to the buckets of its new health and moral alignment. The write lock,
+     * or the read lock and the character's id lock, must be held.
+     *
+     * @param id id of character
+     * @param health new health
+     * @param alignmentTenths new moral alignment, in tenths
+     */
+    private void update(int id, int health, int alignmentTenths) {
+        healthBuckets.move(id, health);
+        alignmentBuckets.move(id, alignmentTenths);
+    }
+
+    /**
+     * Returns the lowest alignment in tenths that is not below a bound
+     *
+     * @param moralAlign lower bound
+     * @return lowest alignment in the range, in tenths
+     */
+    private static int lowestTenths(double moralAlign) {
+        // the small allowance keeps 0.3 from being read as 3.0000000000000004 tenths
+        return (int) Math.max(Math.ceil(moralAlign * 10 - 1e-9), Integer.MIN_VALUE);
+    }
+
+    /**
+     * Returns the highest alignment in tenths that is not above a bound
+     *
+     * @param moralAlign upper bound
+     * @return highest alignment in the range, in tenths
+     */
+    private static int highestTenths(double moralAlign) {
+        return (int) Math.min(Math.floor(moralAlign * 10 + 1e-9), Integer.MAX_VALUE);
+    }
+
+    /**
+     * The Buckets of one attribute hold the ids of the characters with each value of that attribute,
+     * along with the bucket and position of every id. The members of a bucket, and the position of each
+     * id in it, are guarded by the bucket's lock.
+     */
+    private static final class Buckets {
+        private final Object[] locks;
+        private final int[][] members;
+        private final int[] sizes;
+        private int[] bucketOf;
+        private int[] positionOf;
+
+        /**
+         * Creates empty buckets
+         *
+         * @param valueCount number of values the attribute can take
+         * @param capacity number of ids to make room for
+         */
+        Buckets(int valueCount, int capacity) {
+            locks = new Object[valueCount];
+            members = new int[valueCount][];
+            sizes = new int[valueCount];
+            Arrays.fill(members, new int[0]);
+            //Runtime: O(v), where v is valueCount
+            for (int bucket = 0; bucket < valueCount; bucket++) {
+                locks[bucket] = new Object();
+            }
+            bucketOf = new int[capacity];
+            positionOf = new int[capacity];
+        }
+
+        /**
+         * Makes room for more ids
+         *
+         * @param capacity number of ids to make room for
+         */
+        void grow(int capacity) {
+            bucketOf = Arrays.copyOf(bucketOf, capacity);
+            positionOf = Arrays.copyOf(positionOf, capacity);
+        }
+
+        /**
+         * Puts an id at the end of a bucket
+         *
+         * @param id id of character
+         * @param bucket value of the attribute
+         */
+        void insert(int id, int bucket) {
+            synchronized (locks[bucket]) {
+                append(id, bucket);
+            }
+        }
+
+        /**
+         * Takes an id out of its bucket, moving the last id of the bucket into its place
+         *
+         * @param id id of character
+         */
+        void delete(int id) {
+            int bucket = bucketOf[id];
+            synchronized (locks[bucket]) {
+                detach(id, bucket);
+            }
+        }
+
+        /**
+         * Moves an id to another bucket, if its value has changed. Both buckets are locked, the lower
+         * one first.
+         *
+         * @param id id of character
+         * @param bucket new value of the attribute
+         */
+        void move(int id, int bucket) {
+            int oldBucket = bucketOf[id];
+            if (oldBucket != bucket) {
+                synchronized (locks[Math.min(oldBucket, bucket)]) {
+                    synchronized (locks[Math.max(oldBucket, bucket)]) {
+                        detach(id, oldBucket);
+                        append(id, bucket);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Puts an id at the end of a bucket whose lock is held
+         *
+         * @param id id of character
+         * @param bucket value of the attribute
+         */
+        private void append(int id, int bucket) {
+            if (sizes[bucket] == members[bucket].length) {
+                members[bucket] = Arrays.copyOf(members[bucket], Math.max(sizes[bucket] * 2, INITIAL_CAPACITY));
+            }
+            bucketOf[id] = bucket;
+            positionOf[id] = sizes[bucket];
+            members[bucket][sizes[bucket]++] = id;
+        }
+
+        /**
+         * Takes an id out of a bucket whose lock is held, moving the last id of the bucket into its place
+         *
+         * @param id id of character
+         * @param bucket bucket holding the id
+         */
+        private void detach(int id, int bucket) {
+            int position = positionOf[id];
+            int last = members[bucket][--sizes[bucket]];
+            members[bucket][position] = last;
+            positionOf[last] = position;
+        }
+
+        /**
+         * Returns the number of ids in a range of buckets
+         *
+         * @param from lowest bucket, inclusive
+         * @param to highest bucket, inclusive
+         * @return number of ids
+         */
+        int count(int from, int to) {
+            //Runtime: O(v), where v is the number of values in the range
+            int count = 0;
+            for (int bucket = Math.max(from, 0); bucket <= Math.min(to, sizes.length - 1); bucket++) {
+                synchronized (locks[bucket]) {
+                    count += sizes[bucket];
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Returns the names of the ids in a range of buckets
+         *
+         * @param from lowest bucket, inclusive
+         * @param to highest bucket, inclusive
+         * @param names name of each id
+         * @return names in bucket order
+         */
+        List<String> collect(int from, int to, String[] names) {
+            List<String> result = new ArrayList<>(count(from, to));
+            //Runtime: O(v + k), where v is the number of values in the range and k the number of results
+            for (int bucket = Math.max(from, 0); bucket <= Math.min(to, sizes.length - 1); bucket++) {
+                synchronized (locks[bucket]) {
+                    for (int position = 0; position < sizes[bucket]; position++) {
+                        result.add(names[members[bucket][position]]);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
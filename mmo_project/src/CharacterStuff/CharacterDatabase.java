@@ -1,29 +1,98 @@
 package CharacterStuff;
 
-import Dictionary.HashedDictionary;
+import Dictionary.CollisionResolution;
+import Dictionary.HashMixing;
+import Dictionary.ObjIntFunction;
+import Dictionary.ObjectIntHashedDictionary;
+import Dictionary.RecordWriter;
 
-import java.util.ArrayList;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collection;
 /**
  * The CharacterDatabase class represents a database for managing characters the MMOG
- * It utilizes an ArrayList to store character instances and a HashedDictionary for retrieval of character indices.
+ * It utilizes a CharacterStore to keep the characters in numbered slots and a HashedDictionary for retrieval of
+ * character slots. Slots left by removed characters are kept on a free list and reused by later adds, and empty
+ * slots at the end of the store are dropped as soon as they appear. Removing a character never moves another one,
+ * so characters returned by getCharacter stay valid; only compact moves characters into the empty slots.
  */
 public class CharacterDatabase implements  CharacterDatabaseInterface{
-    //ArrayList to store character instances
-    ArrayList<Character> characterList;
-    //HashDictionary for efficient retreval
-    HashedDictionary<String, Integer> dictionary;
+    //storage for character instances, one per slot
+    CharacterStore characterStore;
+    //HashDictionary for efficient retreval, specialized for int values so indexes are not boxed
+    ObjectIntHashedDictionary<String> dictionary;
+    //stack of empty slots in characterStore that new characters can reuse; entries for slots that were
+    //dropped from the end of the store are skipped when they come up
+    int[] freeSlots;
+    int freeCount;
+    //told about every added, removed and changed character
+    final CharacterListeners listeners = new CharacterListeners();
+    //latencies and dictionary health, null until metrics are enabled
+    private DatabaseMetrics metrics;
+    //turns a name index entry into its character, named by the key the index holds so the store need not read it
+    private final ObjIntFunction<String, CharacterInterface> characterOfEntry =
+            (name, slot) -> characterStore.get(slot, name);
 
     /**
      * Constructor for creating a new CharacterDatabase instance.
-     * Initializes the characterList and dictionary with specified capacity, initially.
+     * Keeps one Character object per slot in a HeapCharacterStore.
      */
     public CharacterDatabase() {
-        characterList = new ArrayList<>();
-        dictionary = new HashedDictionary<>(10);
+        this(new HeapCharacterStore());
     }
 
     /**
-     * Adds the character to the list, as well as the stored index to the hashed dictionary
+     * Constructor for creating a new CharacterDatabase instance that keeps its characters in the given store.
+     * Names are hashed with a per-process seed, so players can not pick names that all collide.
+     *
+     * @param characterStore empty store to keep the characters in
+     * @throws IllegalArgumentException if the store is null or not empty
+     */
+    public CharacterDatabase(CharacterStore characterStore) {
+        this(characterStore, CollisionResolution.QUADRATIC_PROBING, HashMixing.SEEDED_FINALIZER);
+    }
+
+    /**
+     * Constructor for creating a new CharacterDatabase instance whose name index uses the given
+     * probing scheme and hash mixing stage.
+     *
+     * @param characterStore empty store to keep the characters in
+     * @param collisionResolution probing scheme of the name index
+     * @param hashMixing how names are hashed before they are placed in the name index
+     * @throws IllegalArgumentException if the store is null or not empty, or the scheme or mixing is null
+     */
+    public CharacterDatabase(CharacterStore characterStore, CollisionResolution collisionResolution,
+                             HashMixing hashMixing) {
+        if (characterStore == null || characterStore.getSlotCount() != 0) {
+            throw new IllegalArgumentException("Character store must be empty");
+        }
+        this.characterStore = characterStore;
+        dictionary = new ObjectIntHashedDictionary<>(10, collisionResolution, hashMixing, false);
+        freeSlots = new int[10];
+        freeCount = 0;
+    }
+
+    /**
+     * Constructor for a database restored from a snapshot. Every slot of the store must hold a
+     * character, and the dictionary must map each name to its slot.
+     *
+     * @param characterStore store holding the restored characters
+     * @param dictionary restored index of character slots
+     */
+    CharacterDatabase(CharacterStore characterStore, ObjectIntHashedDictionary<String> dictionary) {
+        this.characterStore = characterStore;
+        this.dictionary = dictionary;
+        freeSlots = new int[10];
+        freeCount = 0;
+    }
+
+    /**
+     * Adds the character to the store, as well as the stored index to the hashed dictionary.
+     * The character takes a slot freed by a removed character if there is one, and replaces
+     * the character with the same name if there is one.
      *
      * @param name name of character
      * @param height height of character
@@ -32,60 +101,518 @@ public class CharacterDatabase implements  CharacterDatabaseInterface{
      */
     @Override
     public void addCharacter(String name, int height, int weight, double moralAlign) {
-        characterList.add(new Character(name, height, weight, moralAlign));
+        DatabaseMetrics metrics = this.metrics;
+        long start = (metrics == null) ? 0 : System.nanoTime();
         //O(n) runtime due to hashDictionary probing
-        dictionary.add(name, characterList.size() - 1);
+        int index = dictionary.getValue(name);
+        if (index != ObjectIntHashedDictionary.NO_VALUE) {
+            characterStore.set(index, name, height, weight, moralAlign);
+        } else if (hasFreeSlot()) {
+            index = freeSlots[freeCount - 1];
+            //the slot only leaves the free list once the store has accepted the character
+            characterStore.set(index, name, height, weight, moralAlign);
+            freeCount--;
+            dictionary.add(name, index);
+        } else {
+            dictionary.add(name, characterStore.add(name, height, weight, moralAlign));
+        }
+        reportAdded(name, height, weight, moralAlign);
+        if (metrics != null) {
+            metrics.recordSince(DatabaseOperation.ADD, start);
+        }
+    }
+
+    /**
+     * Adds many characters at once. The store and the hashed dictionary are sized for all of them
+     * up front and the dictionary is built in one pass, with the names hashed in parallel for large
+     * inputs. Each character is added with its name, height, weight and moral alignment at full health,
+     * as addCharacter would, and a name given more than once keeps the last character.
+     *
+     * @param characters characters to be added
+     * @throws IllegalArgumentException if any character is null or has invalid attributes, in which case
+     * nothing is added
+     */
+    @Override
+    public void addCharacters(Collection<? extends CharacterInterface> characters) {
+        DatabaseMetrics metrics = this.metrics;
+        long start = (metrics == null) ? 0 : System.nanoTime();
+        //Runtime: O(n), where n is the number of characters added
+        String[] names = new String[characters.size()];
+        int count = 0;
+        for (CharacterInterface character : characters) {
+            if (character == null) {
+                throw new IllegalArgumentException("Characters must not be null");
+            }
+            CharacterState.checkAttributes(character.getName(), character.getHeight(), character.getMoralAlign());
+            names[count++] = character.getName();
+        }
+        int newSlots = Math.max(names.length - getEmptySlotCount(), 0);
+        characterStore.ensureCapacity((int) Math.min((long) characterStore.getSlotCount() + newSlots,
+                Integer.MAX_VALUE));
+
+        int[] slots = new int[names.length];
+        count = 0;
+        for (CharacterInterface character : characters) {
+            if (hasFreeSlot()) {
+                slots[count] = freeSlots[--freeCount];
+                characterStore.set(slots[count], names[count], character.getHeight(), character.getWeight(),
+                        character.getMoralAlign());
+            } else {
+                slots[count] = characterStore.add(names[count], character.getHeight(), character.getWeight(),
+                        character.getMoralAlign());
+            }
+            count++;
+        }
+
+        //names that were already in the database now point at their new slot, so the old one is freed
+        int[] replacedSlots = dictionary.addAll(names, slots);
+        for (int replacedSlot : replacedSlots) {
+            if (replacedSlot != ObjectIntHashedDictionary.NO_VALUE) {
+                characterStore.clear(replacedSlot);
+                pushFreeSlot(replacedSlot);
+            }
+        }
+        if (!listeners.isEmpty()) {
+            count = 0;
+            for (CharacterInterface character : characters) {
+                reportAdded(names[count++], character.getHeight(), character.getWeight(), character.getMoralAlign());
+            }
+        }
+        if (metrics != null) {
+            // each character counts as one add taking an equal share of the batch
+            metrics.recordSince(DatabaseOperation.ADD, start, names.length);
+        }
     }
 
     /**
-     * Removes character from list and dictionary, setting the value of the list entry to null to maintain order
+     * Removes character from store and dictionary, emptying its slot so other slots keep their order.
+     * The slot is put on the free list. Nothing happens if there is no character with the given name.
      *
      * @param name name of character to be removed
      */
     @Override
     public void removeCharacter(String name) {
-        characterList.set(dictionary.getValue(name), null);
+        DatabaseMetrics metrics = this.metrics;
+        long start = (metrics == null) ? 0 : System.nanoTime();
+        removeName(name);
+        if (metrics != null) {
+            metrics.recordSince(DatabaseOperation.REMOVE, start);
+        }
+    }
+
+    /**
+     * Removes character from store and dictionary and puts its slot on the free list, or drops it
+     * along with the empty slots before it if it was the last slot of the store
+     *
+     * @param name name of character to be removed
+     */
+    private void removeName(String name) {
         //O(n) runtime due to hashDictionary probing
-        dictionary.remove(name);
+        int index = dictionary.remove(name);
+        if (index != ObjectIntHashedDictionary.NO_VALUE) {
+            characterStore.clear(index);
+            if (index == characterStore.getSlotCount() - 1) {
+                //amortized O(1), every slot is dropped once
+                trimEmptyEnd();
+            } else {
+                pushFreeSlot(index);
+            }
+            if (!listeners.isEmpty()) {
+                listeners.characterRemoved(name);
+            }
+        }
+    }
+
+    /**
+     * Removes the character whose name has the given characters. The slot is found without building
+     * a String, and the stored name is used to remove it. Nothing happens if there is no such character.
+     *
+     * @param name characters of the name of character to be removed
+     * @throws IllegalArgumentException if name is null
+     */
+    @Override
+    public void removeCharacter(CharSequence name) {
+        DatabaseMetrics metrics = this.metrics;
+        long start = (metrics == null) ? 0 : System.nanoTime();
+        removeSlot(dictionary.getValueByCharacters(name));
+        if (metrics != null) {
+            metrics.recordSince(DatabaseOperation.REMOVE, start);
+        }
+    }
+
+    /**
+     * Removes the character whose name is encoded by the given UTF-8 bytes. The slot is found without
+     * decoding the bytes, and the stored name is used to remove it. Nothing happens if there is no such
+     * character.
+     *
+     * @param nameBytes array holding the UTF-8 bytes of the name
+     * @param offset index of the first byte of the name
+     * @param length number of bytes in the name
+     * @throws IllegalArgumentException if nameBytes is null
+     * @throws IndexOutOfBoundsException if the name is not within the array
+     */
+    @Override
+    public void removeCharacter(byte[] nameBytes, int offset, int length) {
+        DatabaseMetrics metrics = this.metrics;
+        long start = (metrics == null) ? 0 : System.nanoTime();
+        removeSlot(dictionary.getValueByUtf8(nameBytes, offset, length));
+        if (metrics != null) {
+            metrics.recordSince(DatabaseOperation.REMOVE, start);
+        }
+    }
+
+    /**
+     * Removes the character in a slot found by a name lookup, by its stored name
+     *
+     * @param index slot of the character, or NO_VALUE if there is none
+     */
+    private void removeSlot(int index) {
+        if (index != ObjectIntHashedDictionary.NO_VALUE) {
+            removeName(characterStore.getName(index));
+        }
+    }
+
+    /**
+     * Moves every live character into the lowest slots, updates their dictionary indexes and
+     * releases the emptied end of the store. Characters of stores that hand out views of a slot,
+     * such as ColumnarCharacterStore, must be looked up again afterwards.
+     */
+    @Override
+    public void compact() {
+        compact(Integer.MAX_VALUE);
+        characterStore.trimToSize();
+        freeSlots = new int[10];
+    }
+
+    /**
+     * Moves at most the given number of characters from the end of the store into empty slots,
+     * updating their dictionary indexes, and drops empty slots from the end of the store
+     *
+     * @param maxMoves greatest number of characters to move
+     * @return number of empty slots still in the store
+     * @throws IllegalArgumentException if maxMoves is negative
+     */
+    @Override
+    public int compact(int maxMoves) {
+        if (maxMoves < 0) {
+            throw new IllegalArgumentException("Number of moves must not be negative");
+        }
+        trimEmptyEnd();
+        //Runtime: O(m), where m is maxMoves, plus amortized O(1) for each free list entry skipped
+        int moves = 0;
+        while ((moves < maxMoves) && hasFreeSlot()) {
+            int hole = freeSlots[--freeCount];
+            int last = characterStore.getSlotCount() - 1;
+            characterStore.move(last, hole);
+            dictionary.add(characterStore.getName(hole), hole);
+            trimEmptyEnd();
+            moves++;
+        }
+        return getEmptySlotCount();
     }
 
     /**
      * Return character object with given name
      *
      * @param name name of character
-     * @return character object with given name
+     * @return character object with given name, or null if there is none
      */
     @Override
     //O(n) because of probing the hashDictionary, worstcase scenaro
-    public Character getCharacter(String name) {
-        return characterList.get(dictionary.getValue(name));
+    public CharacterInterface getCharacter(String name) {
+        DatabaseMetrics metrics = this.metrics;
+        long start = (metrics == null) ? 0 : System.nanoTime();
+        CharacterInterface character = dictionary.applyToEntry(name, characterOfEntry);
+        if (metrics != null) {
+            metrics.recordSince(DatabaseOperation.GET, start);
+        }
+        return character;
     }
 
     /**
-     * Returns the hashed dictionary storing character indexes in the list
+     * Return character object whose name has the given characters, found without building a String
      *
-     * @return hashed dictionary of character indexes
+     * @param name characters of the name of character
+     * @return character object with given name, or null if there is none
+     * @throws IllegalArgumentException if name is null
+     */
+    @Override
+    public CharacterInterface getCharacter(CharSequence name) {
+        DatabaseMetrics metrics = this.metrics;
+        long start = (metrics == null) ? 0 : System.nanoTime();
+        CharacterInterface character = dictionary.applyToEntryByCharacters(name, characterOfEntry);
+        if (metrics != null) {
+            metrics.recordSince(DatabaseOperation.GET, start);
+        }
+        return character;
+    }
+
+    /**
+     * Return character object whose name is encoded by the given UTF-8 bytes, found without decoding them
+     *
+     * @param nameBytes array holding the UTF-8 bytes of the name
+     * @param offset index of the first byte of the name
+     * @param length number of bytes in the name
+     * @return character object with given name, or null if there is none
+     * @throws IllegalArgumentException if nameBytes is null
+     * @throws IndexOutOfBoundsException if the name is not within the array
+     */
+    @Override
+    public CharacterInterface getCharacter(byte[] nameBytes, int offset, int length) {
+        DatabaseMetrics metrics = this.metrics;
+        long start = (metrics == null) ? 0 : System.nanoTime();
+        CharacterInterface character = dictionary.applyToEntryByUtf8(nameBytes, offset, length,
+                characterOfEntry);
+        if (metrics != null) {
+            metrics.recordSince(DatabaseOperation.GET, start);
+        }
+        return character;
+    }
+
+    /**
+     * Starts recording operation latencies and dictionary health. Calling it again returns the same metrics.
+     * The hash table's probe listener is replaced with the one the probe statistics are read from.
+     *
+     * @return metrics of this database
      */
     @Override
-    public HashedDictionary<String, Integer> getHashTable() {
+    public DatabaseMetrics enableMetrics() {
+        if (metrics == null) {
+            enableMetrics(new DatabaseMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Starts recording into metrics shared with other databases
+     *
+     * @param sharedMetrics metrics to record into
+     */
+    void enableMetrics(DatabaseMetrics sharedMetrics) {
+        sharedMetrics.attach(dictionary);
+        // heals, injuries and changes are timed by the store, so the characters it hands out need no wrapper
+        characterStore.setMetrics(sharedMetrics);
+        metrics = sharedMetrics;
+    }
+
+    /**
+     * Returns the metrics of this database
+     *
+     * @return metrics, or null if they have not been enabled
+     */
+    @Override
+    public DatabaseMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Adds a listener that is told about every character added, removed, healed, injured or changed
+     *
+     * @param listener listener to add
+     * @throws IllegalArgumentException if the listener is null
+     */
+    @Override
+    public void addCharacterListener(CharacterListener listener) {
+        listeners.add(listener);
+        characterStore.setCharacterListener(listeners);
+    }
+
+    /**
+     * Removes a listener added with addCharacterListener
+     *
+     * @param listener listener to remove
+     * @return true if the listener had been added
+     */
+    @Override
+    public boolean removeCharacterListener(CharacterListener listener) {
+        boolean removed = listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            //characters skip reporting altogether without listeners
+            characterStore.setCharacterListener(null);
+        }
+        return removed;
+    }
+
+    /**
+     * Tells the listeners about a character that was just added at full health
+     *
+     * @param name name of character
+     * @param height height of character
+     * @param weight weight of character
+     * @param moralAlign moral alignment of character, before rounding
+     */
+    private void reportAdded(String name, int height, int weight, double moralAlign) {
+        if (!listeners.isEmpty()) {
+            listeners.characterAdded(name, height, weight, CharacterState.MAX_HEALTH,
+                    CharacterState.toTenths(moralAlign) / 10.0);
+        }
+    }
+
+    /**
+     * Writes a page of characters as records of name, height, weight, health and moral alignment,
+     * in slot order, starting at a cursor returned by the previous page. Writing the roster in pages
+     * lets it be exported between game ticks while the server is live; a character added, removed or
+     * moved by compaction between pages may be missed or written twice.
+     *
+     * @param out record writer to write to, which is not flushed
+     * @param cursor 0 for the first page, which starts with the header, or the cursor returned by the
+     * previous page
+     * @param maxCharacters greatest number of characters to write
+     * @return the cursor of the next page, or -1 if every character has been written
+     * @throws IOException if the record writer can not write
+     * @throws IllegalArgumentException if the cursor is negative or maxCharacters is not positive
+     */
+    @Override
+    public int exportCharacters(RecordWriter out, int cursor, int maxCharacters) throws IOException {
+        if (cursor < 0 || maxCharacters <= 0) {
+            throw new IllegalArgumentException("Cursor must not be negative and page size must be positive");
+        }
+        if (cursor == 0) {
+            writeExportHeader(out);
+        }
+        return writeCharacters(out, cursor, maxCharacters);
+    }
+
+    /**
+     * Writes every character as records of name, height, weight, health and moral alignment, and
+     * flushes the record writer. The database must not be changed until this returns.
+     *
+     * @param out record writer to write to
+     * @throws IOException if the record writer can not write
+     */
+    @Override
+    public void exportCharacters(RecordWriter out) throws IOException {
+        exportCharacters(out, 0, Integer.MAX_VALUE);
+        out.flush();
+    }
+
+    /**
+     * Writes the header naming the columns of exported characters, if the format has one
+     *
+     * @param out record writer to write to
+     * @throws IOException if the record writer can not write
+     */
+    static void writeExportHeader(RecordWriter out) throws IOException {
+        out.writeHeader("name", "height", "weight", "health", "moralAlign");
+    }
+
+    /**
+     * Writes the characters of a range of slots as records, without a header
+     *
+     * @param out record writer to write to
+     * @param fromSlot first slot to write
+     * @param maxCharacters greatest number of characters to write
+     * @return the slot to continue from, or -1 if every character has been written
+     * @throws IOException if the record writer can not write
+     */
+    int writeCharacters(RecordWriter out, int fromSlot, int maxCharacters) throws IOException {
+        int slot = fromSlot;
+        int written = 0;
+        //Runtime: O(m + e), where m is maxCharacters and e the number of empty slots passed
+        for (; slot < characterStore.getSlotCount() && written < maxCharacters; slot++) {
+            CharacterInterface character = characterStore.get(slot);
+            if (character != null) {
+                out.startRecord();
+                out.field("name", character.getName());
+                out.field("height", character.getHeight());
+                out.field("weight", character.getWeight());
+                out.field("health", character.getHealth());
+                out.field("moralAlign", CharacterState.toTenths(character.getMoralAlign()), 1);
+                out.endRecord();
+                written++;
+            }
+        }
+        return (slot < characterStore.getSlotCount()) ? slot : -1;
+    }
+
+    /**
+     * Returns the hashed dictionary storing character indexes in the store
+     *
+     * @return hashed dictionary of character indexes
+     */
+    public ObjectIntHashedDictionary<String> getHashTable() {
         return dictionary;
     }
 
     /**
-     * Prints out all the current characters in the list
+     * Pushes a slot on the free list
+     *
+     * @param index index of the empty slot
+     */
+    private void pushFreeSlot(int index) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = index;
+    }
+
+    /**
+     * Removes the empty slots at the end of the store
+     */
+    private void trimEmptyEnd() {
+        //Runtime: O(n), where n is the number of empty slots at the end
+        int slotCount = characterStore.getSlotCount();
+        while ((slotCount > 0) && !characterStore.isOccupied(slotCount - 1)) {
+            slotCount--;
+        }
+        characterStore.truncate(slotCount);
+    }
+
+    /**
+     * Pops free list entries for slots that are past the end of the store or taken again, until
+     * the top entry is an empty slot inside the store
+     *
+     * @return true if the free list has an empty slot on top
+     */
+    private boolean hasFreeSlot() {
+        //Runtime: amortized O(1), every entry is popped once
+        while (freeCount > 0) {
+            int slot = freeSlots[freeCount - 1];
+            if ((slot < characterStore.getSlotCount()) && !characterStore.isOccupied(slot)) {
+                return true;
+            }
+            freeCount--;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of empty slots inside the store
+     *
+     * @return slots of the store not holding a character
+     */
+    private int getEmptySlotCount() {
+        return characterStore.getSlotCount() - dictionary.getSize();
+    }
+
+    /**
+     * Prints out all the current characters in the store
      */
     @Override
     public void printList() {
-        System.out.println("Character List");
-        //O(n) where n in elements in characterList
-        for (Character character: characterList) {
+        //printed through one buffer instead of a write per character, and flushed but not closed
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+        out.println("Character List");
+        printCharacters(out);
+        out.println();
+        out.flush();
+    }
+
+    /**
+     * Prints every slot of the store, either the character in it or Null
+     *
+     * @param out writer to print to
+     */
+    void printCharacters(PrintWriter out) {
+        //O(n) where n in slots in characterStore
+        for (int slot = 0; slot < characterStore.getSlotCount(); slot++) {
+            CharacterInterface character = characterStore.get(slot);
             if (character != null) {
-                System.out.println(character);
+                out.println(character);
             } else {
-                System.out.println("Null");
+                out.println("Null");
 
             }
         }
-        System.out.println();
     }
 }
@@ -1,6 +1,9 @@
 package CharacterStuff;
 
-import Dictionary.HashedDictionary;
+import Dictionary.RecordWriter;
+
+import java.io.IOException;
+import java.util.Collection;
 /**
  * The CharacterDatabaseInterface defines the interface for managing characters
  * MMOG database.
@@ -16,6 +19,13 @@ public interface CharacterDatabaseInterface {
      */
     public void addCharacter(String name, int height, int weight, double moralAlign);
 
+    /**
+     * Adds many characters to the database at once, sizing the database for all of them up front.
+     *
+     * @param characters The characters to be added.
+     */
+    public void addCharacters(Collection<? extends CharacterInterface> characters);
+
     /**
      * Removes a character from the database.
      *
@@ -23,20 +33,108 @@ public interface CharacterDatabaseInterface {
      */
     public void removeCharacter(String name);
 
+    /**
+     * Removes the character whose name has the given characters, without building a String to look it up.
+     *
+     * @param name The characters of the name of the character to be removed.
+     */
+    public void removeCharacter(CharSequence name);
+
+    /**
+     * Removes the character whose name is encoded by the given UTF-8 bytes, without decoding them first.
+     *
+     * @param nameBytes The array holding the UTF-8 bytes of the name.
+     * @param offset    The index of the first byte of the name.
+     * @param length    The number of bytes in the name.
+     */
+    public void removeCharacter(byte[] nameBytes, int offset, int length);
+
+    /**
+     * Moves all characters to the front of the database storage and releases the empty space.
+     */
+    public void compact();
+
+    /**
+     * Compacts the database storage a bounded number of moves at a time.
+     *
+     * @param maxMoves The greatest number of characters to move.
+     * @return The number of empty slots still left.
+     */
+    public int compact(int maxMoves);
+
     /**
      * Retrieves a character from the database based on the name.
      *
      * @param name The name of the character.
      * @return The character object with the given name.
      */
-    public Character getCharacter(String name);
+    public CharacterInterface getCharacter(String name);
+
+    /**
+     * Retrieves the character whose name has the given characters, without building a String to look it up.
+     *
+     * @param name The characters of the name of the character.
+     * @return The character object with the given name.
+     */
+    public CharacterInterface getCharacter(CharSequence name);
+
+    /**
+     * Retrieves the character whose name is encoded by the given UTF-8 bytes, without decoding them first.
+     *
+     * @param nameBytes The array holding the UTF-8 bytes of the name.
+     * @param offset    The index of the first byte of the name.
+     * @param length    The number of bytes in the name.
+     * @return The character object with the given name.
+     */
+    public CharacterInterface getCharacter(byte[] nameBytes, int offset, int length);
+
+    /**
+     * Adds a listener that is told about every change made to the characters in the database.
+     *
+     * @param listener The listener to add.
+     */
+    public void addCharacterListener(CharacterListener listener);
+
+    /**
+     * Removes a listener from the database.
+     *
+     * @param listener The listener to remove.
+     * @return True if the listener had been added.
+     */
+    public boolean removeCharacterListener(CharacterListener listener);
+
+    /**
+     * Starts recording operation latencies and hash table health, and returns the metrics they are read from.
+     *
+     * @return The metrics of the database.
+     */
+    public DatabaseMetrics enableMetrics();
+
+    /**
+     * Gets the metrics of the database.
+     *
+     * @return The metrics, or null if they have not been enabled.
+     */
+    public DatabaseMetrics getMetrics();
+
+    /**
+     * Writes a page of the characters in the database as records.
+     *
+     * @param out            The record writer to write to.
+     * @param cursor         0 for the first page, or the cursor returned by the previous page.
+     * @param maxCharacters  The greatest number of characters to write.
+     * @return The cursor of the next page, or -1 if every character has been written.
+     * @throws IOException if the record writer can not write.
+     */
+    public int exportCharacters(RecordWriter out, int cursor, int maxCharacters) throws IOException;
 
     /**
-     * Gets the hashed dictionary storing character indexes in the database.
+     * Writes every character in the database as records and flushes the record writer.
      *
-     * @return The hashed dictionary of character indexes.
+     * @param out The record writer to write to.
+     * @throws IOException if the record writer can not write.
      */
-    public HashedDictionary<String, Integer> getHashTable();
+    public void exportCharacters(RecordWriter out) throws IOException;
 
     /**
      * Prints the list of characters in the database.
@@ -1,9 +1,44 @@
 package CharacterStuff;
 /**
  * The CharacterInterface defines the interface for managing character
- * actions.
+ * actions. Each action is applied atomically, so concurrent callers never lose an update.
  */
 public interface CharacterInterface {
+    /**
+     * Returns the name of the character.
+     *
+     * @return The name of the character.
+     */
+    public String getName();
+
+    /**
+     * Returns the height of the character.
+     *
+     * @return The height of the character.
+     */
+    public int getHeight();
+
+    /**
+     * Returns the weight of the character.
+     *
+     * @return The weight of the character.
+     */
+    public int getWeight();
+
+    /**
+     * Returns the health of the character, from 0 to 100.
+     *
+     * @return The health of the character.
+     */
+    public int getHealth();
+
+    /**
+     * Returns the moral alignment of the character, from 0.0 to 1.0.
+     *
+     * @return The moral alignment of the character.
+     */
+    public double getMoralAlign();
+
     /**
      * Increases the character's health by a specified amount.
      *
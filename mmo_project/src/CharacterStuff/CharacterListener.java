@@ -0,0 +1,40 @@
+package CharacterStuff;
+
+/**
+ * A CharacterListener is told about every change made to the characters of a CharacterDatabase.
+ * Changes report the new absolute values rather than the amounts, so replaying the last reported
+ * values of each character restores it. A database without listeners skips all reporting.
+ * Health and alignment changes may be reported from many threads at once, and two changes to one
+ * character may arrive out of order; the version tells which is newer.
+ */
+public interface CharacterListener {
+    /**
+     * Called after a character has been added, or has replaced a character with the same name.
+     *
+     * @param name       The name of the character.
+     * @param height     The height of the character.
+     * @param weight     The weight of the character.
+     * @param health     The health of the character.
+     * @param moralAlign The moral alignment of the character.
+     */
+    public void characterAdded(String name, int height, int weight, int health, double moralAlign);
+
+    /**
+     * Called after a character has been removed.
+     *
+     * @param name The name of the character.
+     */
+    public void characterRemoved(String name);
+
+    /**
+     * Called after a character has been healed, injured or had its moral alignment changed.
+     *
+     * @param name       The name of the character.
+     * @param health     The health of the character after the change.
+     * @param moralAlign The moral alignment of the character after the change.
+     * @param version    The number of changes made to the character since it was added or loaded,
+     *                   wrapping around after 65535. Of two reports, the one with the later version
+     *                   (compared modulo 65536) is the newer.
+     */
+    public void characterChanged(String name, int health, double moralAlign, int version);
+}
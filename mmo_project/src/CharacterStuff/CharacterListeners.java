@@ -0,0 +1,84 @@
+package CharacterStuff;
+
+import java.util.Arrays;
+
+/*
+ * Passes every event on to a list of CharacterListeners. The list is copied when it changes, so
+ * events can be reported from any thread without locking.
+ **/
+final class CharacterListeners implements CharacterListener {
+    private volatile CharacterListener[] listeners = new CharacterListener[0];
+
+    /**
+     * Adds a listener
+     *
+     * @param listener listener to add
+     */
+    synchronized void add(CharacterListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        CharacterListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Removes a listener, if it was added
+     *
+     * @param listener listener to remove
+     * @return true if the listener was removed
+     */
+    synchronized boolean remove(CharacterListener listener) {
+        //Runtime: O(n), where n is the number of listeners
+        for (int index = 0; index < listeners.length; index++) {
+            if (listeners[index] == listener) {
+                CharacterListener[] updated = new CharacterListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, updated, 0, index);
+                System.arraycopy(listeners, index + 1, updated, index, updated.length - index);
+                listeners = updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if no listeners have been added
+     *
+     * @return true if there are no listeners
+     */
+    boolean isEmpty() {
+        return listeners.length == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void characterAdded(String name, int height, int weight, int health, double moralAlign) {
+        for (CharacterListener listener : listeners) {
+            listener.characterAdded(name, height, weight, health, moralAlign);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void characterRemoved(String name) {
+        for (CharacterListener listener : listeners) {
+            listener.characterRemoved(name);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void characterChanged(String name, int health, double moralAlign, int version) {
+        for (CharacterListener listener : listeners) {
+            listener.characterChanged(name, health, moralAlign, version);
+        }
+    }
+}
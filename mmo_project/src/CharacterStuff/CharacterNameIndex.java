@@ -0,0 +1,80 @@
+package CharacterStuff;
+
+import Dictionary.RadixTree;
+
+import java.util.List;
+
+/**
+ * The CharacterNameIndex finds the characters of a CharacterDatabase whose names start with a prefix, for
+ * searches and autocompletion. The names are kept in a RadixTree next to the database's hash index, and the
+ * index listens to the database so every added and removed character is added to and removed from the tree.
+ */
+public class CharacterNameIndex implements CharacterListener {
+    private final RadixTree names = new RadixTree();
+
+    /**
+     * Creates an index of the character names in a database and keeps it up to date by listening to
+     * the database. The database must not be changed while the index is created.
+     *
+     * @param database database to index
+     * @throws IllegalArgumentException if the database is null
+     */
+    public CharacterNameIndex(CharacterDatabase database) {
+        if (database == null) {
+            throw new IllegalArgumentException("Database must not be null");
+        }
+        CharacterStore store = database.characterStore;
+        //Runtime: O(n), where n is the number of slots in the store
+        for (int slot = 0; slot < store.getSlotCount(); slot++) {
+            if (store.isOccupied(slot)) {
+                names.add(store.getName(slot));
+            }
+        }
+        database.addCharacterListener(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void characterAdded(String name, int height, int weight, int health, double moralAlign) {
+        names.add(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void characterRemoved(String name) {
+        names.remove(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Names do not change, so this does nothing.
+     */
+    @Override
+    public void characterChanged(String name, int health, double moralAlign, int version) {
+    }
+
+    /**
+     * Returns the first names in sorted order that start with a prefix
+     *
+     * @param prefix prefix the names must start with
+     * @param limit greatest number of names to return
+     * @return matching names in ascending order
+     * @throws IllegalArgumentException if the prefix is null or the limit is negative
+     */
+    public synchronized List<String> findByPrefix(String prefix, int limit) {
+        return names.findByPrefix(prefix, limit);
+    }
+
+    /**
+     * Returns the number of indexed names
+     *
+     * @return number of names
+     */
+    public synchronized int getSize() {
+        return names.getSize();
+    }
+}
@@ -0,0 +1,301 @@
+package CharacterStuff;
+
+import Dictionary.HashIndexImage;
+import Dictionary.ObjectIntHashedDictionary;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A CharacterSnapshot is a copy of the characters and the name index of a CharacterDatabase that can be
+ * written to and read back from a memory-mapped file.
+ * Taking a snapshot only copies the database, so the game loop is held up for a copy and not for any disk
+ * writes, which saveAsync does on a background thread. The file holds the hash code of every name next to
+ * its slot, so a restored database places each name without hashing it again.
+ * The file is a header, the index image and then one record per character: height, weight, the state
+ * packed by CharacterState and the length of the UTF-8 name, followed by the name. The state holds the
+ * version along with health and alignment, so a log replayed over the snapshot can tell which of its
+ * changes the snapshot already has.
+ */
+public final class CharacterSnapshot {
+    private static final int MAGIC = 0x4D4D4F53;
+    private static final int VERSION = 2;
+    // magic, version, record count, index bytes and records bytes
+    private static final int HEADER_BYTES = 24;
+    // ints in a record before the name
+    private static final int RECORD_HEADER_BYTES = 16;
+
+    // writes snapshots saved with saveAsync, one at a time
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "character-snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // one element per character, in slot order after the empty slots are squeezed out
+    private final String[] names;
+    private final int[] heights;
+    private final int[] weights;
+    // health, alignment and version, packed by CharacterState
+    private final int[] states;
+    // name index with each value remapped to the character's position in the arrays above
+    private final HashIndexImage index;
+
+    private CharacterSnapshot(String[] names, int[] heights, int[] weights, int[] states, HashIndexImage index) {
+        this.names = names;
+        this.heights = heights;
+        this.weights = weights;
+        this.states = states;
+        this.index = index;
+    }
+
+    /**
+     * Copies the characters and name index of a database. The copy does no I/O, and the database
+     * can change again as soon as this returns.
+     *
+     * @param database database to copy
+     * @return snapshot of the database
+     */
+    public static CharacterSnapshot capture(CharacterDatabase database) {
+        CharacterStore store = database.characterStore;
+        int characterCount = database.dictionary.getSize();
+        String[] names = new String[characterCount];
+        int[] heights = new int[characterCount];
+        int[] weights = new int[characterCount];
+        int[] states = new int[characterCount];
+        // position in the snapshot of the character in each slot
+        int[] positions = new int[store.getSlotCount()];
+
+        //Runtime: O(n), where n is the number of slots in the store
+        int position = 0;
+        for (int slot = 0; slot < store.getSlotCount(); slot++) {
+            CharacterInterface character = store.get(slot);
+            if (character == null) {
+                positions[slot] = ObjectIntHashedDictionary.NO_VALUE;
+            } else {
+                names[position] = character.getName();
+                heights[position] = character.getHeight();
+                weights[position] = character.getWeight();
+                states[position] = store.getState(slot);
+                positions[slot] = position;
+                position++;
+            }
+        }
+        if (position != characterCount) {
+            throw new IllegalStateException("Character store and index disagree on the number of characters");
+        }
+        HashIndexImage index = database.dictionary.captureImage();
+        index.remapValues(positions);
+        return new CharacterSnapshot(names, heights, weights, states, index);
+    }
+
+    /**
+     * Copies a database and writes the copy to a file
+     *
+     * @param database database to save
+     * @param path file to write
+     * @throws IOException if the file can not be written
+     */
+    public static void save(CharacterDatabase database, Path path) throws IOException {
+        capture(database).writeTo(path);
+    }
+
+    /**
+     * Copies a database on the calling thread and writes the copy to a file on a background thread
+     *
+     * @param database database to save
+     * @param path file to write
+     * @return a future completed once the file is written, or completed exceptionally with an
+     * UncheckedIOException if it could not be
+     */
+    public static CompletableFuture<Void> saveAsync(CharacterDatabase database, Path path) {
+        CharacterSnapshot snapshot = capture(database);
+        return CompletableFuture.runAsync(() -> {
+            try {
+                snapshot.writeTo(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, WRITER);
+    }
+
+    /**
+     * Copies a database on the calling thread, writes the copy to a file on a background thread and then
+     * drops the records the copy holds from the database's write-ahead log. Changes made while the copy is
+     * taken or written stay in the log.
+     *
+     * @param database database to save
+     * @param path file to write
+     * @param log write-ahead log attached to the database
+     * @return a future completed once the file is written and the log reset, or completed exceptionally
+     * with an UncheckedIOException if either could not be
+     */
+    public static CompletableFuture<Void> saveAsync(CharacterDatabase database, Path path, WriteAheadLog log) {
+        // every record before the mark was appended after its change, so the copy holds the change
+        long mark = log.mark();
+        CharacterSnapshot snapshot = capture(database);
+        return CompletableFuture.runAsync(() -> {
+            try {
+                snapshot.writeTo(path);
+                log.reset(mark);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, WRITER);
+    }
+
+    /**
+     * Returns the number of characters in the snapshot
+     *
+     * @return number of characters
+     */
+    public int getCharacterCount() {
+        return names.length;
+    }
+
+    /**
+     * Writes the snapshot to a file through memory-mapped buffers. The snapshot is written next to
+     * the file and moved over it once complete, so a failed write leaves the previous file intact.
+     *
+     * @param path file to write
+     * @throws IOException if the file can not be written
+     * @throws IllegalStateException if a section is larger than one mapping can hold
+     */
+    public void writeTo(Path path) throws IOException {
+        //Runtime: O(n), where n is the number of characters
+        byte[][] encodedNames = new byte[names.length][];
+        long recordsBytes = 0;
+        for (int position = 0; position < names.length; position++) {
+            encodedNames[position] = names[position].getBytes(StandardCharsets.UTF_8);
+            recordsBytes += RECORD_HEADER_BYTES + encodedNames[position].length;
+        }
+        long indexBytes = index.getSerializedSize();
+        if (indexBytes > Integer.MAX_VALUE || recordsBytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Snapshot section is too large to map");
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer indexSection = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES, indexBytes);
+            index.writeTo(indexSection);
+            indexSection.force();
+
+            MappedByteBuffer recordSection = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + indexBytes,
+                    recordsBytes);
+            for (int position = 0; position < names.length; position++) {
+                recordSection.putInt(heights[position]);
+                recordSection.putInt(weights[position]);
+                recordSection.putInt(states[position]);
+                recordSection.putInt(encodedNames[position].length);
+                recordSection.put(encodedNames[position]);
+            }
+            recordSection.force();
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(names.length);
+            header.putInt((int) indexBytes);
+            header.putLong(recordsBytes);
+            header.force();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores a database from a snapshot file. The characters are added to the given store in
+     * order and the name index is rebuilt from the saved hash codes, without hashing any name.
+     *
+     * @param path snapshot file to read
+     * @param characterStore empty store to restore the characters into
+     * @return the restored database
+     * @throws IOException if the file can not be read or is not a valid snapshot
+     * @throws IllegalArgumentException if the store is null or not empty
+     */
+    public static CharacterDatabase load(Path path, CharacterStore characterStore) throws IOException {
+        if (characterStore == null || characterStore.getSlotCount() != 0) {
+            throw new IllegalArgumentException("Character store must be empty");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Snapshot is truncated");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a character snapshot, or written by another version");
+            }
+            int characterCount = header.getInt();
+            int indexBytes = header.getInt();
+            long recordsBytes = header.getLong();
+            if (characterCount < 0 || indexBytes < 0 || recordsBytes < 0 || recordsBytes > Integer.MAX_VALUE
+                    || channel.size() != HEADER_BYTES + indexBytes + recordsBytes) {
+                throw new IOException("Snapshot is corrupt");
+            }
+
+            MappedByteBuffer indexSection = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, indexBytes);
+            MappedByteBuffer recordSection = channel.map(FileChannel.MapMode.READ_ONLY,
+                    (long) HEADER_BYTES + indexBytes, recordsBytes);
+            try {
+                HashIndexImage index = HashIndexImage.readFrom(indexSection);
+                String[] names = readRecords(recordSection, characterCount, characterStore);
+                ObjectIntHashedDictionary<String> dictionary = ObjectIntHashedDictionary.fromImage(index,
+                        slot -> (slot >= 0 && slot < names.length) ? names[slot] : null);
+                if (dictionary.getSize() != characterCount) {
+                    throw new IOException("Snapshot index does not match its characters");
+                }
+                return new CharacterDatabase(characterStore, dictionary);
+            } catch (IllegalArgumentException | BufferUnderflowException e) {
+                throw new IOException("Snapshot is corrupt", e);
+            }
+        }
+    }
+
+    /**
+     * Adds every record of the record section to a store, one slot per record, with the saved version
+     *
+     * @param records mapped record section
+     * @param characterCount number of records
+     * @param characterStore empty store to add to
+     * @return the name of each record, which is also the slot it was added to
+     * @throws IOException if a record is invalid
+     */
+    private static String[] readRecords(ByteBuffer records, int characterCount, CharacterStore characterStore)
+            throws IOException {
+        characterStore.ensureCapacity(characterCount);
+        String[] names = new String[characterCount];
+        byte[] nameBytes = new byte[64];
+        //Runtime: O(n), where n is the number of characters
+        for (int position = 0; position < characterCount; position++) {
+            int height = records.getInt();
+            int weight = records.getInt();
+            int state = records.getInt();
+            int nameLength = records.getInt();
+            if (nameLength <= 0 || nameLength > records.remaining()) {
+                throw new IOException("Snapshot record " + position + " is corrupt");
+            }
+            if (nameLength > nameBytes.length) {
+                nameBytes = new byte[Math.max(nameLength, nameBytes.length * 2)];
+            }
+            records.get(nameBytes, 0, nameLength);
+            names[position] = new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8);
+            int health = CharacterState.health(state);
+            double moralAlign = CharacterState.moralAlign(state);
+            int slot = characterStore.add(names[position], height, weight, health, moralAlign);
+            characterStore.restoreState(slot, health, moralAlign, CharacterState.version(state));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,251 @@
+package CharacterStuff;
+
+/*
+ * Packs a character's health and moral alignment into one int so both can be read and
+ * updated together with a single compare-and-set. Alignment is kept in tenths, which is
+ * the precision Character already rounds it to. The top 16 bits count the changes made to
+ * the state, so two saved states of one character can be put in order.
+ **/
+final class CharacterState {
+    static final int MAX_HEALTH = 100;
+    static final int MAX_ALIGNMENT_TENTHS = 10;
+    // health lives in the low byte, alignment tenths in the byte above it and the version above that
+    private static final int HEALTH_MASK = 0xff;
+    private static final int ALIGNMENT_SHIFT = 8;
+    private static final int ALIGNMENT_MASK = 0xff;
+    private static final int VERSION_SHIFT = 16;
+
+    private CharacterState() {
+    }
+
+    /**
+     * Returns the packed state for the given health and alignment, at version 0
+     *
+     * @param health health from 0 to 100
+     * @param alignmentTenths moral alignment in tenths, from 0 to 10
+     * @return packed state
+     */
+    static int pack(int health, int alignmentTenths) {
+        return (alignmentTenths << ALIGNMENT_SHIFT) | health;
+    }
+
+    /**
+     * Returns the packed state for the given health, alignment and version
+     *
+     * @param health health from 0 to 100
+     * @param alignmentTenths moral alignment in tenths, from 0 to 10
+     * @param version version from 0 to 65535
+     * @return packed state
+     */
+    static int pack(int health, int alignmentTenths, int version) {
+        return (version << VERSION_SHIFT) | pack(health, alignmentTenths);
+    }
+
+    /**
+     * Returns the state that follows the given one, with new health and alignment and the next version
+     *
+     * @param state packed state being replaced
+     * @param health health from 0 to 100
+     * @param alignmentTenths moral alignment in tenths, from 0 to 10
+     * @return packed state
+     */
+    private static int next(int state, int health, int alignmentTenths) {
+        // the version wraps around after 65535 changes
+        return ((version(state) + 1) << VERSION_SHIFT) | pack(health, alignmentTenths);
+    }
+
+    /**
+     * Returns the number of changes made to a state, modulo 65536
+     *
+     * @param state packed state
+     * @return version from 0 to 65535
+     */
+    static int version(int state) {
+        return state >>> VERSION_SHIFT;
+    }
+
+    /**
+     * Returns true if version a was made after version b, assuming they are less than 32768 changes apart
+     *
+     * @param a a version
+     * @param b another version of the same character
+     * @return true if a is newer than b
+     */
+    static boolean isNewer(int a, int b) {
+        return (short) (a - b) > 0;
+    }
+
+    /**
+     * Returns the health stored in a packed state
+     *
+     * @param state packed state
+     * @return health
+     */
+    static int health(int state) {
+        return state & HEALTH_MASK;
+    }
+
+    /**
+     * Returns the moral alignment in tenths stored in a packed state
+     *
+     * @param state packed state
+     * @return alignment in tenths
+     */
+    static int alignmentTenths(int state) {
+        return (state >>> ALIGNMENT_SHIFT) & ALIGNMENT_MASK;
+    }
+
+    /**
+     * Returns the moral alignment stored in a packed state
+     *
+     * @param state packed state
+     * @return alignment from 0.0 to 1.0
+     */
+    static double moralAlign(int state) {
+        return alignmentTenths(state) / 10.0;
+    }
+
+    /**
+     * Rounds a moral alignment to tenths
+     *
+     * @param moralAlign alignment from 0.0 to 1.0
+     * @return alignment in tenths
+     */
+    static int toTenths(double moralAlign) {
+        return (int) Math.round(moralAlign * 10);
+    }
+
+    /**
+     * Checks the attributes of a new character the same way the Character constructor does
+     *
+     * @param name name of character
+     * @param height height of character
+     * @param moralAlign moral alignment of character from 0.0 to 1.0
+     * @throws IllegalArgumentException if an attribute is not in range
+     */
+    static void checkAttributes(String name, int height, double moralAlign) {
+        if (moralAlign < 0.0 || moralAlign > 1.0) {
+            throw new IllegalArgumentException("Moral alignment must be greater than 0.0 and less than 1.0");
+        }
+        if (name == null || name.equals("")) {
+            throw new IllegalArgumentException("Name must not be empty or null");
+        }
+        if (height <= 0) {
+            throw new IllegalArgumentException("Height must be greater than 0");
+        }
+    }
+
+    /**
+     * Checks that a saved health value is in range
+     *
+     * @param health health from 0 to 100
+     * @throws IllegalArgumentException if the health is not in range
+     */
+    static void checkHealth(int health) {
+        if (health < 0 || health > MAX_HEALTH) {
+            throw new IllegalArgumentException("Health must be between 0 and " + MAX_HEALTH);
+        }
+    }
+
+    /**
+     * Returns the text Character.toString gives for the given attributes
+     *
+     * @param name name of character
+     * @param height height of character
+     * @param weight weight of character
+     * @param state packed health and alignment
+     * @return string of character stats
+     */
+    static String format(String name, int height, int weight, int state) {
+        return "Name: " + name + ", Height: " + height + ", Weight: " + weight + ", Health: " +
+                health(state) + " Moral Alignment: " + moralAlign(state);
+    }
+
+    /**
+     * Tells a listener, if there is one, about a character's new state
+     *
+     * @param listener listener to tell, or null
+     * @param name name of the character
+     * @param state packed state after the change
+     */
+    static void report(CharacterListener listener, String name, int state) {
+        if (listener != null) {
+            listener.characterChanged(name, health(state), moralAlign(state), version(state));
+        }
+    }
+
+    /**
+     * Checks that a heal or injure amount is positive
+     *
+     * @param amount amount to be checked
+     * @throws IllegalArgumentException "Must be a positive number"
+     */
+    static void checkAmount(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Must be a positive number");
+        }
+    }
+
+    /**
+     * Returns the state after healing, with health capped at 100
+     *
+     * @param state packed state
+     * @param healAmount positive amount to be healed
+     * @return new packed state
+     */
+    static int heal(int state, int healAmount) {
+        // compared before adding, so a very large amount can not overflow
+        int health = health(state) + Math.min(healAmount, MAX_HEALTH - health(state));
+        return next(state, health, alignmentTenths(state));
+    }
+
+    /**
+     * Returns the state after an injury, with health floored at 0
+     *
+     * @param state packed state
+     * @param injureAmount positive amount to be injured
+     * @return new packed state
+     */
+    static int injure(int state, int injureAmount) {
+        // health is at most 100, so a large amount can not overflow
+        int health = Math.max(health(state) - injureAmount, 0);
+        return next(state, health, alignmentTenths(state));
+    }
+
+    /**
+     * Returns the state after a run of heals and injuries, applied in order with the same capping
+     * as heal and injure. The run counts as a single change, so the version goes up by one.
+     *
+     * @param state packed state
+     * @param amounts amounts, positive to heal and negative to injure
+     * @param from index of the first amount
+     * @param to index after the last amount
+     * @return new packed state
+     */
+    static int applyHealthChanges(int state, int[] amounts, int from, int to) {
+        int health = health(state);
+        //Runtime: O(n), where n is the number of amounts
+        for (int index = from; index < to; index++) {
+            int amount = amounts[index];
+            // health is at most 100, so neither direction can overflow
+            health = (amount > 0) ? health + Math.min(amount, MAX_HEALTH - health) : Math.max(health + amount, 0);
+        }
+        return next(state, health, alignmentTenths(state));
+    }
+
+    /**
+     * Returns the state after the moral alignment is changed
+     *
+     * @param state packed state
+     * @param moralAlign the amount to change moral align
+     * @return new packed state
+     * @throws IllegalArgumentException if the resulting moral alignment is not within the valid range.
+     */
+    static int change(int state, double moralAlign) {
+        double newAlign = moralAlign(state) + moralAlign;
+        if (newAlign < 0.0 || newAlign > 1.0) {
+            throw new IllegalArgumentException("Moral alignment must not exceed 1.0 or be below 0.0");
+        }
+        return next(state, health(state), toTenths(newAlign));
+    }
+}
@@ -0,0 +1,165 @@
+package CharacterStuff;
+
+/**
+ * The CharacterStore interface defines how a CharacterDatabase keeps its characters.
+ * Characters live in numbered slots. A slot is either occupied or empty, and the database
+ * decides which slots are reused and when characters are moved.
+ */
+public interface CharacterStore {
+    /**
+     * Returns the number of slots, occupied or empty.
+     *
+     * @return The number of slots in the store.
+     */
+    public int getSlotCount();
+
+    /**
+     * Sees whether a slot holds a character.
+     *
+     * @param slot The slot to check.
+     * @return True if the slot holds a character.
+     */
+    public boolean isOccupied(int slot);
+
+    /**
+     * Adds a new character in a new slot at the end of the store.
+     *
+     * @param name       The name of the character.
+     * @param height     The height of the character.
+     * @param weight     The weight of the character.
+     * @param moralAlign The moral alignment of the character.
+     * @return The slot of the new character.
+     */
+    public int add(String name, int height, int weight, double moralAlign);
+
+    /**
+     * Adds a saved character, keeping its health, in a new slot at the end of the store.
+     *
+     * @param name       The name of the character.
+     * @param height     The height of the character.
+     * @param weight     The weight of the character.
+     * @param health     The health of the character, from 0 to 100.
+     * @param moralAlign The moral alignment of the character.
+     * @return The slot of the new character.
+     */
+    public int add(String name, int height, int weight, int health, double moralAlign);
+
+    /**
+     * Puts a new character into an existing slot, replacing whatever was there.
+     *
+     * @param slot       The slot to fill.
+     * @param name       The name of the character.
+     * @param height     The height of the character.
+     * @param weight     The weight of the character.
+     * @param moralAlign The moral alignment of the character.
+     */
+    public void set(int slot, String name, int height, int weight, double moralAlign);
+
+    /**
+     * Empties a slot.
+     *
+     * @param slot The slot to empty.
+     */
+    public void clear(int slot);
+
+    /**
+     * Moves the character in one slot to another slot, leaving the first slot empty.
+     *
+     * @param fromSlot The slot holding the character.
+     * @param toSlot   The slot the character is moved to.
+     */
+    public void move(int fromSlot, int toSlot);
+
+    /**
+     * Drops every slot from the given slot count onwards.
+     *
+     * @param slotCount The number of slots to keep.
+     */
+    public void truncate(int slotCount);
+
+    /**
+     * Makes room for the given number of slots so adding up to that many does not grow the storage.
+     *
+     * @param slotCount The number of slots to make room for.
+     */
+    public void ensureCapacity(int slotCount);
+
+    /**
+     * Releases storage held beyond the current slot count.
+     */
+    public void trimToSize();
+
+    /**
+     * Heals and injures the character in a slot by a run of amounts, in order and with the same
+     * capping as heal and injure, as one atomic update reported as one change.
+     *
+     * @param slot    The slot of the character.
+     * @param name    The name of the character, reported with the change.
+     * @param amounts The amounts, positive to heal and negative to injure.
+     * @param from    The index of the first amount.
+     * @param to      The index after the last amount.
+     * @throws IllegalArgumentException if the slot is empty.
+     */
+    public void applyHealthChanges(int slot, String name, int[] amounts, int from, int to);
+
+    /**
+     * Puts the character in a slot back into a saved state, version included, and reports it as a change.
+     *
+     * @param slot       The slot of the character.
+     * @param health     The saved health, from 0 to 100.
+     * @param moralAlign The saved moral alignment.
+     * @param version    The saved version, from 0 to 65535.
+     * @throws IllegalArgumentException if the slot is empty or the health is out of range.
+     */
+    public void restoreState(int slot, int health, double moralAlign, int version);
+
+    /**
+     * Sets the listener told about every heal, injure and change made to a character in this store.
+     *
+     * @param listener The listener, or null for none.
+     */
+    public void setCharacterListener(CharacterListener listener);
+
+    /**
+     * Sets the metrics the heals, injuries and changes made to characters in this store are timed in.
+     *
+     * @param metrics The metrics, or null to stop timing.
+     */
+    public void setMetrics(DatabaseMetrics metrics);
+
+    /**
+     * Returns the name of the character in a slot.
+     *
+     * @param slot The slot to read.
+     * @return The name of the character, or null if the slot is empty.
+     */
+    public String getName(int slot);
+
+    /**
+     * Returns the health, moral alignment and version of the character in a slot, packed by
+     * CharacterState and read in one step.
+     *
+     * @param slot The slot to read.
+     * @return The packed state of the character.
+     * @throws IllegalArgumentException if the slot is empty.
+     */
+    public int getState(int slot);
+
+    /**
+     * Returns the character in a slot.
+     *
+     * @param slot The slot to read.
+     * @return The character, or null if the slot is empty.
+     */
+    public CharacterInterface get(int slot);
+
+    /**
+     * Returns the character in a slot whose name the caller already holds, so the store does
+     * not have to read the name back out of the slot.
+     *
+     * @param slot The slot to read.
+     * @param name The name of the character in the slot.
+     * @return The character, or null if the slot is empty.
+     */
+    public CharacterInterface get(int slot, String name);
+}
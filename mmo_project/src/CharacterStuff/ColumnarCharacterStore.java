@@ -0,0 +1,518 @@
+package CharacterStuff;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * The ColumnarCharacterStore keeps each character attribute in its own primitive array indexed
+ * by slot, instead of one Character object per slot. Health and moral alignment share one packed
+ * int column that is updated with compare-and-set, the same way Character updates them. Names are
+ * kept by reference, so the String already held as the dictionary key is not copied. An empty slot
+ * has a null name. Each fill of a slot gets a new generation, so views of a slot's earlier character
+ * stop working.
+ * Structural changes (adding, moving or removing characters) must not run at the same time as
+ * heal, injure or change on this store's characters, as growing the columns copies them.
+ */
+public class ColumnarCharacterStore implements CharacterStore {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final VarHandle STATES = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private String[] names;
+    private int[] heights;
+    private int[] weights;
+    // health and moral alignment, packed by CharacterState
+    private int[] states;
+    // generation of the character in each slot, 0 for an empty slot
+    private int[] generations;
+    private int slotCount;
+    private int lastGeneration;
+    // told about changes made through views, null for none
+    private volatile CharacterListener listener;
+    // times heals, injuries and changes made through views, null for none
+    private volatile DatabaseMetrics metrics;
+
+    /**
+     * Constructor for creating a new, empty ColumnarCharacterStore.
+     */
+    public ColumnarCharacterStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for creating a new, empty ColumnarCharacterStore with room for the given
+     * number of characters before the columns grow.
+     *
+     * @param initialCapacity number of slots to allocate
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public ColumnarCharacterStore(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity must not be negative");
+        }
+        names = new String[initialCapacity];
+        heights = new int[initialCapacity];
+        weights = new int[initialCapacity];
+        states = new int[initialCapacity];
+        generations = new int[initialCapacity];
+        slotCount = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOccupied(int slot) {
+        checkSlot(slot);
+        return names[slot] != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int add(String name, int height, int weight, double moralAlign) {
+        return add(name, height, weight, CharacterState.MAX_HEALTH, moralAlign);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int add(String name, int height, int weight, int health, double moralAlign) {
+        CharacterState.checkAttributes(name, height, moralAlign);
+        CharacterState.checkHealth(health);
+        if (slotCount == names.length) {
+            grow();
+        }
+        int slot = slotCount++;
+        write(slot, name, height, weight, health, moralAlign);
+        return slot;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(int slot, String name, int height, int weight, double moralAlign) {
+        checkSlot(slot);
+        CharacterState.checkAttributes(name, height, moralAlign);
+        write(slot, name, height, weight, CharacterState.MAX_HEALTH, moralAlign);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear(int slot) {
+        checkSlot(slot);
+        names[slot] = null;
+        generations[slot] = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void move(int fromSlot, int toSlot) {
+        checkSlot(fromSlot);
+        checkSlot(toSlot);
+        names[toSlot] = names[fromSlot];
+        heights[toSlot] = heights[fromSlot];
+        weights[toSlot] = weights[fromSlot];
+        states[toSlot] = states[fromSlot];
+        names[fromSlot] = null;
+        generations[toSlot] = nextGeneration();
+        generations[fromSlot] = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void truncate(int slotCount) {
+        if (slotCount < 0 || slotCount > this.slotCount) {
+            throw new IndexOutOfBoundsException("Slot count " + slotCount + " out of range");
+        }
+        // names are cleared so the dropped strings can be collected
+        Arrays.fill(names, slotCount, this.slotCount, null);
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void ensureCapacity(int slotCount) {
+        if (slotCount > names.length) {
+            if (slotCount > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Character store has become too large.");
+            }
+            resize(slotCount);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void trimToSize() {
+        resize(slotCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applyHealthChanges(int slot, String name, int[] amounts, int from, int to) {
+        checkSlot(slot);
+        if (names[slot] == null) {
+            throw new IllegalArgumentException("Slot " + slot + " is empty");
+        }
+        int current;
+        int updated;
+        do {
+            current = (int) STATES.getVolatile(states, slot);
+            updated = CharacterState.applyHealthChanges(current, amounts, from, to);
+        } while (!STATES.weakCompareAndSet(states, slot, current, updated));
+        CharacterState.report(listener, name, updated);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restoreState(int slot, int health, double moralAlign, int version) {
+        checkSlot(slot);
+        CharacterState.checkHealth(health);
+        String name = names[slot];
+        if (name == null) {
+            throw new IllegalArgumentException("Slot " + slot + " is empty");
+        }
+        int saved = CharacterState.pack(health, CharacterState.toTenths(moralAlign), version);
+        STATES.setVolatile(states, slot, saved);
+        CharacterState.report(listener, name, saved);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setCharacterListener(CharacterListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMetrics(DatabaseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName(int slot) {
+        checkSlot(slot);
+        return names[slot];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getState(int slot) {
+        checkSlot(slot);
+        if (names[slot] == null) {
+            throw new IllegalArgumentException("Slot " + slot + " is empty");
+        }
+        return (int) STATES.getVolatile(states, slot);
+    }
+
+    /**
+     * Returns a view of the character in a slot. The view reads and updates the columns directly.
+     * It stays valid until the character is removed or moved by compaction, after which using
+     * it throws IllegalStateException.
+     *
+     * @param slot The slot to read.
+     * @return A view of the character, or null if the slot is empty.
+     */
+    @Override
+    public CharacterInterface get(int slot) {
+        checkSlot(slot);
+        String name = names[slot];
+        return (name == null) ? null : new CharacterView(slot, generations[slot], name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CharacterInterface get(int slot, String name) {
+        return get(slot);
+    }
+
+    /**
+     * Returns the height of the character in a slot without creating a view
+     *
+     * @param slot occupied slot
+     * @return height of character
+     */
+    public int getHeight(int slot) {
+        checkSlot(slot);
+        return heights[slot];
+    }
+
+    /**
+     * Returns the weight of the character in a slot without creating a view
+     *
+     * @param slot occupied slot
+     * @return weight of character
+     */
+    public int getWeight(int slot) {
+        checkSlot(slot);
+        return weights[slot];
+    }
+
+    /**
+     * Returns the health of the character in a slot without creating a view
+     *
+     * @param slot occupied slot
+     * @return health of character
+     */
+    public int getHealth(int slot) {
+        checkSlot(slot);
+        return CharacterState.health((int) STATES.getVolatile(states, slot));
+    }
+
+    /**
+     * Returns the moral alignment of the character in a slot without creating a view
+     *
+     * @param slot occupied slot
+     * @return moral alignment of character
+     */
+    public double getMoralAlign(int slot) {
+        checkSlot(slot);
+        return CharacterState.moralAlign((int) STATES.getVolatile(states, slot));
+    }
+
+    /**
+     * Writes a validated character into a slot
+     *
+     * @param slot slot to fill
+     * @param name name of character
+     * @param height height of character
+     * @param weight weight of character
+     * @param health health of character
+     * @param moralAlign moral alignment of character
+     */
+    private void write(int slot, String name, int height, int weight, int health, double moralAlign) {
+        heights[slot] = height;
+        weights[slot] = weight;
+        STATES.setVolatile(states, slot, CharacterState.pack(health, CharacterState.toTenths(moralAlign)));
+        names[slot] = name;
+        generations[slot] = nextGeneration();
+    }
+
+    /**
+     * Returns a new generation for a filled slot, never 0
+     *
+     * @return the generation
+     */
+    private int nextGeneration() {
+        lastGeneration++;
+        if (lastGeneration == 0) {
+            lastGeneration = 1;
+        }
+        return lastGeneration;
+    }
+
+    /**
+     * Doubles the length of every column
+     */
+    private void grow() {
+        if (names.length == Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Character store has become too large.");
+        }
+        resize((int) Math.min(Math.max(names.length * 2L, DEFAULT_CAPACITY), Integer.MAX_VALUE - 8));
+    }
+
+    /**
+     * Copies every column into arrays of the given length
+     *
+     * @param length new length of the columns
+     */
+    private void resize(int length) {
+        //Runtime: O(n), where n is the number of slots
+        names = Arrays.copyOf(names, length);
+        heights = Arrays.copyOf(heights, length);
+        weights = Arrays.copyOf(weights, length);
+        states = Arrays.copyOf(states, length);
+        generations = Arrays.copyOf(generations, length);
+    }
+
+    /**
+     * Checks that a slot is inside the store
+     *
+     * @param slot slot to check
+     * @throws IndexOutOfBoundsException if the slot is not inside the store
+     */
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= slotCount) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " out of range");
+        }
+    }
+
+    /**
+     * A character backed by one slot of the columns. It remembers the generation of the slot it was
+     * created for, so a slot that has since been emptied or refilled, even under the same name, is
+     * detected instead of read.
+     */
+    private final class CharacterView implements CharacterInterface {
+        private final int slot;
+        private final int generation;
+        private final String name;
+
+        private CharacterView(int slot, int generation, String name) {
+            this.slot = slot;
+            this.generation = generation;
+            this.name = name;
+        }
+
+        /**
+         * Returns the slot of the character, checking that it still holds this character
+         *
+         * @return slot of the character
+         * @throws IllegalStateException if the character was removed or moved
+         */
+        private int slot() {
+            if (slot >= slotCount || generations[slot] != generation) {
+                throw new IllegalStateException("Character " + name + " is no longer in this slot");
+            }
+            return slot;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getHeight() {
+            return heights[slot()];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getWeight() {
+            return weights[slot()];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getHealth() {
+            return CharacterState.health((int) STATES.getVolatile(states, slot()));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getMoralAlign() {
+            return CharacterState.moralAlign((int) STATES.getVolatile(states, slot()));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void heal(int healAmount) {
+            CharacterState.checkAmount(healAmount);
+            DatabaseMetrics timing = metrics;
+            long start = (timing == null) ? 0 : System.nanoTime();
+            int index = slot();
+            int current;
+            int updated;
+            do {
+                current = (int) STATES.getVolatile(states, index);
+                updated = CharacterState.heal(current, healAmount);
+            } while (!STATES.weakCompareAndSet(states, index, current, updated));
+            CharacterState.report(listener, name, updated);
+            if (timing != null) {
+                timing.recordSince(DatabaseOperation.HEAL, start);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void injure(int injureAmount) {
+            CharacterState.checkAmount(injureAmount);
+            DatabaseMetrics timing = metrics;
+            long start = (timing == null) ? 0 : System.nanoTime();
+            int index = slot();
+            int current;
+            int updated;
+            do {
+                current = (int) STATES.getVolatile(states, index);
+                updated = CharacterState.injure(current, injureAmount);
+            } while (!STATES.weakCompareAndSet(states, index, current, updated));
+            CharacterState.report(listener, name, updated);
+            if (timing != null) {
+                timing.recordSince(DatabaseOperation.INJURE, start);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void change(double moralAlign) {
+            DatabaseMetrics timing = metrics;
+            long start = (timing == null) ? 0 : System.nanoTime();
+            int index = slot();
+            int current;
+            int updated;
+            do {
+                current = (int) STATES.getVolatile(states, index);
+                updated = CharacterState.change(current, moralAlign);
+            } while (!STATES.weakCompareAndSet(states, index, current, updated));
+            CharacterState.report(listener, name, updated);
+            if (timing != null) {
+                timing.recordSince(DatabaseOperation.CHANGE, start);
+            }
+        }
+
+        /**
+         * Returns a formated string of all the characters stats
+         *
+         * @return string of character stats
+         */
+        @Override
+        public String toString() {
+            int index = slot();
+            return CharacterState.format(name, heights[index], weights[index], (int) STATES.getVolatile(states, index));
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package CharacterStuff;
+
+import Dictionary.AbstractHashedDictionary;
+import Dictionary.ProbeStatistics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * DatabaseMetrics records how a character database behaves: a LatencyHistogram per DatabaseOperation,
+ * which also gives the operation's count and throughput, and the health of the hash dictionary indexing
+ * the characters, read from the dictionary and from a ProbeStatistics listening to it. A sharded database
+ * shares one DatabaseMetrics between its shards, and the health figures add up all of their dictionaries.
+ * Everything can be read through the getters here or through JMX once registerMBeans has been called.
+ * Latencies are recorded without locking from any thread. Probe statistics are counted without locking
+ * too, so lookups running in parallel on one dictionary may lose a few of them.
+ */
+public class DatabaseMetrics implements DatabaseMetricsMBean {
+    private static final DatabaseOperation[] OPERATIONS = DatabaseOperation.values();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    // dictionaries whose health is reported, copied when one is added so they can be read without locking
+    private volatile Table[] tables = new Table[0];
+    // names the MBeans are registered under, null while they are not
+    private ObjectName[] registeredNames;
+
+    /**
+     * Creates metrics with empty histograms and no dictionaries
+     */
+    DatabaseMetrics() {
+        //Runtime: O(1), one histogram per operation
+        for (DatabaseOperation operation : OPERATIONS) {
+            latencies[operation.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Starts reporting the health of a dictionary. Its probe listener is replaced with the
+     * ProbeStatistics the probe figures are read from.
+     *
+     * @param dictionary dictionary indexing characters
+     */
+    synchronized void attach(AbstractHashedDictionary<?> dictionary) {
+        ProbeStatistics statistics = new ProbeStatistics();
+        dictionary.setProbeListener(statistics);
+        Table[] updated = Arrays.copyOf(tables, tables.length + 1);
+        updated[tables.length] = new Table(dictionary, statistics);
+        tables = updated;
+    }
+
+    /**
+     * Records the time an operation took, from a start time taken from System.nanoTime
+     *
+     * @param operation operation that was carried out
+     * @param startNanos System.nanoTime when the operation started
+     */
+    void recordSince(DatabaseOperation operation, long startNanos) {
+        latencies[operation.ordinal()].recordSince(startNanos);
+    }
+
+    /**
+     * Records a batch of operations carried out together, each as taking an equal share of the batch's time
+     *
+     * @param operation operation that was carried out
+     * @param startNanos System.nanoTime when the batch started
+     * @param count number of operations in the batch
+     */
+    void recordSince(DatabaseOperation operation, long startNanos, int count) {
+        if (count > 0) {
+            latencies[operation.ordinal()].record((System.nanoTime() - startNanos) / count, count);
+        }
+    }
+
+    /**
+     * Returns the latency histogram of an operation
+     *
+     * @param operation operation to look up
+     * @return histogram of the operation's latencies
+     * @throws IllegalArgumentException if the operation is null
+     */
+    public LatencyHistogram getLatencies(DatabaseOperation operation) {
+        if (operation == null) {
+            throw new IllegalArgumentException("Operation must not be null");
+        }
+        return latencies[operation.ordinal()];
+    }
+
+    /**
+     * Returns the number of times an operation has been carried out since the metrics were enabled or reset
+     *
+     * @param operation operation to look up
+     * @return number of operations
+     * @throws IllegalArgumentException if the operation is null
+     */
+    public long getOperationCount(DatabaseOperation operation) {
+        return getLatencies(operation).getCount();
+    }
+
+    /**
+     * Returns the number of times per second an operation has been carried out since the metrics were
+     * enabled or reset
+     *
+     * @param operation operation to look up
+     * @return operations per second
+     * @throws IllegalArgumentException if the operation is null
+     */
+    public double getThroughput(DatabaseOperation operation) {
+        return getLatencies(operation).getThroughput();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getEntryCount() {
+        int entries = 0;
+        //Runtime: O(d), where d is the number of dictionaries
+        for (Table table : tables) {
+            entries += table.dictionary.getSize();
+        }
+        return entries;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTableLength() {
+        int length = 0;
+        //Runtime: O(d), where d is the number of dictionaries
+        for (Table table : tables) {
+            length += table.dictionary.getTableLength();
+        }
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLoadFactor() {
+        int length = getTableLength();
+        return (length == 0) ? 0.0 : (double) getEntryCount() / length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTombstoneCount() {
+        int tombstones = 0;
+        //Runtime: O(d), where d is the number of dictionaries
+        for (Table table : tables) {
+            tombstones += table.dictionary.getTombstoneCount();
+        }
+        return tombstones;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getProbeSequences() {
+        long sequences = 0;
+        //Runtime: O(d), where d is the number of dictionaries
+        for (Table table : tables) {
+            sequences += table.statistics.getProbeSequences();
+        }
+        return sequences;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getAverageProbeLength() {
+        long sequences = 0;
+        double totalLength = 0;
+        //Runtime: O(d), where d is the number of dictionaries
+        for (Table table : tables) {
+            long tableSequences = table.statistics.getProbeSequences();
+            sequences += tableSequences;
+            totalLength += table.statistics.getAverageProbeLength() * tableSequences;
+        }
+        return (sequences == 0) ? 0.0 : totalLength / sequences;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxProbeLength() {
+        int maxLength = 0;
+        //Runtime: O(d), where d is the number of dictionaries
+        for (Table table : tables) {
+            maxLength = Math.max(maxLength, table.statistics.getMaxProbeLength());
+        }
+        return maxLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long[] getProbeHistogram() {
+        long[] histogram = new long[ProbeStatistics.HISTOGRAM_SIZE];
+        //Runtime: O(d * h), where d is the number of dictionaries and h the histogram size
+        for (Table table : tables) {
+            long[] tableHistogram = table.statistics.getProbeHistogram();
+            for (int length = 0; length < histogram.length; length++) {
+                histogram[length] += tableHistogram[length];
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getResizeCount() {
+        int resizes = 0;
+        //Runtime: O(d), where d is the number of dictionaries
+        for (Table table : tables) {
+            resizes += table.statistics.getResizeCount();
+        }
+        return resizes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getRebuildCount() {
+        int rebuilds = 0;
+        //Runtime: O(d), where d is the number of dictionaries
+        for (Table table : tables) {
+            rebuilds += table.statistics.getRebuildCount();
+        }
+        return rebuilds;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTotalResizeNanos() {
+        long nanos = 0;
+        //Runtime: O(d), where d is the number of dictionaries
+        for (Table table : tables) {
+            nanos += table.statistics.getTotalResizeNanos();
+        }
+        return nanos;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        //Runtime: O(d), where d is the number of dictionaries
+        for (LatencyHistogram histogram : latencies) {
+            histogram.reset();
+        }
+        for (Table table : tables) {
+            table.statistics.reset();
+        }
+    }
+
+    /**
+     * Publishes the metrics through the platform MBean server: the dictionary health under
+     * CharacterStuff:type=CharacterDatabase,name="name" and each operation's latencies under the same
+     * name with an operation key, such as operation=get.
+     *
+     * @param name name telling this database apart from others in the same process
+     * @throws JMException if an MBean can not be registered, in which case none are left registered
+     * @throws IllegalArgumentException if the name is null
+     * @throws IllegalStateException if the MBeans are already registered
+     */
+    public synchronized void registerMBeans(String name) throws JMException {
+        if (name == null) {
+            throw new IllegalArgumentException("Name must not be null");
+        }
+        if (registeredNames != null) {
+            throw new IllegalStateException("Metrics are already registered");
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String prefix = "CharacterStuff:type=CharacterDatabase,name=" + ObjectName.quote(name);
+        ObjectName[] names = new ObjectName[OPERATIONS.length + 1];
+        int registered = 0;
+        try {
+            names[0] = new ObjectName(prefix);
+            server.registerMBean(this, names[0]);
+            registered++;
+            //Runtime: O(1), one MBean per operation
+            for (DatabaseOperation operation : OPERATIONS) {
+                names[registered] = new ObjectName(prefix + ",operation=" +
+                        operation.name().toLowerCase(Locale.ROOT));
+                server.registerMBean(latencies[operation.ordinal()], names[registered]);
+                registered++;
+            }
+        } catch (JMException e) {
+            unregister(server, names, registered);
+            throw e;
+        }
+        registeredNames = names;
+    }
+
+    /**
+     * Removes the MBeans published by registerMBeans. Nothing happens if they are not registered.
+     */
+    public synchronized void unregisterMBeans() {
+        if (registeredNames != null) {
+            unregister(ManagementFactory.getPlatformMBeanServer(), registeredNames, registeredNames.length);
+            registeredNames = null;
+        }
+    }
+
+    /**
+     * Returns a formatted summary of the metrics
+     *
+     * @return summary of the metrics
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder();
+        //Runtime: O(1), one line per operation
+        for (DatabaseOperation operation : OPERATIONS) {
+            summary.append(operation).append(": ").append(latencies[operation.ordinal()]).append('\n');
+        }
+        summary.append("Entries: ").append(getEntryCount()).append(", Load factor: ").append(getLoadFactor())
+                .append(", Tombstones: ").append(getTombstoneCount())
+                .append(", Average probe length: ").append(getAverageProbeLength())
+                .append(", Max probe length: ").append(getMaxProbeLength())
+                .append(", Resizes: ").append(getResizeCount()).append(", Rebuilds: ").append(getRebuildCount());
+        return summary.toString();
+    }
+
+    /**
+     * Unregisters the first MBeans of a list of names, ignoring any that are already gone
+     *
+     * @param server server the MBeans are registered with
+     * @param names names of the MBeans
+     * @param count number of names to unregister
+     */
+    private static void unregister(MBeanServer server, ObjectName[] names, int count) {
+        //Runtime: O(n), where n is count
+        for (int index = 0; index < count; index++) {
+            try {
+                server.unregisterMBean(names[index]);
+            } catch (JMException e) {
+                // already unregistered by someone else
+            }
+        }
+    }
+
+    /*
+     * A dictionary whose health is reported, with the statistics listening to its probes.
+     **/
+    private static final class Table {
+        private final AbstractHashedDictionary<?> dictionary;
+        private final ProbeStatistics statistics;
+
+        private Table(AbstractHashedDictionary<?> dictionary, ProbeStatistics statistics) {
+            this.dictionary = dictionary;
+            this.statistics = statistics;
+        }
+    }
+}
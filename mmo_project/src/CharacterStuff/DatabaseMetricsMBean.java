@@ -0,0 +1,89 @@
+package CharacterStuff;
+
+/**
+ * The dictionary health attributes and operations of a DatabaseMetrics published through JMX. The
+ * latencies of each operation are published separately by its LatencyHistogram.
+ */
+public interface DatabaseMetricsMBean {
+    /**
+     * Returns the number of characters indexed.
+     *
+     * @return The number of dictionary entries.
+     */
+    public int getEntryCount();
+
+    /**
+     * Returns the total length of the hash tables.
+     *
+     * @return The number of slots.
+     */
+    public int getTableLength();
+
+    /**
+     * Returns the share of the hash table slots the entries fill.
+     *
+     * @return The entry count divided by the table length.
+     */
+    public double getLoadFactor();
+
+    /**
+     * Returns the number of hash table slots holding removed entries.
+     *
+     * @return The number of tombstones.
+     */
+    public int getTombstoneCount();
+
+    /**
+     * Returns the number of probe sequences followed since the metrics were enabled or reset.
+     *
+     * @return The number of probe sequences.
+     */
+    public long getProbeSequences();
+
+    /**
+     * Returns the average number of slots inspected after the home slot.
+     *
+     * @return The average probe length.
+     */
+    public double getAverageProbeLength();
+
+    /**
+     * Returns the longest probe sequence followed.
+     *
+     * @return The longest probe length.
+     */
+    public int getMaxProbeLength();
+
+    /**
+     * Returns the number of probe sequences of each length; the last entry also counts longer ones.
+     *
+     * @return The probe-length histogram.
+     */
+    public long[] getProbeHistogram();
+
+    /**
+     * Returns the number of times a hash table was enlarged.
+     *
+     * @return The number of resizes.
+     */
+    public int getResizeCount();
+
+    /**
+     * Returns the number of times a table full of removed entries was rebuilt at the same size.
+     *
+     * @return The number of rebuilds.
+     */
+    public int getRebuildCount();
+
+    /**
+     * Returns the total time spent resizing and rebuilding hash tables.
+     *
+     * @return The resize time, in nanoseconds.
+     */
+    public long getTotalResizeNanos();
+
+    /**
+     * Clears the recorded latencies and probe statistics.
+     */
+    public void reset();
+}
@@ -0,0 +1,19 @@
+package CharacterStuff;
+
+/**
+ * The operations on a character database whose latencies DatabaseMetrics records.
+ */
+public enum DatabaseOperation {
+    /** Adding a character, or replacing the character with the same name. */
+    ADD,
+    /** Removing a character by name. */
+    REMOVE,
+    /** Looking a character up by name. */
+    GET,
+    /** Healing a character returned by a lookup. */
+    HEAL,
+    /** Injuring a character returned by a lookup. */
+    INJURE,
+    /** Changing the moral alignment of a character returned by a lookup. */
+    CHANGE
+}
@@ -0,0 +1,217 @@
+package CharacterStuff;
+
+import java.util.ArrayList;
+
+/**
+ * The HeapCharacterStore keeps one Character object per slot in an ArrayList.
+ * Empty slots hold null.
+ */
+public class HeapCharacterStore implements CharacterStore {
+    //ArrayList to store character instances
+    private final ArrayList<Character> characterList;
+    // given to every character in the store, null for none
+    private CharacterListener listener;
+    // given to every character in the store, null for none
+    private DatabaseMetrics metrics;
+
+    /**
+     * Constructor for creating a new, empty HeapCharacterStore.
+     */
+    public HeapCharacterStore() {
+        characterList = new ArrayList<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSlotCount() {
+        return characterList.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOccupied(int slot) {
+        return characterList.get(slot) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int add(String name, int height, int weight, double moralAlign) {
+        return add(name, height, weight, CharacterState.MAX_HEALTH, moralAlign);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int add(String name, int height, int weight, int health, double moralAlign) {
+        Character character = new Character(name, height, weight, health, moralAlign);
+        character.listener = listener;
+        character.metrics = metrics;
+        characterList.add(character);
+        return characterList.size() - 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(int slot, String name, int height, int weight, double moralAlign) {
+        Character character = new Character(name, height, weight, moralAlign);
+        character.listener = listener;
+        character.metrics = metrics;
+        detach(characterList.set(slot, character));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear(int slot) {
+        detach(characterList.set(slot, null));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void move(int fromSlot, int toSlot) {
+        detach(characterList.set(toSlot, characterList.get(fromSlot)));
+        characterList.set(fromSlot, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void truncate(int slotCount) {
+        //Runtime: O(n), where n is the number of slots dropped
+        for (int slot = slotCount; slot < characterList.size(); slot++) {
+            detach(characterList.get(slot));
+        }
+        characterList.subList(slotCount, characterList.size()).clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void ensureCapacity(int slotCount) {
+        characterList.ensureCapacity(slotCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void trimToSize() {
+        characterList.trimToSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applyHealthChanges(int slot, String name, int[] amounts, int from, int to) {
+        Character character = characterList.get(slot);
+        if (character == null) {
+            throw new IllegalArgumentException("Slot " + slot + " is empty");
+        }
+        character.applyHealthChanges(amounts, from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restoreState(int slot, int health, double moralAlign, int version) {
+        CharacterState.checkHealth(health);
+        Character character = characterList.get(slot);
+        if (character == null) {
+            throw new IllegalArgumentException("Slot " + slot + " is empty");
+        }
+        character.restoreState(CharacterState.pack(health, CharacterState.toTenths(moralAlign), version));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setCharacterListener(CharacterListener listener) {
+        this.listener = listener;
+        //Runtime: O(n), where n is the number of slots
+        for (Character character : characterList) {
+            if (character != null) {
+                character.listener = listener;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMetrics(DatabaseMetrics metrics) {
+        this.metrics = metrics;
+        //Runtime: O(n), where n is the number of slots
+        for (Character character : characterList) {
+            if (character != null) {
+                character.metrics = metrics;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName(int slot) {
+        Character character = characterList.get(slot);
+        return (character == null) ? null : character.getName();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getState(int slot) {
+        Character character = characterList.get(slot);
+        if (character == null) {
+            throw new IllegalArgumentException("Slot " + slot + " is empty");
+        }
+        return character.getState();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Character get(int slot) {
+        return characterList.get(slot);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Character get(int slot, String name) {
+        return characterList.get(slot);
+    }
+
+    /**
+     * Stops a character that has left the store from reporting and timing its changes
+     *
+     * @param character character that left the store, or null
+     */
+    private void detach(Character character) {
+        if (character != null) {
+            character.listener = null;
+            character.metrics = null;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package CharacterStuff;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A LatencyHistogram counts durations in buckets that widen as the durations grow. Durations under 8
+ * nanoseconds get a bucket each, and every doubling above that is split into 8 buckets, so a percentile
+ * read back is the upper end of its bucket and at most an eighth above the true duration. Recording a
+ * duration is a single increment of a LongAdder, safe from any number of threads without locking; threads
+ * recording into the same bucket at once add to separate cells instead of fighting over one counter.
+ * Reads made while durations are being recorded may miss the newest ones.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+    // every doubling of the duration is split into 1 << SUB_BUCKET_BITS buckets
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // enough buckets for every non-negative long
+    static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKET_COUNT];
+    // when the histogram was created or last reset, for the throughput
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * Creates an empty histogram
+     */
+    public LatencyHistogram() {
+        //Runtime: O(b), where b is the number of buckets
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts[bucket] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration
+     *
+     * @param nanos duration in nanoseconds; negative durations count as 0
+     */
+    public void record(long nanos) {
+        counts[bucketOf(nanos)].increment();
+    }
+
+    /**
+     * Records a number of operations that took the same duration, such as the average of a batch
+     *
+     * @param nanos duration of each operation in nanoseconds; negative durations count as 0
+     * @param count number of operations
+     */
+    public void record(long nanos, long count) {
+        counts[bucketOf(nanos)].add(count);
+    }
+
+    /**
+     * Records the time passed since a start time taken from System.nanoTime
+     *
+     * @param startNanos System.nanoTime when the operation started
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCount() {
+        long count = 0;
+        //Runtime: O(b), where b is the number of buckets
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            count += counts[bucket].sum();
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getThroughput() {
+        long elapsed = System.nanoTime() - startNanos;
+        return (elapsed <= 0) ? 0.0 : getCount() * 1e9 / elapsed;
+    }
+
+    /**
+     * Returns the duration that the given percentage of recorded durations do not exceed
+     *
+     * @param percentile percentage of durations, greater than 0 and at most 100
+     * @return the duration, rounded up to the end of its bucket, or 0 if nothing has been recorded
+     * @throws IllegalArgumentException if the percentile is not greater than 0 and at most 100
+     */
+    public long getPercentileNanos(double percentile) {
+        if (!(percentile > 0.0 && percentile <= 100.0)) {
+            throw new IllegalArgumentException("Percentile must be greater than 0 and at most 100");
+        }
+        // the buckets are copied first, so the rank and the walk agree on one set of counts
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        //Runtime: O(b), where b is the number of buckets
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            snapshot[bucket] = counts[bucket].sum();
+            count += snapshot[bucket];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        //Runtime: O(b), where b is the number of buckets
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= rank) {
+                return upperBound(bucket);
+            }
+        }
+        return upperBound(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getP50Nanos() {
+        return getPercentileNanos(50.0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getP99Nanos() {
+        return getPercentileNanos(99.0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getP999Nanos() {
+        return getPercentileNanos(99.9);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMaxNanos() {
+        //Runtime: O(b), where b is the number of buckets
+        for (int bucket = BUCKET_COUNT - 1; bucket >= 0; bucket--) {
+            if (counts[bucket].sum() != 0) {
+                return upperBound(bucket);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        //Runtime: O(b), where b is the number of buckets
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts[bucket].reset();
+        }
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns a formatted summary of the histogram
+     *
+     * @return summary of the histogram
+     */
+    @Override
+    public String toString() {
+        return "Count: " + getCount() + ", p50 (ns): " + getP50Nanos() + ", p99 (ns): " + getP99Nanos() +
+                ", p99.9 (ns): " + getP999Nanos() + ", Max (ns): " + getMaxNanos();
+    }
+
+    /**
+     * Returns the bucket a duration is counted in
+     *
+     * @param nanos duration in nanoseconds
+     * @return index of the bucket
+     */
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (nanos < 0) ? 0 : (int) nanos;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    /**
+     * Returns the longest duration counted in a bucket
+     *
+     * @param bucket index of the bucket
+     * @return the longest duration of the bucket, in nanoseconds
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long lowerBound = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        // the last bucket's end wraps past Long.MAX_VALUE and back to it
+        return lowerBound + (1L << shift) - 1;
+    }
+}
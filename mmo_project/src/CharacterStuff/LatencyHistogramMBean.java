@@ -0,0 +1,53 @@
+package CharacterStuff;
+
+/**
+ * The attributes and operations of a LatencyHistogram published through JMX.
+ */
+public interface LatencyHistogramMBean {
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return The number of durations.
+     */
+    public long getCount();
+
+    /**
+     * Returns the number of recorded durations per second since the histogram was created or reset.
+     *
+     * @return The recording rate, per second.
+     */
+    public double getThroughput();
+
+    /**
+     * Returns the median of the recorded durations.
+     *
+     * @return The 50th percentile, in nanoseconds.
+     */
+    public long getP50Nanos();
+
+    /**
+     * Returns the 99th percentile of the recorded durations.
+     *
+     * @return The 99th percentile, in nanoseconds.
+     */
+    public long getP99Nanos();
+
+    /**
+     * Returns the 99.9th percentile of the recorded durations.
+     *
+     * @return The 99.9th percentile, in nanoseconds.
+     */
+    public long getP999Nanos();
+
+    /**
+     * Returns the longest recorded duration.
+     *
+     * @return The longest duration, in nanoseconds.
+     */
+    public long getMaxNanos();
+
+    /**
+     * Clears all recorded durations and restarts the throughput clock.
+     */
+    public void reset();
+}
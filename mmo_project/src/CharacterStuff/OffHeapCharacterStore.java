@@ -0,0 +1,610 @@
+package CharacterStuff;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The OffHeapCharacterStore keeps characters in direct ByteBuffers, outside the garbage collected heap.
+ * Each slot is a fixed-width record of the numeric attributes, the packed health and alignment state,
+ * the position of the name in a separate name arena, and a generation that is new each time the slot is
+ * filled, emptied or moved into. Names are stored in the arena as UTF-8. The arena is compacted when
+ * removed names take up more than half of it. Views keep the name they were created with, so changes
+ * are reported without decoding it again.
+ * Structural changes (adding, moving or removing characters) must not run at the same time as
+ * heal, injure or change on this store's characters, as growing the buffers copies them.
+ */
+public class OffHeapCharacterStore implements CharacterStore {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int DEFAULT_ARENA_BYTES = 256;
+
+    // layout of one record, all ints so every field is 4-byte aligned for compare-and-set
+    private static final int HEIGHT = 0;
+    private static final int WEIGHT = 4;
+    private static final int STATE = 8;
+    private static final int NAME_OFFSET = 12;
+    private static final int NAME_LENGTH = 16;
+    private static final int GENERATION = 20;
+    private static final int RECORD_BYTES = 24;
+    // name length of an empty slot
+    private static final int EMPTY = -1;
+    private static final int MAX_SLOTS = Integer.MAX_VALUE / RECORD_BYTES;
+
+    private static final VarHandle INTS =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private ByteBuffer records;
+    private ByteBuffer names;
+    private int slotCount;
+    // told about changes made through views, null for none
+    private volatile CharacterListener listener;
+    // times heals, injuries and changes made through views, null for none
+    private volatile DatabaseMetrics metrics;
+    // bytes of the arena in use, including removed names
+    private int arenaUsed;
+    // bytes of the arena taken by names that were removed
+    private int arenaGarbage;
+    private int lastGeneration;
+
+    /**
+     * Constructor for creating a new, empty OffHeapCharacterStore.
+     */
+    public OffHeapCharacterStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for creating a new, empty OffHeapCharacterStore with room for the given
+     * number of characters before the buffers grow.
+     *
+     * @param initialCapacity number of records to allocate
+     * @throws IllegalArgumentException if the capacity is negative or too large
+     */
+    public OffHeapCharacterStore(int initialCapacity) {
+        if (initialCapacity < 0 || initialCapacity > MAX_SLOTS) {
+            throw new IllegalArgumentException("Initial capacity must be between 0 and " + MAX_SLOTS);
+        }
+        records = allocate(initialCapacity * RECORD_BYTES);
+        names = allocate(DEFAULT_ARENA_BYTES);
+        slotCount = 0;
+        arenaUsed = 0;
+        arenaGarbage = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOccupied(int slot) {
+        return nameLength(recordOffset(slot)) != EMPTY;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int add(String name, int height, int weight, double moralAlign) {
+        return add(name, height, weight, CharacterState.MAX_HEALTH, moralAlign);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int add(String name, int height, int weight, int health, double moralAlign) {
+        CharacterState.checkAttributes(name, height, moralAlign);
+        CharacterState.checkHealth(health);
+        if (slotCount == records.capacity() / RECORD_BYTES) {
+            growRecords();
+        }
+        int slot = slotCount++;
+        records.putInt(slot * RECORD_BYTES + NAME_LENGTH, EMPTY);
+        records.putInt(slot * RECORD_BYTES + GENERATION, 0);
+        write(slot, name, height, weight, health, moralAlign);
+        return slot;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(int slot, String name, int height, int weight, double moralAlign) {
+        recordOffset(slot);
+        CharacterState.checkAttributes(name, height, moralAlign);
+        write(slot, name, height, weight, CharacterState.MAX_HEALTH, moralAlign);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear(int slot) {
+        int offset = recordOffset(slot);
+        releaseName(offset);
+        records.putInt(offset + NAME_LENGTH, EMPTY);
+        nextGeneration(offset);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void move(int fromSlot, int toSlot) {
+        int from = recordOffset(fromSlot);
+        int to = recordOffset(toSlot);
+        releaseName(to);
+        records.putInt(to + HEIGHT, records.getInt(from + HEIGHT));
+        records.putInt(to + WEIGHT, records.getInt(from + WEIGHT));
+        records.putInt(to + STATE, (int) INTS.getVolatile(records, from + STATE));
+        records.putInt(to + NAME_OFFSET, records.getInt(from + NAME_OFFSET));
+        records.putInt(to + NAME_LENGTH, records.getInt(from + NAME_LENGTH));
+        nextGeneration(to);
+        // the name now belongs to the target slot, so it is not released here
+        records.putInt(from + NAME_LENGTH, EMPTY);
+        nextGeneration(from);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void truncate(int slotCount) {
+        if (slotCount < 0 || slotCount > this.slotCount) {
+            throw new IndexOutOfBoundsException("Slot count " + slotCount + " out of range");
+        }
+        //Runtime: O(n), where n is the number of slots dropped
+        for (int slot = slotCount; slot < this.slotCount; slot++) {
+            releaseName(slot * RECORD_BYTES);
+        }
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void ensureCapacity(int slotCount) {
+        if (slotCount > records.capacity() / RECORD_BYTES) {
+            if (slotCount > MAX_SLOTS) {
+                throw new IllegalStateException("Character store has become too large.");
+            }
+            records = copyOf(records, slotCount * RECORD_BYTES);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void trimToSize() {
+        records = copyOf(records, slotCount * RECORD_BYTES);
+        compactNames(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applyHealthChanges(int slot, String name, int[] amounts, int from, int to) {
+        int index = recordOffset(slot);
+        if (nameLength(index) == EMPTY) {
+            throw new IllegalArgumentException("Slot " + slot + " is empty");
+        }
+        index += STATE;
+        int current;
+        int updated;
+        do {
+            current = (int) INTS.getVolatile(records, index);
+            updated = CharacterState.applyHealthChanges(current, amounts, from, to);
+        } while (!INTS.weakCompareAndSet(records, index, current, updated));
+        CharacterState.report(listener, name, updated);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restoreState(int slot, int health, double moralAlign, int version) {
+        CharacterState.checkHealth(health);
+        int index = recordOffset(slot);
+        if (nameLength(index) == EMPTY) {
+            throw new IllegalArgumentException("Slot " + slot + " is empty");
+        }
+        int saved = CharacterState.pack(health, CharacterState.toTenths(moralAlign), version);
+        INTS.setVolatile(records, index + STATE, saved);
+        if (listener != null) {
+            CharacterState.report(listener, getName(slot), saved);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setCharacterListener(CharacterListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMetrics(DatabaseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName(int slot) {
+        int offset = recordOffset(slot);
+        int length = nameLength(offset);
+        if (length == EMPTY) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        names.get(records.getInt(offset + NAME_OFFSET), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getState(int slot) {
+        int offset = recordOffset(slot);
+        if (nameLength(offset) == EMPTY) {
+            throw new IllegalArgumentException("Slot " + slot + " is empty");
+        }
+        return (int) INTS.getVolatile(records, offset + STATE);
+    }
+
+    /**
+     * Returns a view of the character in a slot. The view reads and updates the record directly.
+     * It stays valid until the character is removed or moved by compaction, after which using
+     * it throws IllegalStateException.
+     *
+     * @param slot The slot to read.
+     * @return A view of the character, or null if the slot is empty.
+     */
+    @Override
+    public CharacterInterface get(int slot) {
+        return get(slot, getName(slot));
+    }
+
+    /**
+     * Returns a view of the character in a slot, reporting its changes under the given name instead
+     * of decoding the name from the arena.
+     *
+     * @param slot The slot to read.
+     * @param name The name of the character in the slot.
+     * @return A view of the character, or null if the slot is empty.
+     */
+    @Override
+    public CharacterInterface get(int slot, String name) {
+        int offset = recordOffset(slot);
+        if (nameLength(offset) == EMPTY) {
+            return null;
+        }
+        return new CharacterView(slot, records.getInt(offset + GENERATION), name);
+    }
+
+    /**
+     * Returns the number of bytes held off the heap by this store
+     *
+     * @return bytes of the record and name buffers
+     */
+    public long getOffHeapBytes() {
+        return (long) records.capacity() + names.capacity();
+    }
+
+    /**
+     * Writes a validated character into a slot
+     *
+     * @param slot slot to fill
+     * @param name name of character
+     * @param height height of character
+     * @param weight weight of character
+     * @param health health of character
+     * @param moralAlign moral alignment of character
+     */
+    private void write(int slot, String name, int height, int weight, int health, double moralAlign) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int offset = slot * RECORD_BYTES;
+        releaseName(offset);
+        records.putInt(offset + NAME_LENGTH, EMPTY);
+        int nameOffset = appendName(bytes);
+        records.putInt(offset + HEIGHT, height);
+        records.putInt(offset + WEIGHT, weight);
+        records.putInt(offset + NAME_OFFSET, nameOffset);
+        records.putInt(offset + NAME_LENGTH, bytes.length);
+        nextGeneration(offset);
+        INTS.setVolatile(records, offset + STATE, CharacterState.pack(health, CharacterState.toTenths(moralAlign)));
+    }
+
+    /**
+     * Copies a name to the end of the arena, compacting or growing the arena first if it is full
+     *
+     * @param bytes UTF-8 bytes of the name
+     * @return offset of the name in the arena
+     */
+    private int appendName(byte[] bytes) {
+        if (names.capacity() - arenaUsed < bytes.length) {
+            if (arenaGarbage * 2 > arenaUsed && arenaGarbage >= bytes.length) {
+                compactNames(names.capacity());
+            } else {
+                long needed = (long) arenaUsed - arenaGarbage + bytes.length;
+                if (needed > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Name arena has become too large.");
+                }
+                compactNames((int) Math.min(Math.max(needed * 2, DEFAULT_ARENA_BYTES), Integer.MAX_VALUE - 8));
+            }
+        }
+        int offset = arenaUsed;
+        names.put(offset, bytes);
+        arenaUsed += bytes.length;
+        return offset;
+    }
+
+    /**
+     * Counts the name of an occupied record as garbage in the arena
+     *
+     * @param offset byte offset of the record
+     */
+    private void releaseName(int offset) {
+        int length = nameLength(offset);
+        if (length != EMPTY) {
+            arenaGarbage += length;
+        }
+    }
+
+    /**
+     * Copies the names of all occupied slots into a new arena, dropping removed names
+     *
+     * @param minimumCapacity smallest capacity of the new arena
+     */
+    private void compactNames(int minimumCapacity) {
+        //Runtime: O(n), where n is the number of slots plus the length of the arena
+        ByteBuffer compacted = allocate(Math.max(minimumCapacity, arenaUsed - arenaGarbage));
+        int used = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int offset = slot * RECORD_BYTES;
+            int length = nameLength(offset);
+            if (length != EMPTY) {
+                compacted.put(used, names, records.getInt(offset + NAME_OFFSET), length);
+                records.putInt(offset + NAME_OFFSET, used);
+                used += length;
+            }
+        }
+        names = compacted;
+        arenaUsed = used;
+        arenaGarbage = 0;
+    }
+
+    /**
+     * Doubles the number of records the record buffer can hold
+     */
+    private void growRecords() {
+        int capacity = records.capacity() / RECORD_BYTES;
+        if (capacity >= MAX_SLOTS) {
+            throw new IllegalStateException("Character store has become too large.");
+        }
+        int newCapacity = (int) Math.min(Math.max(capacity * 2L, DEFAULT_CAPACITY), MAX_SLOTS);
+        records = copyOf(records, newCapacity * RECORD_BYTES);
+    }
+
+    /**
+     * Returns the name length field of a record
+     *
+     * @param offset byte offset of the record
+     * @return length of the name in bytes, or EMPTY
+     */
+    private int nameLength(int offset) {
+        return records.getInt(offset + NAME_LENGTH);
+    }
+
+    /**
+     * Gives a record a generation it has never had, so views of its previous character stop working.
+     * Generations come from one counter for the whole store, so a slot that is dropped and added
+     * again does not repeat an old one.
+     *
+     * @param offset byte offset of the record
+     */
+    private void nextGeneration(int offset) {
+        lastGeneration++;
+        records.putInt(offset + GENERATION, lastGeneration);
+    }
+
+    /**
+     * Returns the byte offset of a slot's record
+     *
+     * @param slot slot to find
+     * @return byte offset of the record
+     * @throws IndexOutOfBoundsException if the slot is not inside the store
+     */
+    private int recordOffset(int slot) {
+        if (slot < 0 || slot >= slotCount) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " out of range");
+        }
+        return slot * RECORD_BYTES;
+    }
+
+    /**
+     * Allocates a direct buffer in native byte order
+     *
+     * @param capacity size of the buffer in bytes
+     * @return the new buffer
+     */
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Copies the start of a buffer into a new direct buffer
+     *
+     * @param buffer buffer to copy
+     * @param capacity size of the new buffer in bytes
+     * @return the new buffer
+     */
+    private static ByteBuffer copyOf(ByteBuffer buffer, int capacity) {
+        ByteBuffer copy = allocate(capacity);
+        copy.put(0, buffer, 0, Math.min(buffer.capacity(), capacity));
+        return copy;
+    }
+
+    /**
+     * A character backed by one record. It remembers the generation of the record it was created
+     * for, so a record that has since been emptied or refilled is detected instead of read. The
+     * name is kept on the view, so reporting a change never goes back to the record.
+     */
+    private final class CharacterView implements CharacterInterface {
+        private final int slot;
+        private final int generation;
+        private final String name;
+
+        private CharacterView(int slot, int generation, String name) {
+            this.slot = slot;
+            this.generation = generation;
+            this.name = name;
+        }
+
+        /**
+         * Returns the byte offset of the record, checking that it still holds this character
+         *
+         * @return byte offset of the record
+         * @throws IllegalStateException if the character was removed or moved
+         */
+        private int offset() {
+            int offset = slot * RECORD_BYTES;
+            if (slot >= slotCount || records.getInt(offset + GENERATION) != generation) {
+                throw new IllegalStateException("Character is no longer in slot " + slot);
+            }
+            return offset;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getHeight() {
+            return records.getInt(offset() + HEIGHT);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getWeight() {
+            return records.getInt(offset() + WEIGHT);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getHealth() {
+            return CharacterState.health((int) INTS.getVolatile(records, offset() + STATE));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getMoralAlign() {
+            return CharacterState.moralAlign((int) INTS.getVolatile(records, offset() + STATE));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void heal(int healAmount) {
+            CharacterState.checkAmount(healAmount);
+            DatabaseMetrics timing = metrics;
+            long start = (timing == null) ? 0 : System.nanoTime();
+            int index = offset() + STATE;
+            int current;
+            int updated;
+            do {
+                current = (int) INTS.getVolatile(records, index);
+                updated = CharacterState.heal(current, healAmount);
+            } while (!INTS.weakCompareAndSet(records, index, current, updated));
+            CharacterState.report(listener, name, updated);
+            if (timing != null) {
+                timing.recordSince(DatabaseOperation.HEAL, start);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void injure(int injureAmount) {
+            CharacterState.checkAmount(injureAmount);
+            DatabaseMetrics timing = metrics;
+            long start = (timing == null) ? 0 : System.nanoTime();
+            int index = offset() + STATE;
+            int current;
+            int updated;
+            do {
+                current = (int) INTS.getVolatile(records, index);
+                updated = CharacterState.injure(current, injureAmount);
+            } while (!INTS.weakCompareAndSet(records, index, current, updated));
+            CharacterState.report(listener, name, updated);
+            if (timing != null) {
+                timing.recordSince(DatabaseOperation.INJURE, start);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void change(double moralAlign) {
+            DatabaseMetrics timing = metrics;
+            long start = (timing == null) ? 0 : System.nanoTime();
+            int index = offset() + STATE;
+            int current;
+            int updated;
+            do {
+                current = (int) INTS.getVolatile(records, index);
+                updated = CharacterState.change(current, moralAlign);
+            } while (!INTS.weakCompareAndSet(records, index, current, updated));
+            CharacterState.report(listener, name, updated);
+            if (timing != null) {
+                timing.recordSince(DatabaseOperation.CHANGE, start);
+            }
+        }
+
+        /**
+         * Returns a formated string of all the characters stats
+         *
+         * @return string of character stats
+         */
+        @Override
+        public String toString() {
+            int offset = offset();
+            return CharacterState.format(name, records.getInt(offset + HEIGHT), records.getInt(offset + WEIGHT),
+                    (int) INTS.getVolatile(records, offset + STATE));
+        }
+    }
+}
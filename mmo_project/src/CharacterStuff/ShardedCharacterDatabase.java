@@ -0,0 +1,713 @@
+package CharacterStuff;
+
+import Dictionary.HashMixing;
+import Dictionary.RecordWriter;
+
+import java.io.BufferedWriter;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * The ShardedCharacterDatabase splits its characters over several independent CharacterDatabases, called
+ * shards, by the hash of their names. Each shard has its own store, hash index and read-write lock, so
+ * operations on characters in different shards never wait for each other, and a shard busy with a large
+ * add or compaction does not hold up the rest. Adding, removing and finding a character lock only the
+ * shard it belongs to; bulk operations such as adding many characters, compacting, counting, listing and
+ * exporting work on every shard in parallel.
+ * Unlike CharacterDatabase, this class may be used from any number of threads at once.
+ */
+public class ShardedCharacterDatabase implements CharacterDatabaseInterface {
+    // characters each shard writes per round of a full export
+    private static final int EXPORT_PAGE = 4096;
+
+    private final Shard[] shards;
+    // bits of an export cursor that hold the slot, the bits above hold the shard
+    private final int slotBits;
+    // shared by every shard, null until metrics are enabled
+    private volatile DatabaseMetrics metrics;
+
+    /**
+     * Creates a sharded database keeping its characters in HeapCharacterStores
+     *
+     * @param shardCount number of shards
+     * @throws IllegalArgumentException if the shard count is not positive
+     */
+    public ShardedCharacterDatabase(int shardCount) {
+        this(shardCount, HeapCharacterStore::new);
+    }
+
+    /**
+     * Creates a sharded database keeping the characters of each shard in a store from the given supplier
+     *
+     * @param shardCount number of shards
+     * @param storeSupplier supplier of one empty store per shard
+     * @throws IllegalArgumentException if the shard count is not positive or the supplier is null
+     */
+    public ShardedCharacterDatabase(int shardCount, Supplier<? extends CharacterStore> storeSupplier) {
+        if (shardCount <= 0 || storeSupplier == null) {
+            throw new IllegalArgumentException("Shard count must be positive and store supplier must not be null");
+        }
+        shards = new Shard[shardCount];
+        //Runtime: O(s), where s is the number of shards
+        for (int shard = 0; shard < shardCount; shard++) {
+            shards[shard] = new Shard(new CharacterDatabase(storeSupplier.get()));
+        }
+        slotBits = 31 - (32 - Integer.numberOfLeadingZeros(shardCount - 1));
+    }
+
+    /**
+     * Returns the number of shards
+     *
+     * @return number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Adds a character to its shard, replacing the character with the same name if there is one
+     *
+     * @param name name of character
+     * @param height height of character
+     * @param weight weight of character
+     * @param moralAlign moral alignment of character
+     */
+    @Override
+    public void addCharacter(String name, int height, int weight, double moralAlign) {
+        Shard shard = shardFor(name);
+        shard.lock.writeLock().lock();
+        try {
+            shard.database.addCharacter(name, height, weight, moralAlign);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds many characters at once. The characters are split by shard and every shard adds its part
+     * in parallel, as CharacterDatabase.addCharacters does.
+     *
+     * @param characters characters to be added
+     * @throws IllegalArgumentException if any character is null or has invalid attributes, in which case
+     * nothing is added
+     */
+    @Override
+    public void addCharacters(Collection<? extends CharacterInterface> characters) {
+        List<List<CharacterInterface>> parts = new ArrayList<>(shards.length);
+        //Runtime: O(s + n), where s is the number of shards and n the number of characters
+        for (int shard = 0; shard < shards.length; shard++) {
+            parts.add(new ArrayList<>(characters.size() / shards.length + 1));
+        }
+        // everything is checked before any shard changes
+        for (CharacterInterface character : characters) {
+            if (character == null) {
+                throw new IllegalArgumentException("Characters must not be null");
+            }
+            CharacterState.checkAttributes(character.getName(), character.getHeight(), character.getMoralAlign());
+            parts.get(shardIndex(character.getName())).add(character);
+        }
+        IntStream.range(0, shards.length).parallel().forEach(index -> {
+            if (!parts.get(index).isEmpty()) {
+                Shard shard = shards[index];
+                shard.lock.writeLock().lock();
+                try {
+                    shard.database.addCharacters(parts.get(index));
+                } finally {
+                    shard.lock.writeLock().unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes a character from its shard. Nothing happens if there is no character with the given name.
+     *
+     * @param name name of character to be removed
+     */
+    @Override
+    public void removeCharacter(String name) {
+        Shard shard = shardFor(name);
+        shard.lock.writeLock().lock();
+        try {
+            shard.database.removeCharacter(name);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the character whose name has the given characters from its shard, without building a String.
+     * Nothing happens if there is no such character.
+     *
+     * @param name characters of the name of character to be removed
+     * @throws IllegalArgumentException if name is null
+     */
+    @Override
+    public void removeCharacter(CharSequence name) {
+        Shard shard = shards[shardIndex((name == null) ? 0 : HashMixing.stringHashCode(name))];
+        shard.lock.writeLock().lock();
+        try {
+            shard.database.removeCharacter(name);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the character whose name is encoded by the given UTF-8 bytes from its shard, without
+     * decoding them. Nothing happens if there is no such character.
+     *
+     * @param nameBytes array holding the UTF-8 bytes of the name
+     * @param offset index of the first byte of the name
+     * @param length number of bytes in the name
+     * @throws IllegalArgumentException if nameBytes is null
+     * @throws IndexOutOfBoundsException if the name is not within the array
+     */
+    @Override
+    public void removeCharacter(byte[] nameBytes, int offset, int length) {
+        Shard shard = shardFor(nameBytes, offset, length);
+        shard.lock.writeLock().lock();
+        try {
+            shard.database.removeCharacter(nameBytes, offset, length);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts every shard in parallel
+     */
+    @Override
+    public void compact() {
+        IntStream.range(0, shards.length).parallel().forEach(index -> {
+            Shard shard = shards[index];
+            shard.lock.writeLock().lock();
+            try {
+                shard.database.compact();
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Compacts every shard in parallel, moving at most the given number of characters in each shard
+     *
+     * @param maxMoves greatest number of characters to move in each shard
+     * @return number of empty slots still in all shards
+     * @throws IllegalArgumentException if maxMoves is negative
+     */
+    @Override
+    public int compact(int maxMoves) {
+        if (maxMoves < 0) {
+            throw new IllegalArgumentException("Number of moves must not be negative");
+        }
+        return IntStream.range(0, shards.length).parallel().map(index -> {
+            Shard shard = shards[index];
+            shard.lock.writeLock().lock();
+            try {
+                return shard.database.compact(maxMoves);
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        }).sum();
+    }
+
+    /**
+     * Returns the character with the given name. The character locks its shard for reading while it is
+     * read or changed, so it can be used from any thread while other threads add and remove characters.
+     *
+     * @param name name of character
+     * @return character with given name, or null if there is none
+     */
+    @Override
+    public CharacterInterface getCharacter(String name) {
+        Shard shard = shardFor(name);
+        shard.lock.readLock().lock();
+        try {
+            CharacterInterface character = shard.database.getCharacter(name);
+            return (character == null) ? null : new ShardCharacter(character, shard.lock.readLock());
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the character whose name has the given characters, found without building a String.
+     * The character locks its shard like the ones returned for a String name.
+     *
+     * @param name characters of the name of character
+     * @return character with given name, or null if there is none
+     * @throws IllegalArgumentException if name is null
+     */
+    @Override
+    public CharacterInterface getCharacter(CharSequence name) {
+        Shard shard = shards[shardIndex((name == null) ? 0 : HashMixing.stringHashCode(name))];
+        shard.lock.readLock().lock();
+        try {
+            CharacterInterface character = shard.database.getCharacter(name);
+            return (character == null) ? null : new ShardCharacter(character, shard.lock.readLock());
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the character whose name is encoded by the given UTF-8 bytes, found without decoding them.
+     * The character locks its shard like the ones returned for a String name.
+     *
+     * @param nameBytes array holding the UTF-8 bytes of the name
+     * @param offset index of the first byte of the name
+     * @param length number of bytes in the name
+     * @return character with given name, or null if there is none
+     * @throws IllegalArgumentException if nameBytes is null
+     * @throws IndexOutOfBoundsException if the name is not within the array
+     */
+    @Override
+    public CharacterInterface getCharacter(byte[] nameBytes, int offset, int length) {
+        Shard shard = shardFor(nameBytes, offset, length);
+        shard.lock.readLock().lock();
+        try {
+            CharacterInterface character = shard.database.getCharacter(nameBytes, offset, length);
+            return (character == null) ? null : new ShardCharacter(character, shard.lock.readLock());
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of characters in all shards
+     *
+     * @return number of characters
+     */
+    public int getCharacterCount() {
+        //Runtime: O(s), where s is the number of shards
+        int count = 0;
+        for (Shard shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                count += shard.database.dictionary.getSize();
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds a listener to every shard. The listener is called from many threads at once.
+     *
+     * @param listener listener to add
+     * @throws IllegalArgumentException if the listener is null
+     */
+    @Override
+    public void addCharacterListener(CharacterListener listener) {
+        //Runtime: O(s), where s is the number of shards
+        for (Shard shard : shards) {
+            shard.lock.writeLock().lock();
+            try {
+                shard.database.addCharacterListener(listener);
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes a listener from every shard
+     *
+     * @param listener listener to remove
+     * @return true if the listener had been added
+     */
+    @Override
+    public boolean removeCharacterListener(CharacterListener listener) {
+        boolean removed = false;
+        //Runtime: O(s), where s is the number of shards
+        for (Shard shard : shards) {
+            shard.lock.writeLock().lock();
+            try {
+                removed |= shard.database.removeCharacterListener(listener);
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Writes a page of characters from one shard, starting at a cursor returned by the previous page.
+     * A page ends early where a shard ends, and the cursor moves on to the next shard.
+     *
+     * @param out record writer to write to, which is not flushed
+     * @param cursor 0 for the first page, which starts with the header, or the cursor returned by the
+     * previous page
+     * @param maxCharacters greatest number of characters to write
+     * @return the cursor of the next page, or -1 if every character has been written
+     * @throws IOException if the record writer can not write
+     * @throws IllegalArgumentException if the cursor is negative or maxCharacters is not positive
+     * @throws IllegalStateException if a shard has more slots than a cursor can address
+     */
+    @Override
+    public int exportCharacters(RecordWriter out, int cursor, int maxCharacters) throws IOException {
+        if (cursor < 0 || maxCharacters <= 0) {
+            throw new IllegalArgumentException("Cursor must not be negative and page size must be positive");
+        }
+        if (cursor == 0) {
+            CharacterDatabase.writeExportHeader(out);
+        }
+        int index = cursor >>> slotBits;
+        if (index >= shards.length) {
+            return -1;
+        }
+        Shard shard = shards[index];
+        int slot;
+        shard.lock.readLock().lock();
+        try {
+            // longs, since a single shard uses all 31 bits and 1 << 31 is negative
+            slot = shard.database.writeCharacters(out, (int) (cursor & ((1L << slotBits) - 1)), maxCharacters);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+        if (slot < 0) {
+            return (index + 1 < shards.length) ? (index + 1) << slotBits : -1;
+        }
+        if (slot >= (1L << slotBits)) {
+            throw new IllegalStateException("Shard " + index + " has too many slots to export in pages");
+        }
+        return (index << slotBits) | slot;
+    }
+
+    /**
+     * Writes every character as records and flushes the record writer. In each round every shard formats
+     * a page of its characters in parallel, under its read lock, and the pages are then written in shard
+     * order, so the shards can be changed between rounds. The records therefore come out a page from
+     * each shard at a time, in a different order than the paged export.
+     *
+     * @param out record writer to write to
+     * @throws IOException if the record writer can not write
+     */
+    @Override
+    public void exportCharacters(RecordWriter out) throws IOException {
+        CharacterDatabase.writeExportHeader(out);
+        int[] cursors = new int[shards.length];
+        PageBuffer[] pages = new PageBuffer[shards.length];
+        RecordWriter[] pageWriters = new RecordWriter[shards.length];
+        //Runtime: O(s), where s is the number of shards
+        for (int index = 0; index < shards.length; index++) {
+            pages[index] = new PageBuffer();
+            pageWriters[index] = new RecordWriter(pages[index], out.getFormat());
+        }
+        boolean remaining = true;
+        //Runtime: O(n / p), where n is the number of characters and p the number of processors
+        while (remaining) {
+            IntStream.range(0, shards.length).parallel().forEach(index -> {
+                if (cursors[index] >= 0) {
+                    pages[index].reset();
+                    Shard shard = shards[index];
+                    shard.lock.readLock().lock();
+                    try {
+                        cursors[index] = shard.database.writeCharacters(pageWriters[index], cursors[index],
+                                EXPORT_PAGE);
+                        pageWriters[index].flush();
+                    } catch (IOException e) {
+                        // a CharArrayWriter never fails
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        shard.lock.readLock().unlock();
+                    }
+                }
+            });
+            remaining = false;
+            for (int index = 0; index < shards.length; index++) {
+                pages[index].writeTo(out);
+                pages[index].reset();
+                remaining |= cursors[index] >= 0;
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Starts recording operation latencies and hash table health in every shard, all into one
+     * DatabaseMetrics whose health figures add up the shards' tables. Latencies are measured inside the
+     * shard locks, so they leave out time spent waiting for a lock. Calling it again returns the same metrics.
+     *
+     * @return metrics of this database
+     */
+    @Override
+    public synchronized DatabaseMetrics enableMetrics() {
+        if (metrics == null) {
+            DatabaseMetrics sharedMetrics = new DatabaseMetrics();
+            //Runtime: O(s), where s is the number of shards
+            for (Shard shard : shards) {
+                shard.lock.writeLock().lock();
+                try {
+                    shard.database.enableMetrics(sharedMetrics);
+                } finally {
+                    shard.lock.writeLock().unlock();
+                }
+            }
+            metrics = sharedMetrics;
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics shared by the shards
+     *
+     * @return metrics, or null if they have not been enabled
+     */
+    @Override
+    public DatabaseMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Prints out all the current characters, shard by shard. The shards format their lists in parallel.
+     */
+    @Override
+    public void printList() {
+        CharArrayWriter[] lists = new CharArrayWriter[shards.length];
+        IntStream.range(0, shards.length).parallel().forEach(index -> {
+            lists[index] = new CharArrayWriter();
+            PrintWriter list = new PrintWriter(lists[index]);
+            Shard shard = shards[index];
+            shard.lock.readLock().lock();
+            try {
+                shard.database.printCharacters(list);
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+            list.flush();
+        });
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+        out.println("Character List");
+        for (CharArrayWriter list : lists) {
+            out.write(list.toCharArray());
+        }
+        out.println();
+        out.flush();
+    }
+
+    /**
+     * Returns the shard a name belongs to
+     *
+     * @param name name of character
+     * @return the shard
+     */
+    private Shard shardFor(String name) {
+        return shards[shardIndex(name)];
+    }
+
+    /**
+     * Returns the shard the name encoded by some UTF-8 bytes belongs to, the same as for the decoded name
+     *
+     * @param nameBytes array holding the UTF-8 bytes of the name, or null
+     * @param offset index of the first byte of the name
+     * @param length number of bytes in the name
+     * @return the shard
+     * @throws IndexOutOfBoundsException if the name is not within the array
+     */
+    private Shard shardFor(byte[] nameBytes, int offset, int length) {
+        return shards[shardIndex((nameBytes == null) ? 0 : HashMixing.stringHashCode(nameBytes, offset, length))];
+    }
+
+    /**
+     * Returns the index of the shard a name belongs to. The hash is mixed so names that differ only in
+     * their last characters still spread over all shards, and then scaled to the shard count.
+     *
+     * @param name name of character, or null
+     * @return index of the shard
+     */
+    private int shardIndex(String name) {
+        return (name == null) ? 0 : shardIndex(name.hashCode());
+    }
+
+    /**
+     * Returns the index of the shard for a name's String hash code
+     *
+     * @param nameHash String hash code of the name
+     * @return index of the shard
+     */
+    private int shardIndex(int nameHash) {
+        int hash = nameHash;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return (int) (((hash & 0xffffffffL) * shards.length) >>> 32);
+    }
+
+    /**
+     * A Shard is one of the databases making up a sharded database, along with the lock guarding it.
+     * Adds, removes and compactions take the write lock; lookups, reads, exports and changes to a
+     * character's health or alignment, which are atomic on their own, take the read lock.
+     */
+    private static final class Shard {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final CharacterDatabase database;
+
+        private Shard(CharacterDatabase database) {
+            this.database = database;
+        }
+    }
+
+    /**
+     * A PageBuffer is a CharArrayWriter whose characters can be copied into a RecordWriter without
+     * making another array.
+     */
+    private static final class PageBuffer extends CharArrayWriter {
+
+        /**
+         * Copies the buffered characters into a record writer
+         *
+         * @param out record writer to copy to
+         * @throws IOException if the record writer can not write
+         */
+        void writeTo(RecordWriter out) throws IOException {
+            out.appendRecords(buf, 0, count);
+        }
+    }
+
+    /**
+     * A ShardCharacter is a character of a shard that holds the shard's read lock while it is read or
+     * changed, so its store is never resized or compacted under it.
+     */
+    private static final class ShardCharacter implements CharacterInterface {
+        private final CharacterInterface character;
+        private final Lock lock;
+
+        private ShardCharacter(CharacterInterface character, Lock lock) {
+            this.character = character;
+            this.lock = lock;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getName() {
+            lock.lock();
+            try {
+                return character.getName();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getHeight() {
+            lock.lock();
+            try {
+                return character.getHeight();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getWeight() {
+            lock.lock();
+            try {
+                return character.getWeight();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getHealth() {
+            lock.lock();
+            try {
+                return character.getHealth();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getMoralAlign() {
+            lock.lock();
+            try {
+                return character.getMoralAlign();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void heal(int healAmount) {
+            lock.lock();
+            try {
+                character.heal(healAmount);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void injure(int injureAmount) {
+            lock.lock();
+            try {
+                character.injure(injureAmount);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void change(double moralAlign) {
+            lock.lock();
+            try {
+                character.change(moralAlign);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Returns a formatted string of the character's stats
+         *
+         * @return the character as a string
+         */
+        @Override
+        public String toString() {
+            lock.lock();
+            try {
+                return character.toString();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package CharacterStuff;
+
+import Dictionary.CollisionResolution;
+import Dictionary.HashMixing;
+import Dictionary.ObjectIntHashedDictionary;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The TickBatchEngine collects heal and injure events during a game tick and applies them together when
+ * the tick ends. Events are spread over partitions by character name, so each character's events land in
+ * one partition and queueing threads rarely share a lock. At the end of the tick the partitions are applied
+ * in parallel: each one groups its events by character, keeping their order, looks every character up once,
+ * and applies all of its events in a single atomic update with the same capping as heal and injure.
+ * A character hit thousands of times in a tick therefore costs one lookup and one compare-and-set, and
+ * partitions never update the same character.
+ * Events may be queued from any thread. endTick must be called from the thread that adds and removes
+ * characters, so the database does not change while the events are applied.
+ */
+public class TickBatchEngine {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final CharacterDatabase database;
+    private final Partition[] partitions;
+
+    /**
+     * Creates an engine for a database with one partition per processor
+     *
+     * @param database database the events are applied to
+     * @throws IllegalArgumentException if the database is null
+     */
+    public TickBatchEngine(CharacterDatabase database) {
+        this(database, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an engine for a database with the given number of partitions
+     *
+     * @param database database the events are applied to
+     * @param partitionCount number of partitions applied in parallel
+     * @throws IllegalArgumentException if the database is null or the partition count is not positive
+     */
+    public TickBatchEngine(CharacterDatabase database, int partitionCount) {
+        if (database == null || partitionCount <= 0) {
+            throw new IllegalArgumentException("Database must not be null and partition count must be positive");
+        }
+        this.database = database;
+        partitions = new Partition[partitionCount];
+        //Runtime: O(p), where p is the number of partitions
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitions[partition] = new Partition();
+        }
+    }
+
+    /**
+     * Queues a heal for the end of the tick
+     *
+     * @param name name of character
+     * @param healAmount amount to be healed
+     * @throws IllegalArgumentException if the name is null or the amount is not positive
+     */
+    public void queueHeal(String name, int healAmount) {
+        CharacterState.checkAmount(healAmount);
+        queue(name, healAmount);
+    }
+
+    /**
+     * Queues an injury for the end of the tick
+     *
+     * @param name name of character
+     * @param injureAmount amount to be injured
+     * @throws IllegalArgumentException if the name is null or the amount is not positive
+     */
+    public void queueInjure(String name, int injureAmount) {
+        CharacterState.checkAmount(injureAmount);
+        queue(name, -injureAmount);
+    }
+
+    /**
+     * Applies every event queued so far, in the order each character's events were queued. Events
+     * for characters that are not in the database are dropped. Events queued while this runs are
+     * kept for the next tick.
+     *
+     * @return number of events applied
+     */
+    public int endTick() {
+        int[] applied = new int[partitions.length];
+        IntStream.range(0, partitions.length).parallel()
+                .forEach(partition -> applied[partition] = partitions[partition].apply(database));
+        //Runtime: O(p), where p is the number of partitions
+        int total = 0;
+        for (int count : applied) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of events waiting for the end of the tick
+     *
+     * @return number of queued events
+     */
+    public int getPendingCount() {
+        //Runtime: O(p), where p is the number of partitions
+        int pending = 0;
+        for (Partition partition : partitions) {
+            pending += partition.getCount();
+        }
+        return pending;
+    }
+
+    /**
+     * Queues an event in the partition of its character
+     *
+     * @param name name of character
+     * @param amount amount, positive to heal and negative to injure
+     */
+    private void queue(String name, int amount) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name must not be null");
+        }
+        // String caches its hash code, so picking a partition costs no hashing
+        int hash = name.hashCode();
+        partitions[Math.floorMod(hash ^ (hash >>> 16), partitions.length)].add(name, amount);
+    }
+
+    /**
+     * A Partition queues the events of the characters whose names fall in it, and groups and applies them
+     * at the end of the tick. The queue is swapped with a second one when the tick ends, so events queued
+     * while the partition is being applied do not wait for it.
+     */
+    private static final class Partition {
+        // events queued for the current tick, guarded by this
+        private String[] names = new String[INITIAL_CAPACITY];
+        private int[] amounts = new int[INITIAL_CAPACITY];
+        private int count;
+        // queue being applied, swapped in at the end of each tick
+        private String[] spareNames = new String[INITIAL_CAPACITY];
+        private int[] spareAmounts = new int[INITIAL_CAPACITY];
+        // scratch space for grouping, reused from tick to tick
+        private int[] groupOf = new int[INITIAL_CAPACITY];
+        private int[] groupStarts = new int[INITIAL_CAPACITY];
+        private String[] groupNames = new String[INITIAL_CAPACITY];
+        private int[] grouped = new int[INITIAL_CAPACITY];
+        // group of each of this tick's characters, so repeated events skip the database index; cleared
+        // after every tick but kept at the size it grew to, so a busy partition does not resize it again
+        private final ObjectIntHashedDictionary<String> groups = new ObjectIntHashedDictionary<>(INITIAL_CAPACITY,
+                CollisionResolution.LINEAR_PROBING, HashMixing.FINALIZER, true);
+
+        /**
+         * Queues an event
+         *
+         * @param name name of character
+         * @param amount amount, positive to heal and negative to injure
+         */
+        synchronized void add(String name, int amount) {
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+                amounts = Arrays.copyOf(amounts, count * 2);
+            }
+            names[count] = name;
+            amounts[count] = amount;
+            count++;
+        }
+
+        /**
+         * Returns the number of queued events
+         *
+         * @return number of events
+         */
+        synchronized int getCount() {
+            return count;
+        }
+
+        /**
+         * Applies the queued events to a database, grouped by character
+         *
+         * @param database database to apply the events to
+         * @return number of events applied
+         */
+        int apply(CharacterDatabase database) {
+            String[] batchNames;
+            int[] batchAmounts;
+            int size;
+            synchronized (this) {
+                batchNames = names;
+                batchAmounts = amounts;
+                size = count;
+                names = spareNames;
+                amounts = spareAmounts;
+                count = 0;
+            }
+            if (size == 0) {
+                spareNames = batchNames;
+                spareAmounts = batchAmounts;
+                return 0;
+            }
+            int groupCount = group(batchNames, batchAmounts, size);
+
+            // each character is looked up once and updated once, with its events in queued order
+            int applied = 0;
+            //Runtime: O(g + n), where g is the number of characters and n the number of events
+            for (int group = 0; group < groupCount; group++) {
+                int slot = database.dictionary.getValue(groupNames[group]);
+                int end = (group + 1 < groupCount) ? groupStarts[group + 1] : size;
+                if (slot != ObjectIntHashedDictionary.NO_VALUE) {
+                    database.characterStore.applyHealthChanges(slot, groupNames[group], grouped, groupStarts[group], end);
+                    applied += end - groupStarts[group];
+                }
+                groupNames[group] = null;
+            }
+            groups.clear();
+            Arrays.fill(batchNames, 0, size, null);
+            spareNames = batchNames;
+            spareAmounts = batchAmounts;
+            return applied;
+        }
+
+        /**
+         * Sorts the amounts of a batch by character into grouped, keeping the order of each character's
+         * amounts. Afterwards groupNames holds the name of each group and groupStarts the index of its
+         * first amount.
+         *
+         * @param batchNames name of each event
+         * @param batchAmounts amount of each event
+         * @param size number of events
+         * @return number of groups
+         */
+        private int group(String[] batchNames, int[] batchAmounts, int size) {
+            if (groupOf.length < size) {
+                int capacity = Math.max(size, groupOf.length * 2);
+                groupOf = new int[capacity];
+                groupStarts = new int[capacity];
+                groupNames = new String[capacity];
+                grouped = new int[capacity];
+            }
+            int groupCount = 0;
+            String lastName = null;
+            int currentGroup = 0;
+            //Runtime: O(n), where n is the number of events
+            for (int event = 0; event < size; event++) {
+                // runs of events for one character, like a burst of hits, skip the table as well
+                if (batchNames[event] != lastName) {
+                    lastName = batchNames[event];
+                    currentGroup = groups.getValue(lastName);
+                }
+                if (currentGroup == ObjectIntHashedDictionary.NO_VALUE) {
+                    currentGroup = groupCount++;
+                    groups.add(lastName, currentGroup);
+                    groupNames[currentGroup] = lastName;
+                    groupStarts[currentGroup] = 0;
+                }
+                groupStarts[currentGroup]++;
+                groupOf[event] = currentGroup;
+            }
+            // counting sort: sizes become end positions, and placing the events from the back moves each
+            // end down to its group's start while keeping the events of a group in order
+            for (int group = 1; group < groupCount; group++) {
+                groupStarts[group] += groupStarts[group - 1];
+            }
+            for (int event = size - 1; event >= 0; event--) {
+                grouped[--groupStarts[groupOf[event]]] = batchAmounts[event];
+            }
+            return groupCount;
+        }
+    }
+}
@@ -0,0 +1,956 @@
+package CharacterStuff;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The TieredCharacterStore keeps only the recently used characters in memory and the rest in files, so
+ * the memory a database needs follows the players who are online rather than every registered player.
+ * Resident characters are held in a segmented LRU cache: a character enters the probation segment when
+ * it is added or read back from disk, and moves to the protected segment when it is used again. Evictions
+ * take the least recently used probation character first, so a scan over many characters, such as an
+ * export, only churns the probation segment and leaves the active players in the protected one.
+ * A character that changed while resident is written to disk when it is evicted, as a fixed-width record
+ * per slot in one file, with its name in a second file. Reading a character through get, or reading or
+ * changing it through its view, brings it back into memory. Only a generation number and a reference
+ * per slot stay in memory for cold characters.
+ * The files are scratch space in the given directory and are deleted when the store is closed; a
+ * CharacterSnapshot or WriteAheadLog is still what makes the characters durable.
+ * Every operation takes the store's lock, so the store may be used from many threads at once.
+ */
+public class TieredCharacterStore implements CharacterStore, Closeable {
+    private static final int DEFAULT_CAPACITY = 16;
+    // layout of one record in the cold file
+    private static final int HEIGHT = 0;
+    private static final int WEIGHT = 4;
+    private static final int STATE = 8;
+    private static final int NAME_LENGTH = 12;
+    private static final int NAME_OFFSET = 16;
+    private static final int RECORD_BYTES = 24;
+    // percentage of the resident characters the protected segment may hold
+    private static final int PROTECTED_PERCENT = 80;
+    // removed names are only compacted away once they take up this much and half of the names file
+    private static final long MIN_GARBAGE_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final FileChannel records;
+    private FileChannel names;
+    private long namesSize;
+    private long namesGarbage;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+
+    // generation of the character in each slot, 0 for an empty slot
+    private int[] generations;
+    // resident character of each slot, null for an empty or cold slot
+    private Entry[] residents;
+    private int slotCount;
+    private int lastGeneration;
+
+    // each segment is a circular list around a sentinel, most recently used first
+    private final Entry probationSegment = new Entry();
+    private final Entry protectedSegment = new Entry();
+    private int probationSize;
+    private int protectedSize;
+    private final int maxResident;
+    private final int maxProtected;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long writeBackCount;
+    // told about changes made through views, null for none
+    private volatile CharacterListener listener;
+    // times heals, injuries and changes made through views, null for none
+    private volatile DatabaseMetrics metrics;
+
+    /**
+     * Creates a new, empty store that keeps at most the given number of characters in memory
+     *
+     * @param directory directory for the files holding cold characters
+     * @param maxResident greatest number of characters kept in memory
+     * @throws IOException if the files can not be created
+     * @throws IllegalArgumentException if the directory is null or maxResident is not positive
+     */
+    public TieredCharacterStore(Path directory, int maxResident) throws IOException {
+        if (directory == null || maxResident <= 0) {
+            throw new IllegalArgumentException("Directory must not be null and resident count must be positive");
+        }
+        this.directory = directory;
+        this.maxResident = maxResident;
+        maxProtected = Math.min((int) ((long) maxResident * PROTECTED_PERCENT / 100), maxResident - 1);
+        probationSegment.previous = probationSegment.next = probationSegment;
+        protectedSegment.previous = protectedSegment.next = protectedSegment;
+        generations = new int[DEFAULT_CAPACITY];
+        residents = new Entry[DEFAULT_CAPACITY];
+        records = openFile("characters");
+        try {
+            names = openFile("names");
+        } catch (IOException e) {
+            records.close();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean isOccupied(int slot) {
+        checkSlot(slot);
+        return generations[slot] != 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int add(String name, int height, int weight, double moralAlign) {
+        return add(name, height, weight, CharacterState.MAX_HEALTH, moralAlign);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int add(String name, int height, int weight, int health, double moralAlign) {
+        CharacterState.checkAttributes(name, height, moralAlign);
+        CharacterState.checkHealth(health);
+        if (slotCount == generations.length) {
+            resize((int) Math.min(Math.max(generations.length * 2L, DEFAULT_CAPACITY), Integer.MAX_VALUE - 8));
+        }
+        int slot = slotCount++;
+        fill(slot, name, height, weight, CharacterState.pack(health, CharacterState.toTenths(moralAlign)));
+        return slot;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void set(int slot, String name, int height, int weight, double moralAlign) {
+        checkSlot(slot);
+        CharacterState.checkAttributes(name, height, moralAlign);
+        drop(slot);
+        fill(slot, name, height, weight,
+                CharacterState.pack(CharacterState.MAX_HEALTH, CharacterState.toTenths(moralAlign)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void clear(int slot) {
+        checkSlot(slot);
+        drop(slot);
+    }
+
+    /**
+     * {@inheritDoc}
+     * A cold character is moved by copying its record, without reading it into memory.
+     */
+    @Override
+    public synchronized void move(int fromSlot, int toSlot) {
+        checkSlot(fromSlot);
+        checkSlot(toSlot);
+        if (fromSlot == toSlot) {
+            return;
+        }
+        drop(toSlot);
+        if (generations[fromSlot] == 0) {
+            return;
+        }
+        Entry entry = residents[fromSlot];
+        if (entry != null) {
+            // the record on disk, if any, belongs to the old slot
+            entry.slot = toSlot;
+            entry.dirty = true;
+            residents[toSlot] = entry;
+            residents[fromSlot] = null;
+        } else {
+            readRecord(fromSlot);
+            writeRecord(toSlot);
+        }
+        generations[toSlot] = nextGeneration();
+        generations[fromSlot] = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void truncate(int slotCount) {
+        if (slotCount < 0 || slotCount > this.slotCount) {
+            throw new IndexOutOfBoundsException("Slot count " + slotCount + " out of range");
+        }
+        //Runtime: O(n), where n is the number of slots dropped
+        for (int slot = slotCount; slot < this.slotCount; slot++) {
+            drop(slot);
+        }
+        this.slotCount = slotCount;
+        try {
+            records.truncate((long) slotCount * RECORD_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void ensureCapacity(int slotCount) {
+        if (slotCount > generations.length) {
+            if (slotCount > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Character store has become too large.");
+            }
+            resize(slotCount);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The file of names is also rewritten without the names of removed characters.
+     */
+    @Override
+    public synchronized void trimToSize() {
+        resize(Math.max(slotCount, DEFAULT_CAPACITY));
+        if (namesGarbage > 0) {
+            compactNames();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applyHealthChanges(int slot, String name, int[] amounts, int from, int to) {
+        int updated;
+        synchronized (this) {
+            checkSlot(slot);
+            if (generations[slot] == 0) {
+                throw new IllegalArgumentException("Slot " + slot + " is empty");
+            }
+            Entry entry = load(slot, true);
+            entry.state = CharacterState.applyHealthChanges(entry.state, amounts, from, to);
+            entry.dirty = true;
+            updated = entry.state;
+        }
+        CharacterState.report(listener, name, updated);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restoreState(int slot, int health, double moralAlign, int version) {
+        CharacterState.checkHealth(health);
+        int saved = CharacterState.pack(health, CharacterState.toTenths(moralAlign), version);
+        String name;
+        synchronized (this) {
+            checkSlot(slot);
+            if (generations[slot] == 0) {
+                throw new IllegalArgumentException("Slot " + slot + " is empty");
+            }
+            Entry entry = load(slot, true);
+            entry.state = saved;
+            entry.dirty = true;
+            name = entry.name;
+        }
+        CharacterState.report(listener, name, saved);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void setCharacterListener(CharacterListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMetrics(DatabaseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The name of a cold character is read from disk without bringing the character into memory.
+     */
+    @Override
+    public synchronized String getName(int slot) {
+        checkSlot(slot);
+        if (generations[slot] == 0) {
+            return null;
+        }
+        Entry entry = residents[slot];
+        if (entry != null) {
+            return entry.name;
+        }
+        readRecord(slot);
+        return readName(record.getLong(NAME_OFFSET), record.getInt(NAME_LENGTH));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int getState(int slot) {
+        checkSlot(slot);
+        if (generations[slot] == 0) {
+            throw new IllegalArgumentException("Slot " + slot + " is empty");
+        }
+        return load(slot, false).state;
+    }
+
+    /**
+     * Returns a view of the character in a slot, bringing it into memory if it is cold. The view
+     * brings the character back whenever it is used after being evicted, and stays valid until the
+     * character is removed or moved by compaction, after which using it throws IllegalStateException.
+     *
+     * @param slot The slot to read.
+     * @return A view of the character, or null if the slot is empty.
+     */
+    @Override
+    public synchronized CharacterInterface get(int slot) {
+        checkSlot(slot);
+        if (generations[slot] == 0) {
+            return null;
+        }
+        return new CharacterView(slot, generations[slot], load(slot, true).name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CharacterInterface get(int slot, String name) {
+        return get(slot);
+    }
+
+    /**
+     * Returns the number of characters held in memory
+     *
+     * @return number of resident characters
+     */
+    public synchronized int getResidentCount() {
+        return probationSize + protectedSize;
+    }
+
+    /**
+     * Returns the greatest number of characters held in memory
+     *
+     * @return maximum number of resident characters
+     */
+    public int getMaxResident() {
+        return maxResident;
+    }
+
+    /**
+     * Returns the number of accesses that found their character in memory. Every lookup through get
+     * and every health change applied to a slot counts as an access, and so does a read or change
+     * through a view that has to bring its character back from disk.
+     *
+     * @return number of hits
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of accesses that had to read their character from disk
+     *
+     * @return number of misses
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the share of accesses that found their character in memory
+     *
+     * @return hit rate from 0.0 to 1.0, or 0.0 before the first access
+     */
+    public synchronized double getHitRate() {
+        long accesses = hitCount + missCount;
+        return (accesses == 0) ? 0.0 : (double) hitCount / accesses;
+    }
+
+    /**
+     * Returns the number of characters evicted from memory
+     *
+     * @return number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of evicted characters that had changed and were written to disk
+     *
+     * @return number of write-backs
+     */
+    public synchronized long getWriteBackCount() {
+        return writeBackCount;
+    }
+
+    /**
+     * Closes and deletes the files. The store can not be used afterwards.
+     *
+     * @throws IOException if the files can not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            records.close();
+        } finally {
+            names.close();
+        }
+    }
+
+    /**
+     * Puts a new resident character in an empty slot
+     *
+     * @param slot empty slot
+     * @param name name of character
+     * @param height height of character
+     * @param weight weight of character
+     * @param state packed health and alignment
+     */
+    private void fill(int slot, String name, int height, int weight, int state) {
+        Entry entry = new Entry();
+        entry.slot = slot;
+        entry.name = name;
+        entry.height = height;
+        entry.weight = weight;
+        entry.state = state;
+        entry.dirty = true;
+        generations[slot] = nextGeneration();
+        residents[slot] = entry;
+        link(entry, probationSegment);
+        probationSize++;
+        evictOverflow();
+    }
+
+    /**
+     * Empties a slot, counting a name it had written to disk as garbage
+     *
+     * @param slot slot to empty
+     */
+    private void drop(int slot) {
+        if (generations[slot] == 0) {
+            return;
+        }
+        Entry entry = residents[slot];
+        int nameLength;
+        if (entry != null) {
+            unlink(entry);
+            if (entry.isProtected) {
+                protectedSize--;
+            } else {
+                probationSize--;
+            }
+            residents[slot] = null;
+            nameLength = entry.nameLength;
+        } else {
+            readRecord(slot);
+            nameLength = record.getInt(NAME_LENGTH);
+        }
+        generations[slot] = 0;
+        if (nameLength > 0) {
+            namesGarbage += nameLength;
+            if (namesGarbage > MIN_GARBAGE_BYTES && namesGarbage * 2 > namesSize) {
+                compactNames();
+            }
+        }
+    }
+
+    /**
+     * Returns the resident character of an occupied slot, reading it from disk if it is cold, and marks
+     * it as just used. Only a new lookup of a resident character earns it a place in the protected
+     * segment, so the reads that follow a lookup, like an export reading every field, do not.
+     *
+     * @param slot occupied slot
+     * @param lookup true for a lookup through get or a health change, false for a use of a view
+     * @return the resident character
+     */
+    private Entry load(int slot, boolean lookup) {
+        Entry entry = residents[slot];
+        if (entry != null) {
+            if (lookup) {
+                hitCount++;
+            }
+            unlink(entry);
+            if (lookup && !entry.isProtected && maxProtected > 0) {
+                // a second use earns a place in the protected segment, pushing its oldest back to probation
+                entry.isProtected = true;
+                probationSize--;
+                protectedSize++;
+                if (protectedSize > maxProtected) {
+                    Entry demoted = protectedSegment.previous;
+                    unlink(demoted);
+                    demoted.isProtected = false;
+                    link(demoted, probationSegment);
+                    protectedSize--;
+                    probationSize++;
+                }
+            }
+            link(entry, entry.isProtected ? protectedSegment : probationSegment);
+            return entry;
+        }
+        missCount++;
+        readRecord(slot);
+        entry = new Entry();
+        entry.slot = slot;
+        entry.height = record.getInt(HEIGHT);
+        entry.weight = record.getInt(WEIGHT);
+        entry.state = record.getInt(STATE);
+        entry.nameLength = record.getInt(NAME_LENGTH);
+        entry.nameOffset = record.getLong(NAME_OFFSET);
+        entry.name = readName(entry.nameOffset, entry.nameLength);
+        residents[slot] = entry;
+        link(entry, probationSegment);
+        probationSize++;
+        evictOverflow();
+        return entry;
+    }
+
+    /**
+     * Evicts the least recently used characters until no more than maxResident are in memory, taking
+     * them from the probation segment while it has any
+     */
+    private void evictOverflow() {
+        //Runtime: O(e), where e is the number of characters evicted
+        while (probationSize + protectedSize > maxResident) {
+            Entry victim;
+            if (probationSize > 0) {
+                victim = probationSegment.previous;
+                probationSize--;
+            } else {
+                victim = protectedSegment.previous;
+                protectedSize--;
+            }
+            unlink(victim);
+            residents[victim.slot] = null;
+            evictionCount++;
+            if (victim.dirty) {
+                writeBack(victim);
+                writeBackCount++;
+            }
+        }
+    }
+
+    /**
+     * Writes an evicted character to disk, along with its name if that is not on disk yet
+     *
+     * @param entry character to write
+     */
+    private void writeBack(Entry entry) {
+        if (entry.nameLength < 0) {
+            byte[] bytes = entry.name.getBytes(StandardCharsets.UTF_8);
+            writeFully(names, ByteBuffer.wrap(bytes), namesSize);
+            entry.nameOffset = namesSize;
+            entry.nameLength = bytes.length;
+            namesSize += bytes.length;
+        }
+        record.clear();
+        record.putInt(HEIGHT, entry.height);
+        record.putInt(WEIGHT, entry.weight);
+        record.putInt(STATE, entry.state);
+        record.putInt(NAME_LENGTH, entry.nameLength);
+        record.putLong(NAME_OFFSET, entry.nameOffset);
+        writeRecord(entry.slot);
+        entry.dirty = false;
+    }
+
+    /**
+     * Rewrites the file of names with only the names of characters still in the store
+     */
+    private void compactNames() {
+        try {
+            FileChannel compacted = openFile("names");
+            long size = 0;
+            //Runtime: O(n + b), where n is the number of slots and b the bytes of live names
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (generations[slot] == 0) {
+                    continue;
+                }
+                Entry entry = residents[slot];
+                if (entry != null) {
+                    if (entry.nameLength >= 0) {
+                        copyName(entry.nameOffset, entry.nameLength, compacted);
+                        entry.nameOffset = size;
+                        size += entry.nameLength;
+                        // its record still points at the old name until it is written back
+                        entry.dirty = true;
+                    }
+                } else {
+                    readRecord(slot);
+                    int nameLength = record.getInt(NAME_LENGTH);
+                    copyName(record.getLong(NAME_OFFSET), nameLength, compacted);
+                    record.putLong(NAME_OFFSET, size);
+                    writeRecord(slot);
+                    size += nameLength;
+                }
+            }
+            names.close();
+            names = compacted;
+            namesSize = size;
+            namesGarbage = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends a name from the file of names to another file
+     *
+     * @param offset position of the name
+     * @param length number of bytes in the name
+     * @param target file to append to
+     * @throws IOException if a file can not be read or written
+     */
+    private void copyName(long offset, int length, FileChannel target) throws IOException {
+        long copied = 0;
+        while (copied < length) {
+            copied += names.transferTo(offset + copied, length - copied, target);
+        }
+    }
+
+    /**
+     * Reads the record of a cold slot into the record buffer
+     *
+     * @param slot slot to read
+     */
+    private void readRecord(int slot) {
+        record.clear();
+        readFully(records, record, (long) slot * RECORD_BYTES);
+    }
+
+    /**
+     * Writes the record buffer as the record of a slot
+     *
+     * @param slot slot to write
+     */
+    private void writeRecord(int slot) {
+        record.clear();
+        writeFully(records, record, (long) slot * RECORD_BYTES);
+    }
+
+    /**
+     * Reads a name from the file of names
+     *
+     * @param offset position of the name
+     * @param length number of bytes in the name
+     * @return the name
+     */
+    private String readName(long offset, int length) {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        readFully(names, bytes, offset);
+        return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fills a buffer from a file
+     *
+     * @param channel file to read
+     * @param buffer buffer to fill
+     * @param position position in the file
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) {
+        try {
+            //Runtime: O(b), where b is the number of bytes read
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    throw new EOFException("Cold character file ends early");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a whole buffer to a file
+     *
+     * @param channel file to write
+     * @param buffer buffer to write
+     * @param position position in the file
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) {
+        try {
+            //Runtime: O(b), where b is the number of bytes written
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates a scratch file in the store's directory that is deleted when it is closed
+     *
+     * @param prefix start of the file name
+     * @return the open file
+     * @throws IOException if the file can not be created
+     */
+    private FileChannel openFile(String prefix) throws IOException {
+        Path path = Files.createTempFile(directory, prefix, ".dat");
+        return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Returns a new generation for a filled slot, never 0
+     *
+     * @return the generation
+     */
+    private int nextGeneration() {
+        lastGeneration++;
+        if (lastGeneration == 0) {
+            lastGeneration = 1;
+        }
+        return lastGeneration;
+    }
+
+    /**
+     * Copies the per-slot arrays into arrays of the given length
+     *
+     * @param length new length of the arrays
+     */
+    private void resize(int length) {
+        //Runtime: O(n), where n is the number of slots
+        generations = Arrays.copyOf(generations, length);
+        residents = Arrays.copyOf(residents, length);
+    }
+
+    /**
+     * Checks that a slot is inside the store
+     *
+     * @param slot slot to check
+     * @throws IndexOutOfBoundsException if the slot is not inside the store
+     */
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= slotCount) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " out of range");
+        }
+    }
+
+    /**
+     * Puts an entry at the most recently used end of a segment
+     *
+     * @param entry entry to put
+     * @param segment sentinel of the segment
+     */
+    private static void link(Entry entry, Entry segment) {
+        entry.previous = segment;
+        entry.next = segment.next;
+        segment.next.previous = entry;
+        segment.next = entry;
+    }
+
+    /**
+     * Takes an entry out of its segment, leaving the segment sizes to the caller
+     *
+     * @param entry entry to take out
+     */
+    private static void unlink(Entry entry) {
+        entry.previous.next = entry.next;
+        entry.next.previous = entry.previous;
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    /**
+     * An Entry is a resident character, or the sentinel of a segment.
+     */
+    private static final class Entry {
+        private int slot;
+        private String name;
+        private int height;
+        private int weight;
+        private int state;
+        // where the name was written on disk, with a length of -1 until it is
+        private int nameLength = -1;
+        private long nameOffset;
+        // true if the character changed since it was last written to disk
+        private boolean dirty;
+        private boolean isProtected;
+        private Entry previous;
+        private Entry next;
+    }
+
+    /**
+     * A character backed by one slot of the store. It remembers the generation of the slot it was
+     * created for, so a slot that has since been emptied or refilled is detected instead of read.
+     */
+    private final class CharacterView implements CharacterInterface {
+        private final int slot;
+        private final int generation;
+        private final String name;
+
+        private CharacterView(int slot, int generation, String name) {
+            this.slot = slot;
+            this.generation = generation;
+            this.name = name;
+        }
+
+        /**
+         * Returns the resident character, checking that the slot still holds this character.
+         * Must be called holding the store's lock.
+         *
+         * @return the resident character
+         * @throws IllegalStateException if the character was removed or moved
+         */
+        private Entry entry() {
+            if (slot >= slotCount || generations[slot] != generation) {
+                throw new IllegalStateException("Character " + name + " is no longer in this slot");
+            }
+            return load(slot, false);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getHeight() {
+            synchronized (TieredCharacterStore.this) {
+                return entry().height;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getWeight() {
+            synchronized (TieredCharacterStore.this) {
+                return entry().weight;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getHealth() {
+            synchronized (TieredCharacterStore.this) {
+                return CharacterState.health(entry().state);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getMoralAlign() {
+            synchronized (TieredCharacterStore.this) {
+                return CharacterState.moralAlign(entry().state);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void heal(int healAmount) {
+            CharacterState.checkAmount(healAmount);
+            DatabaseMetrics timing = metrics;
+            long start = (timing == null) ? 0 : System.nanoTime();
+            int updated;
+            synchronized (TieredCharacterStore.this) {
+                Entry entry = entry();
+                entry.state = CharacterState.heal(entry.state, healAmount);
+                entry.dirty = true;
+                updated = entry.state;
+            }
+            CharacterState.report(listener, name, updated);
+            if (timing != null) {
+                timing.recordSince(DatabaseOperation.HEAL, start);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void injure(int injureAmount) {
+            CharacterState.checkAmount(injureAmount);
+            DatabaseMetrics timing = metrics;
+            long start = (timing == null) ? 0 : System.nanoTime();
+            int updated;
+            synchronized (TieredCharacterStore.this) {
+                Entry entry = entry();
+                entry.state = CharacterState.injure(entry.state, injureAmount);
+                entry.dirty = true;
+                updated = entry.state;
+            }
+            CharacterState.report(listener, name, updated);
+            if (timing != null) {
+                timing.recordSince(DatabaseOperation.INJURE, start);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void change(double moralAlign) {
+            DatabaseMetrics timing = metrics;
+            long start = (timing == null) ? 0 : System.nanoTime();
+            int updated;
+            synchronized (TieredCharacterStore.this) {
+                Entry entry = entry();
+                entry.state = CharacterState.change(entry.state, moralAlign);
+                entry.dirty = true;
+                updated = entry.state;
+            }
+            CharacterState.report(listener, name, updated);
+            if (timing != null) {
+                timing.recordSince(DatabaseOperation.CHANGE, start);
+            }
+        }
+
+        /**
+         * Returns a formated string of all the characters stats
+         *
+         * @return string of character stats
+         */
+        @Override
+        public String toString() {
+            synchronized (TieredCharacterStore.this) {
+                Entry entry = entry();
+                return CharacterState.format(name, entry.height, entry.weight, entry.state);
+            }
+        }
+    }
+}
@@ -0,0 +1,646 @@
+package CharacterStuff;
+
+import Dictionary.ObjectIntHashedDictionary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * The WriteAheadLog appends every change reported by a CharacterDatabase to a file, so the changes made
+ * since the last snapshot survive a crash. Each record holds the new absolute values of one character and
+ * a CRC32C checksum, so replaying stops cleanly at a record that was only partly written.
+ * Records are collected in memory and written with group commit: the first thread that needs its records
+ * on disk writes and forces everything collected so far, and every thread whose records were in that batch
+ * returns after the same fsync. Threads that arrive while a batch is being forced make up the next batch.
+ * With waitForDurability off, changes only wait for the memory buffer, and a background thread forces it
+ * every few milliseconds or as soon as it fills up; sync() makes everything appended so far durable.
+ * Records are built straight into the buffer under the log's lock, so logging a change allocates nothing.
+ */
+public class WriteAheadLog implements CharacterListener, Closeable {
+    private static final byte ADDED = 1;
+    private static final byte REMOVED = 2;
+    private static final byte CHANGED = 3;
+    // payload length and checksum in front of every record
+    private static final int RECORD_HEADER_BYTES = 8;
+    // type and name length in front of every name
+    private static final int NAME_HEADER_BYTES = 5;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final int BUFFER_BYTES = 1 << 16;
+    // pending bytes that wake the background flush early, and that make writers wait for it
+    private static final int FLUSH_BYTES = BUFFER_BYTES;
+    private static final int MAX_PENDING_BYTES = 16 * BUFFER_BYTES;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Path path;
+    private FileChannel channel;
+    private final boolean waitForDurability;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition synced = lock.newCondition();
+    private final Condition flushNeeded = lock.newCondition();
+    // checksums records as they are appended, guarded by the lock
+    private final CRC32C checksum = new CRC32C();
+    // forces pending records without waitForDurability, null with it
+    private final Thread flusher;
+    // records appended but not yet written, and the buffer the next batch will use
+    private ByteBuffer pending;
+    private ByteBuffer spare;
+    // log sequence numbers count every byte ever appended, so they keep growing across reset;
+    // the file holds the bytes from fileStartSequence up to durableSequence
+    private long fileStartSequence;
+    private long appendedSequence;
+    private long durableSequence;
+    private boolean syncing;
+    private boolean closed;
+    private IOException failure;
+    private long syncCount;
+
+    /**
+     * Opens a log file for appending, creating it if it does not exist. A partly written record at the
+     * end of the file is cut off. The log does not replay the file; use recover for that.
+     *
+     * @param path log file
+     * @param waitForDurability true to make every change wait until its record has been forced to disk
+     * @throws IOException if the file can not be opened
+     */
+    public WriteAheadLog(Path path, boolean waitForDurability) throws IOException {
+        long validLength = Files.exists(path) ? replay(path, null) : 0;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        this.path = path;
+        this.waitForDurability = waitForDurability;
+        pending = ByteBuffer.allocate(BUFFER_BYTES);
+        spare = ByteBuffer.allocate(BUFFER_BYTES);
+        appendedSequence = validLength;
+        durableSequence = validLength;
+        if (waitForDurability) {
+            flusher = null;
+        } else {
+            flusher = new Thread(this::flushPeriodically, "write-ahead-log-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    /**
+     * Replays a log on top of a database holding the base state, usually one loaded from the snapshot the
+     * log was started after, then opens the log and attaches it to the database so new changes are logged.
+     *
+     * @param path log file
+     * @param database database holding the base state
+     * @param waitForDurability true to make every change wait until its record has been forced to disk
+     * @return the open log
+     * @throws IOException if the log can not be read or opened
+     */
+    public static WriteAheadLog recover(Path path, CharacterDatabase database, boolean waitForDurability)
+            throws IOException {
+        if (Files.exists(path)) {
+            replay(path, database);
+        }
+        WriteAheadLog log = new WriteAheadLog(path, waitForDurability);
+        database.addCharacterListener(log);
+        return log;
+    }
+
+    /**
+     * Applies every complete record of a log to a database, stopping at the first record that is partly
+     * written or fails its checksum. The log must not be attached to the database while it is replayed.
+     * Each change puts back the logged health, alignment and version exactly, so records appended after
+     * recovery carry later versions than the ones replayed. A change is only applied if its version is newer
+     * than the one the character already has, so changes the base snapshot holds and changes logged out of
+     * order are skipped.
+     *
+     * @param path log file
+     * @param database database to apply the records to, or null to only check the log
+     * @return the length of the log up to the end of the last complete record
+     * @throws IOException if the log can not be read
+     */
+    public static long replay(Path path, CharacterDatabase database) throws IOException {
+        CRC32C checksum = new CRC32C();
+        long validLength = 0;
+        try (FileChannel input = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).flip();
+            //Runtime: O(n), where n is the length of the log
+            while (true) {
+                buffer = fill(input, buffer, RECORD_HEADER_BYTES);
+                if (buffer == null) {
+                    break;
+                }
+                int length = buffer.getInt(buffer.position());
+                int expectedChecksum = buffer.getInt(buffer.position() + 4);
+                if (length < NAME_HEADER_BYTES || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+                buffer = fill(input, buffer, RECORD_HEADER_BYTES + length);
+                if (buffer == null) {
+                    break;
+                }
+                buffer.position(buffer.position() + RECORD_HEADER_BYTES);
+                ByteBuffer payload = buffer.slice(buffer.position(), length);
+                checksum.reset();
+                checksum.update(payload.duplicate());
+                if ((int) checksum.getValue() != expectedChecksum) {
+                    break;
+                }
+                if (database != null) {
+                    apply(payload, database);
+                }
+                buffer.position(buffer.position() + length);
+                validLength += RECORD_HEADER_BYTES + length;
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void characterAdded(String name, int height, int weight, int health, double moralAlign) {
+        long sequence;
+        lock.lock();
+        try {
+            int start = startRecord(ADDED, name, 10);
+            pending.putInt(height);
+            pending.putInt(weight);
+            pending.put((byte) health);
+            pending.put((byte) CharacterState.toTenths(moralAlign));
+            sequence = finishRecord(start);
+        } finally {
+            lock.unlock();
+        }
+        awaitLogged(sequence);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void characterRemoved(String name) {
+        long sequence;
+        lock.lock();
+        try {
+            sequence = finishRecord(startRecord(REMOVED, name, 0));
+        } finally {
+            lock.unlock();
+        }
+        awaitLogged(sequence);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void characterChanged(String name, int health, double moralAlign, int version) {
+        long sequence;
+        lock.lock();
+        try {
+            int start = startRecord(CHANGED, name, 4);
+            pending.put((byte) health);
+            pending.put((byte) CharacterState.toTenths(moralAlign));
+            pending.putShort((short) version);
+            sequence = finishRecord(start);
+        } finally {
+            lock.unlock();
+        }
+        awaitLogged(sequence);
+    }
+
+    /**
+     * Waits until every record appended so far has been forced to disk
+     *
+     * @throws IOException if the log could not be written
+     */
+    public void sync() throws IOException {
+        long sequence;
+        lock.lock();
+        try {
+            sequence = appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Returns the position the log has reached. Take a mark just before capturing a snapshot and pass it
+     * to reset once the snapshot is saved.
+     *
+     * @return sequence number of the end of the last record appended
+     */
+    public long mark() {
+        lock.lock();
+        try {
+            return appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the records appended before a mark. Call this once a snapshot captured after the mark was
+     * taken has been saved: the dropped changes are all in the snapshot, and the records kept, which
+     * may have been appended while the snapshot was being captured or written, are replayed on top of it.
+     * The records kept are copied to a new file that replaces the old one, so a crash leaves one or the other.
+     *
+     * @param mark position returned by mark
+     * @throws IOException if the log could not be rewritten
+     * @throws IllegalArgumentException if the mark is past the end of the log
+     */
+    public void reset(long mark) throws IOException {
+        lock.lock();
+        try {
+            if (mark > appendedSequence) {
+                throw new IllegalArgumentException("Mark " + mark + " is past the end of the log");
+            }
+            while (syncing) {
+                synced.awaitUninterruptibly();
+            }
+            checkFailure();
+            if (mark <= fileStartSequence) {
+                return;
+            }
+            if (mark >= durableSequence) {
+                // the whole file and the first pending records are older than the mark
+                pending.flip().position((int) (mark - durableSequence));
+                pending.compact();
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(true);
+                // the dropped records are covered by the snapshot, so their writers can go on
+                durableSequence = mark;
+                synced.signalAll();
+            } else {
+                keepFileFrom(mark - fileStartSequence);
+            }
+            fileStartSequence = mark;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of times the log has been forced to disk. With group commit this grows more
+     * slowly than the number of changes.
+     *
+     * @return number of fsyncs
+     */
+    public long getSyncCount() {
+        lock.lock();
+        try {
+            return syncCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces every appended record to disk and closes the log file
+     *
+     * @throws IOException if the log could not be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (flusher != null) {
+                lock.lock();
+                try {
+                    closed = true;
+                    flushNeeded.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    flusher.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            sync();
+        } finally {
+            lock.lock();
+            try {
+                channel.close();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Starts a record at the end of the pending batch with its type and the character's name, waiting
+     * first if the background flush has fallen behind. The lock must be held.
+     *
+     * @param type type of the record
+     * @param name name of the character
+     * @param fieldBytes number of bytes that will follow the name
+     * @return position of the record in the pending batch
+     * @throws UncheckedIOException if the log could not be written
+     */
+    private int startRecord(byte type, String name, int fieldBytes) {
+        //Runtime: O(1) per batch forced while waiting
+        while (true) {
+            if (failure != null) {
+                throw new UncheckedIOException("Write-ahead log has failed", failure);
+            }
+            if (flusher == null || closed || pending.position() < MAX_PENDING_BYTES) {
+                break;
+            }
+            flushNeeded.signal();
+            synced.awaitUninterruptibly();
+        }
+        // a char takes at most 3 bytes of UTF-8, and a surrogate pair 4
+        int maxBytes = RECORD_HEADER_BYTES + NAME_HEADER_BYTES + 3 * name.length() + fieldBytes;
+        if (pending.remaining() < maxBytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + maxBytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        int start = pending.position();
+        pending.position(start + RECORD_HEADER_BYTES);
+        pending.put(type);
+        int nameStart = pending.position() + 4;
+        pending.position(nameStart);
+        putUtf8(pending, name);
+        pending.putInt(nameStart - 4, pending.position() - nameStart);
+        return start;
+    }
+
+    /**
+     * Fills in the length and checksum of the record at the end of the pending batch and counts it as
+     * appended, waking the background flush if the batch has grown large. The lock must be held.
+     *
+     * @param start position of the record, as returned by startRecord
+     * @return sequence number of the end of the record
+     */
+    private long finishRecord(int start) {
+        int length = pending.position() - start - RECORD_HEADER_BYTES;
+        checksum.reset();
+        checksum.update(pending.array(), start + RECORD_HEADER_BYTES, length);
+        pending.putInt(start, length);
+        pending.putInt(start + 4, (int) checksum.getValue());
+        appendedSequence += RECORD_HEADER_BYTES + length;
+        if (flusher != null && pending.position() >= FLUSH_BYTES) {
+            flushNeeded.signal();
+        }
+        return appendedSequence;
+    }
+
+    /**
+     * Waits for a record to be forced to disk if changes wait for durability
+     *
+     * @param sequence sequence number of the end of the record
+     * @throws UncheckedIOException if the log could not be written
+     */
+    private void awaitLogged(long sequence) {
+        if (waitForDurability) {
+            try {
+                awaitDurable(sequence);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Forces the pending records every FLUSH_INTERVAL_NANOS, or sooner once FLUSH_BYTES are pending,
+     * until the log is closed. Run by the flusher thread.
+     */
+    private void flushPeriodically() {
+        lock.lock();
+        try {
+            //Runtime: O(1) per flush
+            while (!closed) {
+                if (pending.position() < FLUSH_BYTES) {
+                    try {
+                        flushNeeded.awaitNanos(FLUSH_INTERVAL_NANOS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (durableSequence < appendedSequence && failure == null) {
+                    long sequence = appendedSequence;
+                    lock.unlock();
+                    try {
+                        awaitDurable(sequence);
+                    } catch (IOException e) {
+                        // kept in failure and thrown to the next writer
+                    } finally {
+                        lock.lock();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the log is durable up to the given sequence number. If no batch is being forced, the
+     * calling thread becomes the leader and writes and forces every pending record itself.
+     *
+     * @param sequence sequence number to wait for
+     * @throws IOException if the log could not be written
+     */
+    private void awaitDurable(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                checkFailure();
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                ByteBuffer batch = pending;
+                pending = spare;
+                long batchEnd = appendedSequence;
+                FileChannel output = channel;
+                IOException error = null;
+                lock.unlock();
+                try {
+                    // other threads keep appending to the new pending buffer while this batch is forced
+                    batch.flip();
+                    while (batch.hasRemaining()) {
+                        output.write(batch);
+                    }
+                    output.force(false);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                }
+                batch.clear();
+                spare = batch;
+                syncing = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSequence = Math.max(durableSequence, batchEnd);
+                    syncCount++;
+                }
+                synced.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Throws the error that stopped the log, if there was one
+     *
+     * @throws IOException the error that stopped the log
+     */
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log has failed", failure);
+        }
+    }
+
+    /**
+     * Replaces the log file with a copy of its records from the given offset on. The lock must be held
+     * and no batch may be being forced.
+     *
+     * @param offset offset in the file of the first record to keep
+     * @throws IOException if the copy could not be written, or the log could not be reopened
+     */
+    private void keepFileFrom(long offset) throws IOException {
+        Path copyPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel copy = FileChannel.open(copyPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = channel.size();
+            //Runtime: O(n), where n is the number of bytes kept
+            for (long position = offset; position < size; ) {
+                position += channel.transferTo(position, size - position, copy);
+            }
+            copy.force(true);
+        }
+        Files.move(copyPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel.close();
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Applies one record to a database
+     *
+     * @param payload payload of the record
+     * @param database database to change
+     */
+    private static void apply(ByteBuffer payload, CharacterDatabase database) {
+        byte type = payload.get();
+        int nameLength = payload.getInt();
+        if (nameLength <= 0 || nameLength > payload.remaining()) {
+            throw new IllegalStateException("Write-ahead log record has a bad name");
+        }
+        byte[] nameBytes = new byte[nameLength];
+        payload.get(nameBytes);
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+        if (type == ADDED) {
+            int height = payload.getInt();
+            int weight = payload.getInt();
+            int health = payload.get();
+            int alignmentTenths = payload.get();
+            database.addCharacter(name, height, weight, alignmentTenths / 10.0);
+            if (health != CharacterState.MAX_HEALTH) {
+                database.characterStore.restoreState(database.dictionary.getValue(name), health,
+                        alignmentTenths / 10.0, 0);
+            }
+        } else if (type == REMOVED) {
+            database.removeCharacter(name);
+        } else if (type == CHANGED) {
+            int health = payload.get();
+            int alignmentTenths = payload.get();
+            int version = Short.toUnsignedInt(payload.getShort());
+            int slot = database.dictionary.getValue(name);
+            if (slot != ObjectIntHashedDictionary.NO_VALUE && CharacterState.isNewer(version,
+                    CharacterState.version(database.characterStore.getState(slot)))) {
+                database.characterStore.restoreState(slot, health, alignmentTenths / 10.0, version);
+            }
+        } else {
+            throw new IllegalStateException("Write-ahead log record has unknown type " + type);
+        }
+    }
+
+    /**
+     * Writes a name as UTF-8, the way String.getBytes does, without allocating. Unpaired surrogates
+     * become '?'.
+     *
+     * @param buffer buffer with room for 3 bytes per char of the name
+     * @param name name to write
+     */
+    private static void putUtf8(ByteBuffer buffer, String name) {
+        //Runtime: O(n), where n is the length of the name
+        for (int index = 0; index < name.length(); index++) {
+            char c = name.charAt(index);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (!java.lang.Character.isSurrogate(c)) {
+                buffer.put((byte) (0xe0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (java.lang.Character.isHighSurrogate(c) && index + 1 < name.length()
+                    && java.lang.Character.isLowSurrogate(name.charAt(index + 1))) {
+                int codePoint = java.lang.Character.toCodePoint(c, name.charAt(++index));
+                buffer.put((byte) (0xf0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+            } else {
+                buffer.put((byte) '?');
+            }
+        }
+    }
+
+    /**
+     * Makes sure a read buffer holds at least the given number of bytes, reading more from the
+     * channel and growing the buffer if needed
+     *
+     * @param input channel to read from
+     * @param buffer buffer in read mode
+     * @param bytes number of bytes needed
+     * @return the buffer, which may be a new one, in read mode, or null if the channel ended first
+     * @throws IOException if the channel can not be read
+     */
+    private static ByteBuffer fill(FileChannel input, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        if (buffer.capacity() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() * 2));
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < bytes) {
+            if (input.read(buffer) < 0) {
+                return null;
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,1346 @@
+package Dictionary;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * The open addressing hash table shared by the hashed dictionaries. Keys and their cached hash
+ * codes are kept in parallel arrays, while subclasses keep the values in a parallel array of
+ * whatever type they store. Probing, resizing and the incremental migration after a resize all
+ * happen here; subclasses are told when to move or clear their values.
+ *
+ * @param <K> The type of keys in the dictionary.
+ */
+public abstract class AbstractHashedDictionary<K> {
+
+    int numberOfEntries;
+    // changed whenever entries are added, removed or moved, so iterators can detect it
+    int modCount;
+    static final int DEFAULT_CAPACITY = 5;
+    // largest prime that is still a valid Java array length
+    static final int MAX_SIZE = 2147483629;
+    static final int MAX_CAPACITY = MAX_SIZE / 2;
+    // largest power of two that is a valid Java array length
+    private static final int MAX_POWER_OF_TWO_SIZE = 1 << 30;
+    // a full table is rebuilt at the same size instead of doubled while at most this share is live
+    private static final double MIN_GROWTH_LOAD_FACTOR = 0.25;
+    // number of old slots moved into the new table by each add or remove
+    private static final int MIGRATION_STEP = 4;
+    // parallel arrays making up the hash table, a null key is an empty slot
+    Object[] keys;
+    int[] hashes;
+    // table being drained into the current one after a resize, null when no resize is in progress
+    Object[] oldKeys;
+    int[] oldHashes;
+    private int migrationIndex;
+    // number of available (removed) slots in the current table
+    private int availableCount;
+    private boolean integrityOK = false;
+    private static final double MAX_LOAD_FACTOR = 0.5;
+    // key stored in slots whose entry has been removed
+    static final Object AVAILABLE = new Object();
+    // null unless instrumentation has been turned on
+    private ProbeListener probeListener;
+    private final CollisionResolution collisionResolution;
+    private final HashMixing hashMixing;
+    private final int hashSeed;
+    // power-of-two tables map hashes to slots with a mask instead of a remainder
+    private final boolean powerOfTwoTables;
+    // slots inspected and keys compared since the last resetProbeCount
+    private long probes;
+    private long comparisons;
+
+    /**
+     * Creates the key arrays of a new dictionary with the specified initial capacity. Subclasses
+     * allocate their value array with the same length.
+     *
+     * @param initialCapacity The initial capacity of the hash table.
+     * @param collisionResolution The probing scheme used to resolve collisions.
+     * @param hashMixing How keys are hashed before they are placed.
+     * @param powerOfTwoTables True to use power-of-two table lengths instead of prime ones.
+     * @param hashSeed Seed given to the hash mixing stage.
+     */
+    AbstractHashedDictionary(int initialCapacity, CollisionResolution collisionResolution,
+                             HashMixing hashMixing, boolean powerOfTwoTables, int hashSeed) {
+        if ((collisionResolution == null) || (hashMixing == null)) {
+            throw new IllegalArgumentException("Collision resolution and hash mixing must not be null");
+        }
+        if (powerOfTwoTables && (hashMixing == HashMixing.NONE)) {
+            // the low bits of an unmixed hashCode are not spread well enough to mask
+            throw new IllegalArgumentException("Power-of-two tables need a hash mixing stage");
+        }
+        this.collisionResolution = collisionResolution;
+        this.hashMixing = hashMixing;
+        this.hashSeed = hashSeed;
+        this.powerOfTwoTables = powerOfTwoTables;
+        initialCapacity = checkCapacity(initialCapacity);
+        numberOfEntries = 0;
+
+        int tableSize = powerOfTwoTables ? getNextPowerOfTwo(initialCapacity) : getNextPrime(initialCapacity);
+        checkSize(tableSize);
+
+        keys = new Object[tableSize];
+        hashes = new int[tableSize];
+        integrityOK = true;
+    }
+
+    /**
+     * Replaces the current value array with a new one of the given length and keeps the old one
+     * for migration
+     *
+     * @param length length of the new value array
+     */
+    abstract void startValueMigration(int length);
+
+    /**
+     * Moves a value from the table being migrated into the current table
+     *
+     * @param oldIndex index in the old value array
+     * @param newIndex index in the current value array
+     */
+    abstract void migrateValue(int oldIndex, int newIndex);
+
+    /**
+     * Drops the old value array once every entry has been migrated
+     */
+    abstract void endValueMigration();
+
+    /**
+     * Clears every value of the current table
+     */
+    abstract void clearValues();
+
+    /**
+     * Returns a printable form of a stored value
+     *
+     * @param inOldTable true if the value is in the table being migrated
+     * @param index index of the value
+     * @return the value as a string
+     */
+    abstract String valueToString(boolean inOldTable, int index);
+
+    /**
+     * Writes the value stored at the given index as the value field of a record
+     *
+     * @param out record writer to write to
+     * @param inOldTable true if the index is in the table being migrated
+     * @param index index of the value
+     * @throws IOException if the record writer can not write
+     */
+    abstract void writeValue(RecordWriter out, boolean inOldTable, int index) throws IOException;
+
+    /**
+     * Displays the hash table, printing either null, available, or the key value pair
+     */
+    public void displayHashTable() {
+        checkIntegrity();
+        // printed through one buffer instead of a write per slot, and flushed but not closed
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+        out.println("Hashed Dictionary: ");
+        displayTable(out, keys, false);
+        if (oldKeys != null) {
+            out.println("Entries not yet migrated from the previous table: ");
+            displayTable(out, oldKeys, true);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes a page of the hash table's slots as records, starting at a cursor returned by the
+     * previous page. Each record holds the slot, the table it is in (current, or old while a resize
+     * is migrated), its state (empty, available or live), and the cached hash, key and value of a
+     * live slot. Writing the table in pages lets it be exported while it is in use between pages;
+     * entries added, removed or moved by a resize between pages may be missed or written twice.
+     *
+     * @param out record writer to write to, which is not flushed
+     * @param cursor 0 for the first page, which starts with the header, or the cursor returned by
+     * the previous page
+     * @param maxSlots greatest number of slots to write
+     * @return the cursor of the next page, or -1 if every slot has been written
+     * @throws IOException if the record writer can not write
+     * @throws IllegalArgumentException if the cursor is negative or maxSlots is not positive
+     */
+    public int exportTable(RecordWriter out, int cursor, int maxSlots) throws IOException {
+        checkIntegrity();
+        if (cursor < 0 || maxSlots <= 0) {
+            throw new IllegalArgumentException("Cursor must not be negative and page size must be positive");
+        }
+        if (cursor == 0) {
+            out.writeHeader("slot", "table", "state", "hash", "key", "value");
+        }
+        int end = (int) Math.min((long) cursor + maxSlots, getPositionCount());
+        //Runtime: O(m), where m is maxSlots
+        for (int position = cursor; position < end; position++) {
+            boolean inOldTable = position >= keys.length;
+            int index = inOldTable ? position - keys.length : position;
+            Object slotKey = inOldTable ? oldKeys[index] : keys[index];
+            out.startRecord();
+            out.field("slot", index);
+            out.field("table", inOldTable ? "old" : "current");
+            if (isOccupied(slotKey)) {
+                out.field("state", "live");
+                out.field("hash", inOldTable ? oldHashes[index] : hashes[index]);
+                out.field("key", (slotKey instanceof CharSequence) ? (CharSequence) slotKey : slotKey.toString());
+                writeValue(out, inOldTable, index);
+            } else {
+                out.field("state", (slotKey == null) ? "empty" : "available");
+                out.field("hash", null);
+                out.field("key", null);
+                out.field("value", null);
+            }
+            out.endRecord();
+        }
+        return (end < getPositionCount()) ? end : -1;
+    }
+
+    /**
+     * Prints every slot of the given table, either null, available, or the key value pair
+     *
+     * @param out writer to print to
+     * @param tableKeys keys of the table to be printed
+     * @param inOldTable true if the table is the one being migrated
+     */
+    private void displayTable(PrintWriter out, Object[] tableKeys, boolean inOldTable) {
+        // Runtime: O(N)
+        // Loops through each element in hash table and prints it out
+        for (int index = 0; index < tableKeys.length; index++) {
+            out.print(index);
+            out.print(": ");
+            if (tableKeys[index] == null) {
+                out.print("null");
+            } else if (tableKeys[index] == AVAILABLE) {
+                out.print("available");
+            } else {
+                out.print(tableKeys[index]);
+                out.print(' ');
+                out.print(valueToString(inOldTable, index));
+            }
+            out.println();
+        }
+        out.println();
+    }
+
+    /**
+     * Sets the listener that receives probe and resize events. Passing null turns
+     * instrumentation off, which is the default.
+     *
+     * @param probeListener listener to report to, or null
+     */
+    public void setProbeListener(ProbeListener probeListener) {
+        this.probeListener = probeListener;
+    }
+
+    /**
+     * Returns the listener that receives probe and resize events
+     *
+     * @return the current listener, or null if instrumentation is off
+     */
+    public ProbeListener getProbeListener() {
+        return probeListener;
+    }
+
+    /**
+     * Returns the probing scheme this dictionary resolves collisions with
+     *
+     * @return the collision resolution scheme
+     */
+    public CollisionResolution getCollisionResolution() {
+        return collisionResolution;
+    }
+
+    /**
+     * Returns how keys are hashed before they are placed
+     *
+     * @return the hash mixing stage
+     */
+    public HashMixing getHashMixing() {
+        return hashMixing;
+    }
+
+    /**
+     * Returns true if the table lengths are powers of two rather than primes
+     *
+     * @return true for power-of-two tables
+     */
+    public boolean hasPowerOfTwoTables() {
+        return powerOfTwoTables;
+    }
+
+    /**
+     * Returns the number of slots inspected by probes since the last reset, counting the home slot
+     *
+     * @return number of probes
+     */
+    public long getProbes() {
+        return probes;
+    }
+
+    /**
+     * Returns the number of key comparisons made by probes since the last reset. Slots whose cached
+     * hash differs from the key's hash are skipped without a comparison.
+     *
+     * @return number of comparisons
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    /**
+     * Sets the probe and comparison counts back to zero
+     */
+    public void resetProbeCount() {
+        probes = 0;
+        comparisons = 0;
+    }
+
+    /**
+     * Returns the number of slots of the current table that hold removed entries
+     *
+     * @return number of available slots
+     */
+    public int getTombstoneCount() {
+        return availableCount;
+    }
+
+    /**
+     * Returns the share of the current table taken up by removed entries
+     *
+     * @return available slots divided by the table length
+     */
+    public double getTombstoneRatio() {
+        return (double) availableCount / keys.length;
+    }
+
+    /**
+     * Returns the length of the current hash table
+     *
+     * @return number of slots in the current table
+     */
+    public int getTableLength() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the share of the current table the entries would fill, counting entries not yet
+     * migrated from the previous table
+     *
+     * @return number of entries divided by the table length
+     */
+    public double getLoadFactor() {
+        return (double) numberOfEntries / keys.length;
+    }
+
+    /**
+     * Creates an iterator that traverses all search keys in this dictionary.
+     *
+     * @return An iterator that provides sequential access to the search
+     * keys in the dictionary.
+     */
+    public Iterator<K> getKeyIterator() {
+        return new KeyIterator();
+    }
+
+    /**
+     * Creates a spliterator over all search keys in this dictionary. It splits the slots of the
+     * table into ranges, so the keys can feed a parallel stream. It throws a
+     * ConcurrentModificationException if the dictionary is changed while it is in use.
+     *
+     * @return A spliterator over the keys in the dictionary.
+     */
+    public Spliterator<K> getKeySpliterator() {
+        return new KeySpliterator(0, -1, 0, 0);
+    }
+
+    /**
+     * Sees whether this dictionary is empty.
+     *
+     * @return True if the dictionary is empty.
+     */
+    public boolean isEmpty() {
+        return numberOfEntries == 0;
+    }
+
+    /**
+     * Gets the size of this dictionary.
+     *
+     * @return The number of entries (key-value pairs) currently
+     * in the dictionary.
+     */
+    public int getSize() {
+        return numberOfEntries;
+    }
+
+    /**
+     * Removes all entries from this dictionary.
+     */
+    public void clear() {
+        checkIntegrity();
+        // Runtime: O(n) because is iterates through each element in the hash table
+        for (int index = 0; index < keys.length; index++) {
+            keys[index] = null;
+        }
+        clearValues();
+        if (oldKeys != null) {
+            endMigration();
+        }
+        availableCount = 0;
+        reportTombstones();
+        numberOfEntries = 0;
+        modCount++;
+    }
+
+    /**
+     * Grows the hash table so the given number of entries fit without another resize, and
+     * finishes any resize in progress. A table that is large enough, but whose removed entries
+     * would push it over the load factor before it holds that many, is rebuilt at the same size.
+     * Nothing happens if the table already has room.
+     *
+     * @param capacity number of entries the dictionary should hold
+     */
+    public void ensureCapacity(int capacity) {
+        checkIntegrity();
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("You can not create a dictionary with a capacity larger than" +
+                    MAX_CAPACITY);
+        }
+        // live and available slots may take up at most half of the table
+        int minimumSize = 2 * Math.max(capacity, DEFAULT_CAPACITY) + 1;
+        if (minimumSize > keys.length) {
+            if (powerOfTwoTables && (minimumSize > MAX_POWER_OF_TWO_SIZE)) {
+                throw new IllegalStateException("Dictionary has become too large.");
+            }
+            int newSize = powerOfTwoTables ? getNextPowerOfTwo(minimumSize) : getNextPrime(minimumSize);
+            checkSize(newSize);
+            rebuildHashTable(newSize);
+        } else if ((long) capacity + availableCount > MAX_LOAD_FACTOR * keys.length) {
+            // new entries may not land on available slots, so those are dropped now rather than mid-load
+            rebuildHashTable(keys.length);
+        }
+        //Runtime: O(n), where n is the length of the table being migrated
+        if (oldKeys != null) {
+            migrateEntries(oldKeys.length);
+        }
+    }
+
+    /**
+     * Checks integrity and moves a few more entries of an in-progress resize. Called at the start
+     * of every add and remove.
+     */
+    void beginUpdate() {
+        checkIntegrity();
+        migrateEntries(MIGRATION_STEP);
+    }
+
+    /**
+     * Stores a new key at an empty or available slot of the current table. The subclass stores
+     * the value at the same index.
+     *
+     * @param index index returned by getHashIndex
+     * @param key key to store
+     * @param hash hash code of the key
+     */
+    void insertKey(int index, K key, int hash) {
+        if (keys[index] == AVAILABLE) {
+            availableCount--;
+            reportTombstones();
+        }
+        keys[index] = key;
+        hashes[index] = hash;
+        numberOfEntries++;
+        modCount++;
+    }
+
+    /**
+     * Rebuilds the table if the last insert pushed it past the load factor. A table that is full
+     * mostly of removed entries is rebuilt at the same size, which drops them, instead of doubled.
+     */
+    void afterInsert() {
+        //Runtime: O(1), the re-hashing is spread over the following adds and removes
+        if (isHashTableTooFull()) {
+            if (numberOfEntries <= MIN_GROWTH_LOAD_FACTOR * keys.length) {
+                rebuildHashTable(keys.length);
+            } else {
+                enlargeHashTable();
+            }
+        }
+    }
+
+    /**
+     * Marks the slot at the given index as available. The subclass clears the value.
+     *
+     * @param inOldTable true if the slot is in the table being migrated
+     * @param index index of the slot
+     */
+    void removeKey(boolean inOldTable, int index) {
+        if (inOldTable) {
+            oldKeys[index] = AVAILABLE;
+        } else {
+            keys[index] = AVAILABLE;
+            availableCount++;
+            reportTombstones();
+        }
+        numberOfEntries--;
+        modCount++;
+    }
+
+    /**
+     * Tells the probe listener the number of available slots after it has changed
+     */
+    private void reportTombstones() {
+        if (probeListener != null) {
+            probeListener.tombstonesChanged(availableCount, keys.length);
+        }
+    }
+
+    /**
+     * Tests if a key slot holds a live entry
+     *
+     * @param slotKey key stored in the slot
+     * @return true if the slot is neither empty nor available
+     */
+    static boolean isOccupied(Object slotKey) {
+        return (slotKey != null) && (slotKey != AVAILABLE);
+    }
+
+    /**
+     * Returns the seed given to the hash mixing stage
+     *
+     * @return hash seed of the dictionary
+     */
+    int getHashSeed() {
+        return hashSeed;
+    }
+
+    /**
+     * Stores a key whose hash is already known in the first free slot of its probe sequence,
+     * without comparing it against other keys. The caller must know the key is not in the
+     * dictionary and that the table has room for it. The subclass stores the value at the
+     * returned index.
+     *
+     * @param key key to store
+     * @param hash hash code of the key, as hash(key) would return it
+     * @return index the key was stored at
+     */
+    int insertHashed(K key, int hash) {
+        int index = findFreeSlot(hash);
+        insertKey(index, key, hash);
+        return index;
+    }
+
+    /**
+     * Returns the hash code used to place a key
+     *
+     * @param key key to be hashed
+     * @return hash code of the key
+     */
+    int hash(K key) {
+        return hashMixing.hash(key, hashSeed);
+    }
+
+    /**
+     * Return the index that the given key will be stored at in the has table
+     *
+     * @param tableKeys keys of the table to search
+     * @param tableHashes cached hashes of the table to search
+     * @param key key to be stored in hash table
+     * @param hash hash code of the key
+     * @return the index that key will be stored at
+     */
+    int getHashIndex(Object[] tableKeys, int[] tableHashes, K key, int hash) {
+        //Runtime: O(n) because worst case, probing could go through whole hash table
+        return probe(tableKeys, tableHashes, getHomeIndex(hash, tableKeys.length), key, hash);
+    }
+
+    /**
+     * Returns the slot a hash code maps to before any probing
+     *
+     * @param hash hash code of the key
+     * @param tableLength length of the table the key is placed in
+     * @return the home index of the key
+     */
+    private int getHomeIndex(int hash, int tableLength) {
+        if (powerOfTwoTables) {
+            return hash & (tableLength - 1);
+        }
+        int hashIndex = hash % tableLength;
+        if (hashIndex < 0) {
+            hashIndex = hashIndex + tableLength;
+        }
+        return hashIndex;
+    }
+
+    /**
+     * Returns the step between probes used by double hashing. It comes from the bits of the hash
+     * that the home index does not use and is never 0. The table length is prime, or the step is
+     * odd for a power-of-two table, so every slot is reached before the sequence repeats.
+     *
+     * @param hash hash code of the key
+     * @param tableLength length of the table being probed
+     * @return the probe step, or 1 for the other schemes
+     */
+    private int getSecondHashIndex(int hash, int tableLength) {
+        if (collisionResolution != CollisionResolution.DOUBLE_HASHING) {
+            return 1;
+        } else if (powerOfTwoTables) {
+            return ((hash >>> 16) & (tableLength - 1)) | 1;
+        }
+        return 1 + Math.floorMod(hash / tableLength, tableLength - 1);
+    }
+
+    /**
+     * Returns the number of probe steps after which the probe sequence starts repeating itself
+     *
+     * @param tableLength length of the table being probed
+     * @return the largest useful probe step
+     */
+    private int getMaxIncrement(int tableLength) {
+        // the first (length + 1) / 2 quadratic probes of a prime-sized table are all different,
+        // so a table that is at most half full always has a free slot on every probe sequence
+        if ((collisionResolution == CollisionResolution.QUADRATIC_PROBING) && !powerOfTwoTables) {
+            return tableLength / 2 + 1;
+        }
+        return tableLength;
+    }
+
+    /**
+     * Returns the next index in the probe sequence
+     *
+     * @param homeIndex index the key hashes to
+     * @param increment number of the probe step
+     * @param step distance between probes for double hashing
+     * @param tableLength length of the table being probed
+     * @return the next index to inspect
+     */
+    private int nextProbeIndex(int homeIndex, int increment, int step, int tableLength) {
+        long offset;
+        switch (collisionResolution) {
+            case LINEAR_PROBING:
+                offset = increment;
+                break;
+            case QUADRATIC_PROBING:
+                // triangular numbers reach every slot of a power-of-two table, squares do not
+                offset = powerOfTwoTables ? (long) increment * (increment + 1) / 2 : (long) increment * increment;
+                break;
+            default:
+                offset = (long) increment * step;
+                break;
+        }
+        // long arithmetic keeps the offset from overflowing on very large tables
+        if (powerOfTwoTables) {
+            return (int) ((homeIndex + offset) & (tableLength - 1));
+        }
+        return (int) ((homeIndex + offset) % tableLength);
+    }
+
+    /**
+     * Uses the collision resolution scheme to either find where the key value is stored, or to find the index
+     * where it will be stored
+     *
+     * @param tableKeys keys of the table to probe
+     * @param tableHashes cached hashes of the table to probe
+     * @param homeIndex index to starting probing from
+     * @param key key to insert into hash table
+     * @param hash hash code of the key
+     * @return index for key to be stored at, or -1 if the key is not in the table and its probe
+     * sequence has no free slot
+     */
+    private int probe(Object[] tableKeys, int[] tableHashes, int homeIndex, K key, int hash) {
+        //Runtime: O(n), because worst case it could search through whole hash table
+        int index = homeIndex;
+        boolean found = false;
+        int availableIndex = -1;
+        int increment = 1;
+        int tombstonesSkipped = 0;
+        int step = getSecondHashIndex(hash, tableKeys.length);
+        int maxIncrement = getMaxIncrement(tableKeys.length);
+        int keysCompared = 0;
+
+        // continue to probe until finds an open or same index
+        while (!found && (tableKeys[index] != null) && (increment <= maxIncrement)) {
+            if (tableKeys[index] != AVAILABLE) {
+                // if found, mark as found and leave loop; equals is only called when the hashes match
+                if (tableHashes[index] == hash) {
+                    keysCompared++;
+                    found = key.equals(tableKeys[index]);
+                }
+                if (!found) {
+                    index = nextProbeIndex(homeIndex, increment, step, tableKeys.length);
+                    increment++;
+                }
+            }
+            // if slot is null or available, you found the right slot
+            else {
+                if (availableIndex == -1) {
+                    availableIndex = index;
+                }
+                tombstonesSkipped++;
+                index = nextProbeIndex(homeIndex, increment, step, tableKeys.length);
+                increment++;
+            }
+        }
+
+        probes += increment;
+        comparisons += keysCompared;
+        if (probeListener != null) {
+            probeListener.probed(increment - 1, tombstonesSkipped);
+        }
+
+        if (found || ((availableIndex == -1) && (tableKeys[index] == null))) {
+            return index;
+        } else {
+            return availableIndex;
+        }
+    }
+
+    /**
+     * Finds the slot holding the given key in either table
+     *
+     * @param key key to search for
+     * @param hash hash code of the key
+     * @return the index in the current table, -2 - index for a slot of the table being
+     * migrated, or -1 if the key is not in the dictionary
+     */
+    int locate(K key, int hash) {
+        int result = -1;
+        int index = getHashIndex(keys, hashes, key, hash);
+        if ((index >= 0) && isOccupied(keys[index])) {
+            result = index;
+        } else {
+            int oldIndex = locateInOldTable(key, hash);
+            if (oldIndex >= 0) {
+                result = -2 - oldIndex;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the given key in the table that is still being migrated
+     *
+     * @param key key to search for
+     * @param hash hash code of the key
+     * @return index of the key in the old table, or -1 if it is not there
+     */
+    int locateInOldTable(K key, int hash) {
+        int result = -1;
+        if (oldKeys != null) {
+            int index = getHashIndex(oldKeys, oldHashes, key, hash);
+            if ((index >= 0) && isOccupied(oldKeys[index])) {
+                result = index;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the slot holding the String key with the given text in either table, hashing and comparing
+     * the text where it is instead of building a String. The text is either a character sequence or
+     * a run of UTF-8 bytes.
+     *
+     * @param characters characters of the key, or null to use the bytes
+     * @param bytes UTF-8 bytes of the key, used when characters is null
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return the index in the current table, -2 - index for a slot of the table being
+     * migrated, or -1 if the key is not in the dictionary
+     * @throws IllegalArgumentException if there is neither text nor bytes
+     * @throws IndexOutOfBoundsException if the bytes are not within the array
+     */
+    int locateText(CharSequence characters, byte[] bytes, int offset, int length) {
+        if (characters == null) {
+            if (bytes == null) {
+                throw new IllegalArgumentException("Cannot look up a null key.");
+            }
+            Objects.checkFromIndexSize(offset, length, bytes.length);
+        }
+        int hash = (characters != null) ? hashMixing.hashText(characters, hashSeed)
+                : hashMixing.hashUtf8(bytes, offset, length, hashSeed);
+        int index = probeText(keys, hashes, hash, characters, bytes, offset, length);
+        if (index >= 0) {
+            return index;
+        }
+        if (oldKeys != null) {
+            int oldIndex = probeText(oldKeys, oldHashes, hash, characters, bytes, offset, length);
+            if (oldIndex >= 0) {
+                return -2 - oldIndex;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Follows the probe sequence of a hash looking for the String key with the given text. Unlike
+     * probe, it only searches, so it does not look for a free slot on the way.
+     *
+     * @param tableKeys keys of the table to probe
+     * @param tableHashes cached hashes of the table to probe
+     * @param hash hash code of the text
+     * @param characters characters of the key, or null to use the bytes
+     * @param bytes UTF-8 bytes of the key, used when characters is null
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return index of the key, or -1 if it is not in the table
+     */
+    private int probeText(Object[] tableKeys, int[] tableHashes, int hash, CharSequence characters,
+                          byte[] bytes, int offset, int length) {
+        //Runtime: O(n), because worst case it could search through whole hash table
+        int homeIndex = getHomeIndex(hash, tableKeys.length);
+        int index = homeIndex;
+        int result = -1;
+        int increment = 1;
+        int tombstonesSkipped = 0;
+        int step = getSecondHashIndex(hash, tableKeys.length);
+        int maxIncrement = getMaxIncrement(tableKeys.length);
+        int keysCompared = 0;
+
+        while ((result == -1) && (tableKeys[index] != null) && (increment <= maxIncrement)) {
+            Object slotKey = tableKeys[index];
+            if (slotKey == AVAILABLE) {
+                tombstonesSkipped++;
+            } else if ((tableHashes[index] == hash) && (slotKey instanceof String)) {
+                keysCompared++;
+                boolean found = (characters != null) ? ((String) slotKey).contentEquals(characters)
+                        : Utf8.equals((String) slotKey, bytes, offset, length);
+                if (found) {
+                    result = index;
+                }
+            }
+            if (result == -1) {
+                index = nextProbeIndex(homeIndex, increment, step, tableKeys.length);
+                increment++;
+            }
+        }
+
+        probes += increment;
+        comparisons += keysCompared;
+        if (probeListener != null) {
+            probeListener.probed(increment - 1, tombstonesSkipped);
+        }
+        return result;
+    }
+
+    /**
+     * Creates new hash table with a larger length
+     */
+    private void enlargeHashTable() {
+        // doubles the size of the hash table, stopping at the largest possible array
+        int oldSize = keys.length;
+        if ((oldSize >= MAX_SIZE) || (powerOfTwoTables && (oldSize >= MAX_POWER_OF_TWO_SIZE))) {
+            throw new IllegalStateException("Dictionary has become too large.");
+        }
+        int newSize = MAX_SIZE;
+        if (powerOfTwoTables) {
+            newSize = 2 * oldSize;
+        } else if (2L * oldSize < MAX_SIZE) {
+            newSize = Math.min(getNextPrime(2 * oldSize), MAX_SIZE);
+        }
+        rebuildHashTable(newSize);
+    }
+
+    /**
+     * Replaces the hash table with an empty one of the given length. The key value pairs of the
+     * current table are moved over a few at a time by later adds and removes instead of all at
+     * once, leaving its available slots behind.
+     *
+     * @param newSize length of the new table
+     */
+    private void rebuildHashTable(int newSize) {
+        //Runtime: O(n) for the allocation, where n is the new size of the hash table
+        ProbeListener listener = probeListener;
+        long startTime = (listener != null) ? System.nanoTime() : 0;
+        int oldSize = keys.length;
+
+        // a resize that catches up with the previous one finishes that migration first
+        if (oldKeys != null) {
+            migrateEntries(oldKeys.length);
+        }
+        oldKeys = keys;
+        oldHashes = hashes;
+        keys = new Object[newSize];
+        hashes = new int[newSize];
+        startValueMigration(newSize);
+        migrationIndex = 0;
+        availableCount = 0;
+        modCount++;
+
+        if (listener != null) {
+            listener.resized(oldSize, newSize, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Moves entries of the old table into the current table, placing each one with its cached hash
+     *
+     * @param slots number of old table slots to move
+     */
+    private void migrateEntries(int slots) {
+        // Runtime: O(slots), each entry is placed in the first free slot of its probe sequence
+        if (oldKeys == null) {
+            return;
+        }
+        modCount++;
+        int end = (int) Math.min((long) migrationIndex + slots, oldKeys.length);
+        for (; migrationIndex < end; migrationIndex++) {
+            if (isOccupied(oldKeys[migrationIndex])) {
+                // keys are never in both tables, so no comparison is needed
+                int hash = oldHashes[migrationIndex];
+                int index = findFreeSlot(hash);
+                if (keys[index] == AVAILABLE) {
+                    availableCount--;
+                    reportTombstones();
+                }
+                keys[index] = oldKeys[migrationIndex];
+                hashes[index] = hash;
+                migrateValue(migrationIndex, index);
+                // marked available rather than emptied so probes for keys further along still get past it
+                oldKeys[migrationIndex] = AVAILABLE;
+            }
+        }
+        if (migrationIndex == oldKeys.length) {
+            endMigration();
+        }
+    }
+
+    /**
+     * Returns the first empty or available slot of the current table on the probe sequence of a hash
+     *
+     * @param hash hash code of the key being placed
+     * @return index of the free slot
+     */
+    private int findFreeSlot(int hash) {
+        int homeIndex = getHomeIndex(hash, keys.length);
+        int step = getSecondHashIndex(hash, keys.length);
+        int index = homeIndex;
+        int increment = 1;
+        while (isOccupied(keys[index])) {
+            index = nextProbeIndex(homeIndex, increment, step, keys.length);
+            increment++;
+        }
+        return index;
+    }
+
+    /**
+     * Drops the table that was being migrated
+     */
+    private void endMigration() {
+        oldKeys = null;
+        oldHashes = null;
+        migrationIndex = 0;
+        endValueMigration();
+    }
+
+    /**
+     * Returns true if the live and available slots of the hash table are grater than the load factor
+     * @return true if size is too large
+     */
+    private boolean isHashTableTooFull() {
+        return (numberOfEntries + availableCount) > MAX_LOAD_FACTOR * keys.length;
+    }
+
+    /**
+     * Return a prime number greater than given number and less than max size
+     *
+     * @return a valid prime number
+     */
+    private int getNextPrime(int number) {
+        if (number % 2 == 0) {
+            number++;
+        }
+        //Runtime: O(sqrt(n)) because this is the time complexity for finding the next prime number
+        while (!isPrime(number)) {
+            number = number + 2;
+        }
+        return number;
+    }
+
+    /**
+     * Return the smallest power of two not less than the given number
+     *
+     * @param number number to round up
+     * @return a power of two
+     */
+    private int getNextPowerOfTwo(int number) {
+        // Runtime: O(1)
+        return Math.min(Integer.highestOneBit(Math.max(number - 1, 1)) << 1, MAX_POWER_OF_TWO_SIZE);
+    }
+
+    /**
+     * Tests if the given number is prime
+     *
+     * @param number number to be tested
+     * @return true/false if number is prime
+     */
+    private boolean isPrime(int number) {
+        boolean result;
+        boolean done = false;
+
+        // logic for checking if number is prime, returning the boolean if it is or not
+        if ((number == 1) || (number % 2 == 0)) {
+            result = false;
+        } else if ((number == 2) || (number == 3)) {
+            result = true;
+        } else {
+            assert (number % 2 != 0) && (number >= 5);
+            result = true;
+            for (int divisor = 3; !done && ((long) divisor * divisor <= number); divisor = divisor + 2) {
+                if (number % divisor == 0) {
+                    result = false;
+                    done = true;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Throw an exception if the integrity is not ok
+     */
+    void checkIntegrity() {
+        if (!integrityOK) {
+            throw new SecurityException("HashedDictionary object is corrupt.");
+        }
+    }
+
+    /**
+     * Checks that the capacity is the correct size, and not larger that maximum
+     *
+     * @param capacity requested size of hash table
+     * @return the set size of hash table
+     */
+    private int checkCapacity(int capacity) {
+        if (capacity < DEFAULT_CAPACITY) {
+            capacity = DEFAULT_CAPACITY;
+        } else if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("You can not create a dictionary with a capacity larger than" +
+                    MAX_CAPACITY);
+        }
+        return capacity;
+    }
+
+    /**
+     * Throw exception if hash table is too large
+     *
+     * @param size size of hash table to be checked
+     */
+    private void checkSize(int size) {
+        if (size > MAX_SIZE) {
+            throw new IllegalStateException("Dictionary has become too large.");
+        }
+    }
+
+    /**
+     * Returns the index of the next live slot at or after the given position, counting through
+     * the current table and then through the table still being migrated
+     *
+     * @param position position to start searching from
+     * @return position of the next live slot
+     */
+    int nextOccupiedPosition(int position) {
+        while (!isOccupied(keyAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Returns the key stored at the given position, counting through the current table and then
+     * through the table still being migrated
+     *
+     * @param position position of the slot
+     * @return the key, AVAILABLE, or null
+     */
+    Object keyAt(int position) {
+        if (position < keys.length) {
+            return keys[position];
+        }
+        return oldKeys[position - keys.length];
+    }
+
+    /**
+     * Returns the cached hash code stored at the given position, counting through the current
+     * table and then through the table still being migrated
+     *
+     * @param position position of an occupied slot
+     * @return the hash code of the key at that position
+     */
+    int hashAt(int position) {
+        if (position < hashes.length) {
+            return hashes[position];
+        }
+        return oldHashes[position - hashes.length];
+    }
+
+    /**
+     * Returns the number of positions, counting the slots of the current table and then the
+     * slots of the table still being migrated
+     *
+     * @return number of positions
+     */
+    int getPositionCount() {
+        return keys.length + ((oldKeys == null) ? 0 : oldKeys.length);
+    }
+
+    /**
+     * A SlotRange is the range of positions covered by a spliterator. The range is bound to the
+     * table when it is first used rather than when it is created, and halves when it is split.
+     */
+    abstract class SlotRange {
+        // next position to visit, and the position after the last one, -1 until first use
+        int position;
+        int fence;
+        // number of entries expected in the range
+        int estimate;
+        int expectedModCount;
+
+        /**
+         * Creates a range of positions
+         *
+         * @param origin first position
+         * @param fence position after the last one, or -1 for the whole table
+         * @param estimate number of entries expected in the range
+         * @param expectedModCount modification count the range was created at
+         */
+        SlotRange(int origin, int fence, int estimate, int expectedModCount) {
+            this.position = origin;
+            this.fence = fence;
+            this.estimate = estimate;
+            this.expectedModCount = expectedModCount;
+        }
+
+        /**
+         * Returns the end of the range, binding a range over the whole table on first use
+         *
+         * @return position after the last one
+         */
+        int getFence() {
+            if (fence < 0) {
+                expectedModCount = modCount;
+                fence = getPositionCount();
+                estimate = numberOfEntries;
+            }
+            return fence;
+        }
+
+        /**
+         * Splits off the first half of the range, leaving this range with the second half
+         *
+         * @return first position of the split-off half, which ends where this range now starts, or -1
+         * if the range is too small to split
+         */
+        int splitOff() {
+            int high = getFence();
+            int low = position;
+            int middle = (low + high) >>> 1;
+            if (low >= middle) {
+                return -1;
+            }
+            position = middle;
+            estimate >>>= 1;
+            return low;
+        }
+
+        /**
+         * Returns an estimate of the number of entries left in the range
+         *
+         * @return estimated number of entries
+         */
+        public long estimateSize() {
+            getFence();
+            return estimate;
+        }
+
+        /**
+         * Returns the characteristics of the range. Only a range over the whole table knows its size.
+         *
+         * @param characteristics characteristics of the elements
+         * @return characteristics of the range
+         */
+        int characteristics(int characteristics) {
+            boolean whole = (fence < 0) || ((position == 0) && (fence == getPositionCount()));
+            return characteristics | Spliterator.NONNULL | (whole ? Spliterator.SIZED : 0);
+        }
+
+        /**
+         * Throws if the dictionary has been changed since the range was bound
+         *
+         * @throws ConcurrentModificationException if the dictionary has been changed
+         */
+        void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * A SlotSpliterator visits the entries in a range of positions and turns each into an element.
+     *
+     * @param <T> type of the elements
+     */
+    abstract class SlotSpliterator<T> extends SlotRange implements Spliterator<T> {
+
+        SlotSpliterator(int origin, int fence, int estimate, int expectedModCount) {
+            super(origin, fence, estimate, expectedModCount);
+        }
+
+        /**
+         * Returns the element for the entry at a position
+         *
+         * @param position position of a live slot
+         * @return the element
+         */
+        abstract T elementAt(int position);
+
+        /**
+         * Creates a spliterator over part of the range
+         *
+         * @param origin first position
+         * @param fence position after the last one
+         * @param estimate number of entries expected in the range
+         * @param expectedModCount modification count the range was bound at
+         * @return the new spliterator
+         */
+        abstract SlotSpliterator<T> create(int origin, int fence, int estimate, int expectedModCount);
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (action == null) {
+                throw new IllegalArgumentException("Action must not be null");
+            }
+            int high = getFence();
+            while (position < high) {
+                int current = position++;
+                if (isOccupied(keyAt(current))) {
+                    T element = elementAt(current);
+                    action.accept(element);
+                    checkForComodification();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (action == null) {
+                throw new IllegalArgumentException("Action must not be null");
+            }
+            int high = getFence();
+            //Runtime: O(n), where n is the number of positions in the range
+            for (; position < high; position++) {
+                if (isOccupied(keyAt(position))) {
+                    action.accept(elementAt(position));
+                }
+            }
+            checkForComodification();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Spliterator<T> trySplit() {
+            int low = splitOff();
+            return (low < 0) ? null : create(low, position, estimate, expectedModCount);
+        }
+    }
+
+    private class KeySpliterator extends SlotSpliterator<K> {
+
+        private KeySpliterator(int origin, int fence, int estimate, int expectedModCount) {
+            super(origin, fence, estimate, expectedModCount);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        K elementAt(int position) {
+            return (K) keyAt(position);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        SlotSpliterator<K> create(int origin, int fence, int estimate, int expectedModCount) {
+            return new KeySpliterator(origin, fence, estimate, expectedModCount);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int characteristics() {
+            return characteristics(Spliterator.DISTINCT);
+        }
+    }
+
+    private class KeyIterator implements Iterator<K> {
+        private  int currentIndex;
+        private int numberLeft;
+        private final int expectedModCount;
+        private KeyIterator() {
+            currentIndex = 0;
+            numberLeft = numberOfEntries;
+            expectedModCount = modCount;
+        }
+        /**
+         * Returns {@code true} if the iteration has more elements.
+         * (In other words, returns {@code true} if {@link #next} would
+         * return an element rather than throwing an exception.)
+         *
+         * @return {@code true} if the iteration has more elements
+         */
+        @Override
+        public boolean hasNext() {
+            return numberLeft > 0;
+        }
+
+        /**
+         * Returns the next element in the iteration.
+         *
+         * @return the next element in the iteration
+         * @throws NoSuchElementException if the iteration has no more elements
+         * @throws ConcurrentModificationException if the dictionary has changed since the iterator was created
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public K next() {
+            K result = null;
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (hasNext()) {
+                currentIndex = nextOccupiedPosition(currentIndex);
+                result = (K) keyAt(currentIndex);
+                numberLeft--;
+                currentIndex++;
+            }
+            else {
+                throw new NoSuchElementException();
+            }
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package Dictionary;
+
+/**
+ * The open addressing schemes a hashed dictionary can use to resolve collisions. The scheme is
+ * chosen when the dictionary is constructed. Each one visits every slot it can reach before
+ * repeating, so lookups always terminate.
+ */
+public enum CollisionResolution {
+    /** Probes home, home + 1, home + 2, ... */
+    LINEAR_PROBING,
+    /** Probes home, home + 1, home + 4, home + 9, ... reaching half of a prime-sized table. */
+    QUADRATIC_PROBING,
+    /** Probes home, home + step, home + 2 * step, ... with the step taken from a second hash. */
+    DOUBLE_HASHING
+}
@@ -0,0 +1,491 @@
+package Dictionary;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe hash table-based implementation of the DictionaryInterface.
+ * Keys are split over independent segments by their hash. Each segment is a linear probing table
+ * guarded by its own lock, so writers only block writers of the same segment. Readers never lock:
+ * a slot is published by writing its key last, removed slots are never reused for another key, and
+ * a resize builds a complete new table before swapping it in, so a reader always sees a table whose
+ * slots are consistent.
+ *
+ * @param <K> The type of keys in the dictionary.
+ * @param <V> The type of values in the dictionary.
+ */
+public class ConcurrentHashedDictionary<K, V> implements DictionaryInterface<K,V> {
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final int MAX_SEGMENTS = 1 << 16;
+    private static final int MIN_SEGMENT_SIZE = 8;
+    // largest power of two that is a valid Java array length
+    private static final int MAX_SEGMENT_SIZE = 1 << 30;
+    private static final double MAX_LOAD_FACTOR = 0.5;
+    // key stored in slots whose entry has been removed
+    private static final Object AVAILABLE = new Object();
+
+    private final Segment<K,V>[] segments;
+    // number of high hash bits that are left after the segment bits are taken
+    private final int segmentShift;
+    private final HashMixing hashMixing;
+
+    /**
+     * Constructs a new ConcurrentHashedDictionary with the specified initial capacity.
+     *
+     * @param initialCapacity The initial capacity of the hash table.
+     */
+    public ConcurrentHashedDictionary(int initialCapacity) {
+        this(initialCapacity, DEFAULT_CONCURRENCY_LEVEL, HashMixing.FINALIZER);
+    }
+
+    /**
+     * Constructs a new ConcurrentHashedDictionary.
+     *
+     * @param initialCapacity The initial capacity of the hash table.
+     * @param concurrencyLevel The expected number of threads writing at once, rounded up to a power
+     *                         of two to give the number of segments.
+     * @param hashMixing How keys are hashed before they are placed. NONE is not allowed because
+     *                   segments and slots are chosen from the bits of the hash.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ConcurrentHashedDictionary(int initialCapacity, int concurrencyLevel, HashMixing hashMixing) {
+        if ((hashMixing == null) || (hashMixing == HashMixing.NONE)) {
+            throw new IllegalArgumentException("A concurrent dictionary needs a hash mixing stage");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must be greater than 0");
+        }
+        this.hashMixing = hashMixing;
+        int segmentCount = Math.min(powerOfTwoAtLeast(concurrencyLevel), MAX_SEGMENTS);
+        segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+
+        int segmentCapacity = (int) Math.min(Math.max(initialCapacity, 0) / (long) segmentCount + 1, MAX_SEGMENT_SIZE);
+        int segmentSize = Math.max(powerOfTwoAtLeast(segmentCapacity), MIN_SEGMENT_SIZE);
+        segments = (Segment<K,V>[]) new Segment[segmentCount];
+        for (int index = 0; index < segmentCount; index++) {
+            segments[index] = new Segment<>(segmentSize);
+        }
+    }
+
+    /**
+     * Adds a new entry to this dictionary. If the given search key already
+     * exists in the dictionary, replaces the corresponding value.
+     *
+     * @param key   An object search key of the new entry.
+     * @param value An object associated with the search key.
+     * @return Either null if the new entry was added to the dictionary
+     * or the value that was associated with key if that value
+     * was replaced.
+     */
+    @Override
+    public V add(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Cannot put null values into a dictionary.");
+        }
+        int hash = hashMixing.hash(key, HashMixing.PROCESS_SEED);
+        return segmentFor(hash).add(key, hash, value);
+    }
+
+    /**
+     * Removes a specific entry from this dictionary.
+     *
+     * @param key An object search key of the entry to be removed.
+     * @return Either the value that was associated with the search key
+     * or null if no such object exists.
+     */
+    @Override
+    public V remove(K key) {
+        int hash = hashMixing.hash(key, HashMixing.PROCESS_SEED);
+        return segmentFor(hash).remove(key, hash);
+    }
+
+    /**
+     * Retrieves from this dictionary the value associated with a given
+     * search key. Never blocks.
+     *
+     * @param key An object search key of the entry to be retrieved.
+     * @return Either the value that is associated with the search key
+     * or null if no such object exists.
+     */
+    @Override
+    public V getValue(K key) {
+        int hash = hashMixing.hash(key, HashMixing.PROCESS_SEED);
+        return segmentFor(hash).getValue(key, hash);
+    }
+
+    /**
+     * Sees whether a specific entry is in this dictionary.
+     *
+     * @param key An object search key of the desired entry.
+     * @return True if key is associated with an entry in the dictionary.
+     */
+    @Override
+    public boolean contains(K key) {
+        return getValue(key) != null;
+    }
+
+    /**
+     * Creates an iterator that traverses all search keys in this dictionary. The iterator is
+     * weakly consistent: it never fails because of concurrent changes, and may or may not see
+     * entries added or removed after it was created.
+     *
+     * @return An iterator that provides sequential access to the search
+     * keys in the dictionary.
+     */
+    @Override
+    public Iterator<K> getKeyIterator() {
+        return new SlotIterator<>(true);
+    }
+
+    /**
+     * Creates an iterator that traverses all values in this dictionary. The iterator is
+     * weakly consistent in the same way as the key iterator.
+     *
+     * @return An iterator that provides sequential access to the values
+     * in this dictionary.
+     */
+    @Override
+    public Iterator<V> getValueIterator() {
+        return new SlotIterator<>(false);
+    }
+
+    /**
+     * Sees whether this dictionary is empty.
+     *
+     * @return True if the dictionary is empty.
+     */
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    /**
+     * Gets the size of this dictionary. While other threads are writing the result is only
+     * an estimate.
+     *
+     * @return The number of entries (key-value pairs) currently
+     * in the dictionary.
+     */
+    @Override
+    public int getSize() {
+        // Runtime: O(s), where s is the number of segments
+        long size = 0;
+        for (Segment<K,V> segment : segments) {
+            size += segment.numberOfEntries;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes all entries from this dictionary.
+     */
+    @Override
+    public void clear() {
+        for (Segment<K,V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns the number of segments the dictionary is split into
+     *
+     * @return number of segments
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Returns the segment that holds keys with the given hash
+     *
+     * @param hash hash code of the key
+     * @return the segment for the key
+     */
+    private Segment<K,V> segmentFor(int hash) {
+        // segments use the high bits of the hash and slots use the low ones
+        return segments[segmentShift == 32 ? 0 : hash >>> segmentShift];
+    }
+
+    /**
+     * Return the smallest power of two not less than the given number
+     *
+     * @param number number to round up
+     * @return a power of two
+     */
+    private static int powerOfTwoAtLeast(int number) {
+        return (number <= 1) ? 1 : Integer.highestOneBit(number - 1) << 1;
+    }
+
+    /**
+     * One slot table of the dictionary. Keys, values and cached hashes are parallel arrays. The
+     * arrays are never resized in place, a resize creates a new Table.
+     */
+    private static final class Table {
+        private final AtomicReferenceArray<Object> keys;
+        private final AtomicReferenceArray<Object> values;
+        private final int[] hashes;
+        private final int mask;
+
+        private Table(int length) {
+            keys = new AtomicReferenceArray<>(length);
+            values = new AtomicReferenceArray<>(length);
+            hashes = new int[length];
+            mask = length - 1;
+        }
+    }
+
+    /**
+     * A part of the dictionary with its own lock and table
+     */
+    private static final class Segment<K, V> {
+        // taken by writers only
+        private final ReentrantLock lock = new ReentrantLock();
+        // replaced as a whole on resize, readers take whichever table is current
+        private volatile Table table;
+        private volatile int numberOfEntries;
+        // live and available slots of the current table, only touched under the lock
+        private int usedSlots;
+
+        private Segment(int length) {
+            table = new Table(length);
+        }
+
+        /**
+         * Finds the value of a key without locking
+         *
+         * @param key key to search for
+         * @param hash hash code of the key
+         * @return the value, or null if the key is not in the segment
+         */
+        @SuppressWarnings("unchecked")
+        private V getValue(K key, int hash) {
+            // Runtime: O(n) worst case, linear probing could go through the whole table
+            Table current = table;
+            int index = hash & current.mask;
+            for (int probes = 0; probes <= current.mask; probes++) {
+                // reading the key first makes the hash and value written before it visible
+                Object slotKey = current.keys.get(index);
+                if (slotKey == null) {
+                    return null;
+                }
+                if ((slotKey != AVAILABLE) && (current.hashes[index] == hash) && key.equals(slotKey)) {
+                    // null here means a writer removed the entry after we read the key
+                    return (V) current.values.get(index);
+                }
+                index = (index + 1) & current.mask;
+            }
+            return null;
+        }
+
+        /**
+         * Adds or replaces the value of a key
+         *
+         * @param key key of the entry
+         * @param hash hash code of the key
+         * @param value value of the entry
+         * @return the replaced value, or null if the key was added
+         */
+        @SuppressWarnings("unchecked")
+        private V add(K key, int hash, V value) {
+            lock.lock();
+            try {
+                Table current = table;
+                int index = find(current, key, hash);
+                if (index >= 0) {
+                    return (V) current.values.getAndSet(index, value);
+                }
+                if ((usedSlots + 1) > MAX_LOAD_FACTOR * (current.mask + 1)) {
+                    current = rebuild();
+                }
+                index = hash & current.mask;
+                // available slots are not reused, so a reader never sees one key's slot taken by another
+                while (current.keys.get(index) != null) {
+                    index = (index + 1) & current.mask;
+                }
+                current.hashes[index] = hash;
+                current.values.set(index, value);
+                current.keys.set(index, key);
+                usedSlots++;
+                numberOfEntries++;
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Removes a key
+         *
+         * @param key key to remove
+         * @param hash hash code of the key
+         * @return the removed value, or null if the key was not in the segment
+         */
+        @SuppressWarnings("unchecked")
+        private V remove(K key, int hash) {
+            lock.lock();
+            try {
+                Table current = table;
+                int index = find(current, key, hash);
+                if (index < 0) {
+                    return null;
+                }
+                V removedValue = (V) current.values.getAndSet(index, null);
+                current.keys.set(index, AVAILABLE);
+                numberOfEntries--;
+                return removedValue;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Removes every entry of the segment
+         */
+        private void clear() {
+            lock.lock();
+            try {
+                table = new Table(table.mask + 1);
+                usedSlots = 0;
+                numberOfEntries = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Finds the slot of a key. Only called under the lock.
+         *
+         * @param current table to search
+         * @param key key to search for
+         * @param hash hash code of the key
+         * @return index of the key, or -1 if it is not in the table
+         */
+        private int find(Table current, K key, int hash) {
+            int index = hash & current.mask;
+            for (int probes = 0; probes <= current.mask; probes++) {
+                Object slotKey = current.keys.get(index);
+                if (slotKey == null) {
+                    return -1;
+                }
+                if ((slotKey != AVAILABLE) && (current.hashes[index] == hash) && key.equals(slotKey)) {
+                    return index;
+                }
+                index = (index + 1) & current.mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Copies the live entries into a new table, doubling it unless most of the used slots were
+         * removed entries, and publishes it. Readers still holding the old table keep reading a
+         * consistent copy.
+         *
+         * @return the new table
+         */
+        private Table rebuild() {
+            // Runtime: O(n), where n is the length of the table
+            Table current = table;
+            int length = current.mask + 1;
+            if (numberOfEntries + 1 > MAX_LOAD_FACTOR * length / 2) {
+                if (length >= MAX_SEGMENT_SIZE) {
+                    throw new IllegalStateException("Dictionary has become too large.");
+                }
+                length = length * 2;
+            }
+            Table newTable = new Table(length);
+            for (int index = 0; index <= current.mask; index++) {
+                Object slotKey = current.keys.get(index);
+                if ((slotKey != null) && (slotKey != AVAILABLE)) {
+                    int hash = current.hashes[index];
+                    int newIndex = hash & newTable.mask;
+                    while (newTable.keys.get(newIndex) != null) {
+                        newIndex = (newIndex + 1) & newTable.mask;
+                    }
+                    newTable.hashes[newIndex] = hash;
+                    newTable.values.set(newIndex, current.values.get(index));
+                    newTable.keys.set(newIndex, slotKey);
+                }
+            }
+            usedSlots = numberOfEntries;
+            table = newTable;
+            return newTable;
+        }
+    }
+
+    private class SlotIterator<T> implements Iterator<T> {
+        private final boolean returnKeys;
+        private int segmentIndex;
+        private Table table;
+        private int slotIndex;
+        private T nextResult;
+
+        private SlotIterator(boolean returnKeys) {
+            this.returnKeys = returnKeys;
+            segmentIndex = 0;
+            table = segments[0].table;
+            slotIndex = 0;
+            advance();
+        }
+
+        /**
+         * Moves to the next live slot and remembers its key or value
+         */
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            nextResult = null;
+            while (nextResult == null) {
+                if (slotIndex > table.mask) {
+                    segmentIndex++;
+                    if (segmentIndex == segments.length) {
+                        return;
+                    }
+                    table = segments[segmentIndex].table;
+                    slotIndex = 0;
+                } else {
+                    Object slotKey = table.keys.get(slotIndex);
+                    if ((slotKey != null) && (slotKey != AVAILABLE)) {
+                        Object value = table.values.get(slotIndex);
+                        // a null value belongs to an entry removed while iterating
+                        if (value != null) {
+                            nextResult = (T) (returnKeys ? slotKey : value);
+                        }
+                    }
+                    slotIndex++;
+                }
+            }
+        }
+
+        /**
+         * Returns {@code true} if the iteration has more elements.
+         *
+         * @return {@code true} if the iteration has more elements
+         */
+        @Override
+        public boolean hasNext() {
+            return nextResult != null;
+        }
+
+        /**
+         * Returns the next element in the iteration.
+         *
+         * @return the next element in the iteration
+         * @throws NoSuchElementException if the iteration has no more elements
+         */
+        @Override
+        public T next() {
+            if (nextResult == null) {
+                throw new NoSuchElementException();
+            }
+            T result = nextResult;
+            advance();
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
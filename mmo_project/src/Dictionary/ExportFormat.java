@@ -0,0 +1,11 @@
+package Dictionary;
+
+/**
+ * The text formats a RecordWriter can write records in.
+ */
+public enum ExportFormat {
+    /** One comma separated line per record after a header line naming the columns, quoted as in RFC 4180. */
+    CSV,
+    /** One JSON object per line, with the column names as keys. */
+    JSON_LINES
+}
@@ -0,0 +1,161 @@
+package Dictionary;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A copy of the entries of an ObjectIntHashedDictionary without their keys: the hash code and
+ * value of each entry, plus the settings the hash codes were made with. A dictionary rebuilt from
+ * an image places every entry with its saved hash code, so no key has to be hashed again.
+ */
+public final class HashIndexImage {
+    // ints written before the entries: scheme, mixing, power-of-two flag, seed and entry count
+    private static final int HEADER_INTS = 5;
+
+    private final CollisionResolution collisionResolution;
+    private final HashMixing hashMixing;
+    private final boolean powerOfTwoTables;
+    private final int hashSeed;
+    // parallel arrays, one element per entry
+    final int[] hashes;
+    final int[] values;
+
+    /**
+     * Creates an image from entry arrays that the image takes ownership of
+     *
+     * @param collisionResolution probing scheme of the dictionary
+     * @param hashMixing hash mixing stage of the dictionary
+     * @param powerOfTwoTables true if the dictionary uses power-of-two tables
+     * @param hashSeed seed of the hash mixing stage
+     * @param hashes hash code of each entry
+     * @param values value of each entry
+     */
+    HashIndexImage(CollisionResolution collisionResolution, HashMixing hashMixing, boolean powerOfTwoTables,
+                   int hashSeed, int[] hashes, int[] values) {
+        this.collisionResolution = collisionResolution;
+        this.hashMixing = hashMixing;
+        this.powerOfTwoTables = powerOfTwoTables;
+        this.hashSeed = hashSeed;
+        this.hashes = hashes;
+        this.values = values;
+    }
+
+    /**
+     * Returns the probing scheme of the dictionary the image was taken from
+     *
+     * @return the collision resolution scheme
+     */
+    public CollisionResolution getCollisionResolution() {
+        return collisionResolution;
+    }
+
+    /**
+     * Returns the hash mixing stage the hash codes were made with
+     *
+     * @return the hash mixing stage
+     */
+    public HashMixing getHashMixing() {
+        return hashMixing;
+    }
+
+    /**
+     * Returns true if the dictionary the image was taken from uses power-of-two tables
+     *
+     * @return true for power-of-two tables
+     */
+    public boolean hasPowerOfTwoTables() {
+        return powerOfTwoTables;
+    }
+
+    /**
+     * Returns the number of entries in the image
+     *
+     * @return number of entries
+     */
+    public int getEntryCount() {
+        return values.length;
+    }
+
+    /**
+     * Returns the seed the hash codes were made with
+     *
+     * @return the hash seed
+     */
+    int getHashSeed() {
+        return hashSeed;
+    }
+
+    /**
+     * Replaces every value v with mapping[v]. Used when the values are positions that move
+     * before the image is saved.
+     *
+     * @param mapping new value for each old value
+     * @throws IllegalArgumentException if a value is not an index of the mapping or maps to NO_VALUE
+     */
+    public void remapValues(int[] mapping) {
+        //Runtime: O(n), where n is the number of entries
+        for (int entry = 0; entry < values.length; entry++) {
+            int value = values[entry];
+            if ((value < 0) || (value >= mapping.length) || (mapping[value] == ObjectIntDictionaryInterface.NO_VALUE)) {
+                throw new IllegalArgumentException("No mapping for value " + value);
+            }
+            values[entry] = mapping[value];
+        }
+    }
+
+    /**
+     * Returns the number of bytes writeTo needs
+     *
+     * @return size of the image in bytes
+     */
+    public long getSerializedSize() {
+        return 4L * HEADER_INTS + 8L * values.length;
+    }
+
+    /**
+     * Writes the image at the position of a buffer, advancing the position
+     *
+     * @param out buffer with at least getSerializedSize bytes remaining
+     */
+    public void writeTo(ByteBuffer out) {
+        out.putInt(collisionResolution.ordinal());
+        out.putInt(hashMixing.ordinal());
+        out.putInt(powerOfTwoTables ? 1 : 0);
+        out.putInt(hashSeed);
+        out.putInt(values.length);
+        // Runtime: O(n), written as two bulk runs rather than entry by entry
+        out.asIntBuffer().put(hashes).put(values);
+        out.position(out.position() + 8 * values.length);
+    }
+
+    /**
+     * Reads an image written by writeTo from the position of a buffer, advancing the position
+     *
+     * @param in buffer holding the image
+     * @return the image
+     * @throws IllegalArgumentException if the buffer does not hold a valid image
+     */
+    public static HashIndexImage readFrom(ByteBuffer in) {
+        if (in.remaining() < 4 * HEADER_INTS) {
+            throw new IllegalArgumentException("Hash index image is truncated");
+        }
+        int collisionOrdinal = in.getInt();
+        int mixingOrdinal = in.getInt();
+        int powerOfTwoFlag = in.getInt();
+        int hashSeed = in.getInt();
+        int entryCount = in.getInt();
+        if ((collisionOrdinal < 0) || (collisionOrdinal >= CollisionResolution.values().length)
+                || (mixingOrdinal < 0) || (mixingOrdinal >= HashMixing.values().length)
+                || ((powerOfTwoFlag & ~1) != 0) || (entryCount < 0)) {
+            throw new IllegalArgumentException("Hash index image is corrupt");
+        }
+        if (in.remaining() < 8L * entryCount) {
+            throw new IllegalArgumentException("Hash index image is truncated");
+        }
+        int[] hashes = new int[entryCount];
+        int[] values = new int[entryCount];
+        in.asIntBuffer().get(hashes).get(values);
+        in.position(in.position() + 8 * entryCount);
+        return new HashIndexImage(CollisionResolution.values()[collisionOrdinal], HashMixing.values()[mixingOrdinal],
+                powerOfTwoFlag == 1, hashSeed, hashes, values);
+    }
+}
@@ -0,0 +1,229 @@
+package Dictionary;
+
+import java.security.SecureRandom;
+import java.util.Objects;
+
+/**
+ * The ways a hashed dictionary can turn a key into the hash code it places the key with.
+ * Mixing spreads similar keys such as "Player0001" and "Player0002" over the whole table, and
+ * is needed for power-of-two tables, which only look at the low bits of the hash.
+ */
+public enum HashMixing {
+    /** Uses key.hashCode() as it is. */
+    NONE {
+        @Override
+        int hash(Object key, int seed) {
+            return key.hashCode();
+        }
+
+        @Override
+        int hashText(CharSequence characters, int seed) {
+            return stringHashCode(characters);
+        }
+
+        @Override
+        int hashUtf8(byte[] bytes, int offset, int length, int seed) {
+            return Utf8.stringHashCode(bytes, offset, length);
+        }
+    },
+    /** Runs key.hashCode() through the MurmurHash3 finalizer. */
+    FINALIZER {
+        @Override
+        int hash(Object key, int seed) {
+            return finalizeHash(key.hashCode());
+        }
+
+        @Override
+        int hashText(CharSequence characters, int seed) {
+            return finalizeHash(stringHashCode(characters));
+        }
+
+        @Override
+        int hashUtf8(byte[] bytes, int offset, int length, int seed) {
+            return finalizeHash(Utf8.stringHashCode(bytes, offset, length));
+        }
+    },
+    /**
+     * Hashes the characters of CharSequence keys with MurmurHash3 and a per-process seed, so
+     * colliding names can not be worked out ahead of time. Other keys have their hashCode()
+     * mixed with the seed.
+     */
+    SEEDED_FINALIZER {
+        @Override
+        int hash(Object key, int seed) {
+            if (key instanceof CharSequence) {
+                return hashCharacters((CharSequence) key, seed);
+            }
+            return finalizeHash(key.hashCode() ^ seed);
+        }
+
+        @Override
+        int hashText(CharSequence characters, int seed) {
+            return hashCharacters(characters, seed);
+        }
+
+        @Override
+        int hashUtf8(byte[] bytes, int offset, int length, int seed) {
+            return hashUtf8Characters(bytes, offset, length, seed);
+        }
+    };
+
+    // seed used by SEEDED_FINALIZER, picked once per process
+    static final int PROCESS_SEED = new SecureRandom().nextInt();
+    private static final int C1 = 0xcc9e2d51;
+    private static final int C2 = 0x1b873593;
+
+    /**
+     * Returns the hash code used to place a key
+     *
+     * @param key key to be hashed
+     * @param seed seed of the dictionary, only used by SEEDED_FINALIZER
+     * @return hash code of the key
+     */
+    abstract int hash(Object key, int seed);
+
+    /**
+     * Returns the hash code hash would give a String holding the given characters
+     *
+     * @param characters characters of the key
+     * @param seed seed of the dictionary, only used by SEEDED_FINALIZER
+     * @return hash code of the key
+     */
+    abstract int hashText(CharSequence characters, int seed);
+
+    /**
+     * Returns the hash code hash would give a String decoded from the given UTF-8 bytes
+     *
+     * @param bytes bytes of the key
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @param seed seed of the dictionary, only used by SEEDED_FINALIZER
+     * @return hash code of the key
+     */
+    abstract int hashUtf8(byte[] bytes, int offset, int length, int seed);
+
+    /**
+     * Returns the hash code a String holding the given characters has, without creating the String
+     *
+     * @param characters characters of the text
+     * @return String hash code of the text
+     */
+    public static int stringHashCode(CharSequence characters) {
+        int hash = 0;
+        //Runtime: O(n), where n is the length of the sequence
+        for (int index = 0; index < characters.length(); index++) {
+            hash = 31 * hash + characters.charAt(index);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the hash code a String decoded from the given UTF-8 bytes has, without creating the String
+     *
+     * @param bytes bytes of the text
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return String hash code of the text
+     * @throws IndexOutOfBoundsException if the bytes are not inside the array
+     */
+    public static int stringHashCode(byte[] bytes, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        return Utf8.stringHashCode(bytes, offset, length);
+    }
+
+    /**
+     * Applies the MurmurHash3 32-bit finalizer, which makes every input bit affect every output bit
+     *
+     * @param hash hash to be mixed
+     * @return mixed hash
+     */
+    static int finalizeHash(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Hashes the UTF-16 code units of a character sequence with 32-bit MurmurHash3
+     *
+     * @param characters characters to be hashed
+     * @param seed seed of the hash
+     * @return hash of the characters
+     */
+    static int hashCharacters(CharSequence characters, int seed) {
+        // Runtime: O(n), where n is the length of the sequence
+        int hash = seed;
+        int length = characters.length();
+        int index = 0;
+        // two characters make up each 32-bit block
+        for (; index + 1 < length; index += 2) {
+            int block = characters.charAt(index) | (characters.charAt(index + 1) << 16);
+            hash ^= mixBlock(block);
+            hash = Integer.rotateLeft(hash, 13);
+            hash = hash * 5 + 0xe6546b64;
+        }
+        if (index < length) {
+            hash ^= mixBlock(characters.charAt(index));
+        }
+        hash ^= length * 2;
+        return finalizeHash(hash);
+    }
+
+    /**
+     * Hashes the UTF-16 code units of the text in UTF-8 bytes as hashCharacters would, decoding them
+     * as it goes
+     *
+     * @param bytes bytes of the text
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @param seed seed of the hash
+     * @return hash of the characters
+     */
+    private static int hashUtf8Characters(byte[] bytes, int offset, int length, int seed) {
+        // Runtime: O(n), where n is the number of bytes
+        int hash = seed;
+        int units = 0;
+        // a code unit waiting for the second half of its block
+        int pending = 0;
+        int end = offset + length;
+        for (int index = offset; index < end; ) {
+            int decoded = Utf8.decode(bytes, index, end);
+            int codePoint = (decoded < 0) ? Utf8.REPLACEMENT : decoded >>> 3;
+            index += (decoded < 0) ? 1 : decoded & 7;
+            boolean supplementary = codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT;
+            int unit = supplementary ? Character.highSurrogate(codePoint) : codePoint;
+            // one or two code units, each completing a block every second unit
+            for (int half = supplementary ? 0 : 1; half < 2; half++) {
+                if ((units & 1) == 0) {
+                    pending = unit;
+                } else {
+                    hash ^= mixBlock(pending | (unit << 16));
+                    hash = Integer.rotateLeft(hash, 13);
+                    hash = hash * 5 + 0xe6546b64;
+                }
+                units++;
+                unit = Character.lowSurrogate(codePoint);
+            }
+        }
+        if ((units & 1) != 0) {
+            hash ^= mixBlock(pending);
+        }
+        hash ^= units * 2;
+        return finalizeHash(hash);
+    }
+
+    /**
+     * Scrambles one 32-bit block before it is combined into the hash
+     *
+     * @param block block to be scrambled
+     * @return scrambled block
+     */
+    private static int mixBlock(int block) {
+        block *= C1;
+        block = Integer.rotateLeft(block, 15);
+        return block * C2;
+    }
+}
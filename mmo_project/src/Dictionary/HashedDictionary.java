@@ -1,25 +1,27 @@
 package Dictionary;
 
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
 
 /**
  * A hash table-based implementation of the DictionaryInterface.
+ * Keys, values and the hash code of each key are kept in parallel arrays, so no object is
+ * allocated per entry and probes compare the cached hash before calling equals.
  *
  * @param <K> The type of keys in the dictionary.
  * @param <V> The type of values in the dictionary.
  */
-public class HashedDictionary<K, V> implements DictionaryInterface<K,V>{
-
-    private int numberOfEntries;
-    private static final int DEFAULT_CAPACITY = 5;
-    private static final int MAX_CAPACITY = 10000;
-    private TableEntry<K,V>[] hashTable;
-    private int tableSize;
-    private static final int MAX_SIZE = 2 * MAX_CAPACITY;
-    private boolean integrityOK = false;
-    private static final double MAX_LOAD_FACTOR = 0.5;
-    private final TableEntry<K,V> AVAILABLE = new TableEntry<>(null, null);
+public class HashedDictionary<K, V> extends AbstractHashedDictionary<K> implements DictionaryInterface<K,V>{
+
+    // values parallel to the key arrays of the current and the old table
+    private Object[] values;
+    private Object[] oldValues;
 
     /**
      * Constructs a new HashedDictionary with the specified initial capacity.
@@ -27,37 +29,32 @@ public class HashedDictionary<K, V> implements DictionaryInterface<K,V>{
      * @param initialCapacity The initial capacity of the hash table.
      */
     public HashedDictionary(int initialCapacity) {
-        initialCapacity = checkCapacity(initialCapacity);
-        numberOfEntries = 0;
-
-        int tableSize = getNextPrime(initialCapacity);
-        checkSize(tableSize);
+        this(initialCapacity, CollisionResolution.QUADRATIC_PROBING);
+    }
 
-        TableEntry<K,V>[] temp = (TableEntry<K, V>[])new TableEntry[tableSize];
-        hashTable = temp;
-        integrityOK = true;
+    /**
+     * Constructs a new HashedDictionary with the specified initial capacity and collision resolution scheme.
+     *
+     * @param initialCapacity The initial capacity of the hash table.
+     * @param collisionResolution The probing scheme used to resolve collisions.
+     */
+    public HashedDictionary(int initialCapacity, CollisionResolution collisionResolution) {
+        this(initialCapacity, collisionResolution, HashMixing.NONE, false);
     }
 
     /**
-     * Displays the hash table, printing either null, available, or the key value pair
+     * Constructs a new HashedDictionary with the specified initial capacity, collision resolution scheme
+     * and hash mixing stage.
+     *
+     * @param initialCapacity The initial capacity of the hash table.
+     * @param collisionResolution The probing scheme used to resolve collisions.
+     * @param hashMixing How keys are hashed before they are placed.
+     * @param powerOfTwoTables True to use power-of-two table lengths, which needs a mixing stage.
      */
-    public void displayHashTable() {
-        checkIntegrity();
-        System.out.println("Hashed Dictionary: ");
-        // Runtime: O(N)
-        // Loops through each element in hash table and prints it out
-        for (int index = 0; index < hashTable.length; index++) {
-            System.out.print(index + ": ");
-            if (hashTable[index] == null) {
-                System.out.print("null");
-            } else if (hashTable[index] == AVAILABLE) {
-                System.out.print("available");
-            } else {
-                System.out.print(hashTable[index].getKey() + " " + hashTable[index].getValue());
-            }
-            System.out.println();
-        }
-        System.out.println();
+    public HashedDictionary(int initialCapacity, CollisionResolution collisionResolution, HashMixing hashMixing,
+              boolean powerOfTwoTables) {
+        super(initialCapacity, collisionResolution, hashMixing, powerOfTwoTables, HashMixing.PROCESS_SEED);
+        values = new Object[keys.length];
     }
 
     /**
@@ -76,25 +73,30 @@ public class HashedDictionary<K, V> implements DictionaryInterface<K,V>{
         if ((key == null) || (value == null)) {
             throw new IllegalArgumentException("Cannot put null values into a dictionary.");
         } else {
+            beginUpdate();
             //Runtime: O(n), due to getHashIndex being called
-            System.out.println("Hash Index for " + key + ": " + key.hashCode() % hashTable.length);
             V oldValue;
+            int hash = hash(key);
             //Finds next available index and adds entry or updates new value
-            int index = getHashIndex(key);
-            assert(index >= 0) && (index < hashTable.length);
+            int index = getHashIndex(keys, hashes, key, hash);
+            assert(index >= 0) && (index < keys.length);
 
-            if ((hashTable[index] == null) || (hashTable[index] == AVAILABLE)) {
-                hashTable[index] = new TableEntry<>(key, value);
-                numberOfEntries++;
-                oldValue = null;
+            if (isOccupied(keys[index])) {
+                oldValue = valueAt(values, index);
+                values[index] = value;
             } else {
-                oldValue = hashTable[index].getValue();
-                hashTable[index].setValue(value);
-            }
-            //Runtime: O(n) because you need to rehash each element
-            if (isHashTableTooFull()) {
-                enlargeHashTable();
+                // a key that has not been migrated yet is updated where it is
+                int oldIndex = locateInOldTable(key, hash);
+                if (oldIndex >= 0) {
+                    oldValue = valueAt(oldValues, oldIndex);
+                    oldValues[oldIndex] = value;
+                } else {
+                    insertKey(index, key, hash);
+                    values[index] = value;
+                    oldValue = null;
+                }
             }
+            afterInsert();
 
             return oldValue;
         }
@@ -109,15 +111,20 @@ public class HashedDictionary<K, V> implements DictionaryInterface<K,V>{
      */
     @Override
     public V remove(K key) {
-        checkIntegrity();
+        beginUpdate();
         V removedValue = null;
-        //Runtime: O(n), due to calling getHashIndex();
-        int index = getHashIndex(key);
-
-        if ((hashTable[index] != null) && (hashTable[index] != AVAILABLE)) {
-            removedValue = hashTable[index].getValue();
-            hashTable[index] = AVAILABLE;
-            numberOfEntries--;
+        //Runtime: O(n), due to calling locate();
+        int index = locate(key, hash(key));
+
+        if (index >= 0) {
+            removedValue = valueAt(values, index);
+            removeKey(false, index);
+            values[index] = null;
+        } else if (index < -1) {
+            int oldIndex = -2 - index;
+            removedValue = valueAt(oldValues, oldIndex);
+            removeKey(true, oldIndex);
+            oldValues[oldIndex] = null;
         }
 
         return removedValue;
@@ -136,265 +143,235 @@ public class HashedDictionary<K, V> implements DictionaryInterface<K,V>{
         checkIntegrity();
         V result = null;
 
-        //Runtime: O(n) due to calling getHashIndex
-        int index = getHashIndex(key);
+        //Runtime: O(n) due to calling locate
+        int index = locate(key, hash(key));
 
-        if ((hashTable[index] != null) && hashTable[index] != AVAILABLE) {
-            result = hashTable[index].getValue();
+        if (index >= 0) {
+            result = valueAt(values, index);
+        } else if (index < -1) {
+            result = valueAt(oldValues, -2 - index);
         }
         return result;
     }
 
     /**
-     * Sees whether a specific entry is in this dictionary.
+     * Retrieves the value of the String key with the given characters without building a String,
+     * so a name held in a reused buffer can be looked up without allocating.
      *
-     * @param key An object search key of the desired entry.
-     * @return True if key is associated with an entry in the dictionary.
+     * @param characters characters of the search key
+     * @return Either the value that is associated with the key
+     * or null if no such object exists.
+     * @throws IllegalArgumentException if characters is null
      */
-    @Override
-    public boolean contains(K key) {
-        // Runtime: O(n) due to calling get value
-        return getValue(key) != null;
+    public V getValueByCharacters(CharSequence characters) {
+        checkIntegrity();
+        if (characters == null) {
+            throw new IllegalArgumentException("Cannot look up a null key.");
+        }
+        //Runtime: O(n) due to calling locateText
+        return valueAtLocation(locateText(characters, null, 0, 0));
     }
 
     /**
-     * Creates an iterator that traverses all search keys in this dictionary.
+     * Retrieves the value of the String key whose UTF-8 encoding is the given bytes without
+     * building a String, so a name read off the wire can be looked up where it lies.
      *
-     * @return An iterator that provides sequential access to the search
-     * keys in the dictionary.
+     * @param bytes array holding the UTF-8 bytes of the search key
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return Either the value that is associated with the key
+     * or null if no such object exists.
+     * @throws IllegalArgumentException if bytes is null
+     * @throws IndexOutOfBoundsException if the bytes are not within the array
      */
-    @Override
-    public Iterator<K> getKeyIterator() {
-        return new KeyIterator();
+    public V getValueByUtf8(byte[] bytes, int offset, int length) {
+        checkIntegrity();
+        //Runtime: O(n) due to calling locateText
+        return valueAtLocation(locateText(null, bytes, offset, length));
     }
 
     /**
-     * Creates an iterator that traverses all values in this dictionary.
+     * Returns the value at a location found by locate or locateText
      *
-     * @return An iterator that provides sequential access to the values
-     * in this dictionary.
+     * @param index index in the current table, -2 - index in the old table, or -1
+     * @return the value there, or null for -1
      */
-    @Override
-    public Iterator<V> getValueIterator() {
-        return new ValueIterator();
+    private V valueAtLocation(int index) {
+        if (index >= 0) {
+            return valueAt(values, index);
+        } else if (index < -1) {
+            return valueAt(oldValues, -2 - index);
+        }
+        return null;
     }
 
     /**
-     * Sees whether this dictionary is empty.
+     * Sees whether a specific entry is in this dictionary.
      *
-     * @return True if the dictionary is empty.
+     * @param key An object search key of the desired entry.
+     * @return True if key is associated with an entry in the dictionary.
      */
     @Override
-    public boolean isEmpty() {
-        return numberOfEntries == 0;
+    public boolean contains(K key) {
+        // Runtime: O(n) due to calling get value
+        return getValue(key) != null;
     }
 
     /**
-     * Gets the size of this dictionary.
+     * Creates an iterator that traverses all values in this dictionary.
      *
-     * @return The number of entries (key-value pairs) currently
-     * in the dictionary.
+     * @return An iterator that provides sequential access to the values
+     * in this dictionary.
      */
     @Override
-    public int getSize() {
-        return numberOfEntries;
+    public Iterator<V> getValueIterator() {
+        return new ValueIterator();
     }
 
     /**
-     * Removes all entries from this dictionary.
+     * Creates a spliterator over all values in this dictionary. It splits the slots of the
+     * table into ranges, so the values can feed a parallel stream.
+     *
+     * @return A spliterator over the values in the dictionary.
      */
-    @Override
-    public void clear() {
-        checkIntegrity();
-        // Runtime: O(n) because is iterates through each element in the hash table
-        for (int index = 0; index < hashTable.length; index++) {
-            hashTable[index] = null;
-        }
-        numberOfEntries = 0;
+    public Spliterator<V> getValueSpliterator() {
+        return new ValueSpliterator(0, -1, 0, 0);
     }
 
     /**
-     * Return the index that the given key will be stored at in the has table
+     * Creates a spliterator over all entries in this dictionary, each a key paired with its
+     * value. It splits the slots of the table into ranges, so the entries can feed a parallel stream.
      *
-     * @param key key to be stored in hash table
-     * @return the index that key will be stored at
+     * @return A spliterator over the entries in the dictionary.
      */
-    private int getHashIndex(K key) {
-        int hashIndex = key.hashCode() % hashTable.length;
-        if (hashIndex < 0) {
-            hashIndex = hashIndex + hashTable.length;
-        }
-        //Runtime: O(n) because worst case, quadratic probing could go through whole hash table
-        hashIndex = probe(hashIndex, key);
-        return hashIndex;
+    public Spliterator<Map.Entry<K, V>> getEntrySpliterator() {
+        return new EntrySpliterator(0, -1, 0, 0);
     }
 
     /**
-     * Uses quadratic probing to either find where the key value is stored, or to find the index where it will be
-     * stored
+     * Calls an action with every key and its value, reading the table arrays directly so nothing
+     * is allocated per entry.
      *
-     * @param index index to starting probing from
-     * @param key key to insert into hash table
-     * @return index for key to be stored at
+     * @param action The action to call with each key and value.
+     * @throws IllegalArgumentException if the action is null
+     * @throws ConcurrentModificationException if the action changes the dictionary
      */
-    private int probe(int index, K key) {
-        //Runtime: O(n), because worst case it could search through whole hash table
-        boolean found = false;
-        int availableIndex = -1;
-        int increment = 1;
-
-        // continue to quadratic probe until finds an open or same index
-        while (!found && (hashTable[index] != null)) {
-            if ((hashTable[index] != null) && (hashTable[index] != AVAILABLE)) {
-                // if found, mark as found and leave loop
-                if (key.equals(hashTable[index].getKey())) {
-                    found = true;
-                } else {
-                    index = (index + (increment * increment)) % hashTable.length;
-                    increment++;
-                }
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action must not be null");
+        }
+        int expectedModCount = modCount;
+        Object[] tableKeys = keys;
+        Object[] tableValues = values;
+        //Runtime: O(n), where n is the length of the table
+        for (int index = 0; index < tableKeys.length; index++) {
+            if (isOccupied(tableKeys[index])) {
+                action.accept((K) tableKeys[index], (V) tableValues[index]);
             }
-            // if slot is null or available, you found the right slot
-            else {
-                if (availableIndex == -1) {
-                    availableIndex = index;
+        }
+        if (oldKeys != null) {
+            Object[] tableOldKeys = oldKeys;
+            Object[] tableOldValues = oldValues;
+            for (int index = 0; index < tableOldKeys.length; index++) {
+                if (isOccupied(tableOldKeys[index])) {
+                    action.accept((K) tableOldKeys[index], (V) tableOldValues[index]);
                 }
-                index = (index + increment * increment) % hashTable.length;
-                increment++;
             }
         }
-
-        if (found || availableIndex == -1) {
-            return index;
-        } else {
-            return availableIndex;
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
         }
     }
 
     /**
-     * Not clear how to implement
+     * {@inheritDoc}
      */
-    private void locate() {
-        throw new UnsupportedOperationException("No support for method");
+    @Override
+    void startValueMigration(int length) {
+        oldValues = values;
+        values = new Object[length];
     }
 
     /**
-     * Creates new hash table with a larger length and re-hashes all the key value pairs
+     * {@inheritDoc}
      */
-    private void enlargeHashTable() {
-        //Runtime: O(n), where n is the new size of the hash table
-        // doubles the size of the hash table
-        TableEntry<K,V>[] oldTable = hashTable;
-        int oldSize = hashTable.length;
-        int newSize = getNextPrime(oldSize + oldSize);
-        checkSize(newSize);
-
-        TableEntry<K,V>[] tempTable = (TableEntry<K,V>[])new TableEntry[newSize];
-        hashTable = tempTable;
-        numberOfEntries = 0;
-
-        // re hash all of the elements in the original hash table to the new one
-        for (int index = 0; index < oldSize; index++) {
-            if ((oldTable[index] != null) && (oldTable[index] != AVAILABLE)) {
-                add(oldTable[index].getKey(), oldTable[index].getValue());
-            }
-        }
+    @Override
+    void migrateValue(int oldIndex, int newIndex) {
+        values[newIndex] = oldValues[oldIndex];
+        oldValues[oldIndex] = null;
     }
 
     /**
-     * Returns true if hash table size is grater than the load factor
-     * @return true if size is too large
+     * {@inheritDoc}
      */
-    private boolean isHashTableTooFull() {
-        return numberOfEntries > MAX_LOAD_FACTOR * hashTable.length;
+    @Override
+    void endValueMigration() {
+        oldValues = null;
     }
 
     /**
-     * Return a prime number greater than given number and less than max size
-     *
-     * @return a valid prime number
+     * {@inheritDoc}
      */
-    private int getNextPrime(int number) {
-        if (number % 2 == 0) {
-            number++;
-        }
-        //Runtime: O(sqrt(n)) because this is the time complexity for finding the next prime number
-        while (!isPrime(number)) {
-            number = number + 2;
+    @Override
+    void clearValues() {
+        // Runtime: O(n) because is iterates through each element in the hash table
+        for (int index = 0; index < values.length; index++) {
+            values[index] = null;
         }
-        return number;
     }
 
     /**
-     * Tests if the given number is prime
-     *
-     * @param number number to be tested
-     * @return true/false if number is prime
+     * {@inheritDoc}
      */
-    private boolean isPrime(int number) {
-        boolean result;
-        boolean done = false;
-
-        // logic for checking if number is prime, returning the boolean if it is or not
-        if ((number == 1) || (number % 2 == 0)) {
-            result = false;
-        } else if ((number == 2) || (number == 3)) {
-            result = true;
-        } else {
-            assert (number % 2 != 0) && (number >= 5);
-            result = true;
-            for (int divisor = 3; !done && (divisor * divisor <= number); divisor = divisor + 2) {
-                if (number % divisor == 0) {
-                    result = false;
-                    done = true;
-                }
-            }
-        }
-        return result;
+    @Override
+    String valueToString(boolean inOldTable, int index) {
+        return String.valueOf(inOldTable ? oldValues[index] : values[index]);
     }
 
     /**
-     * Throw an exception if the integrity is not ok
+     * {@inheritDoc}
      */
-    private void checkIntegrity() {
-        if (!integrityOK) {
-            throw new SecurityException("HashedDictionary object is corrupt.");
-        }
+    @Override
+    void writeValue(RecordWriter out, boolean inOldTable, int index) throws IOException {
+        Object value = inOldTable ? oldValues[index] : values[index];
+        out.field("value", (value instanceof CharSequence) ? (CharSequence) value : String.valueOf(value));
     }
 
     /**
-     * Checks that the capacity is the correct size, and not larger that maximum
+     * Returns the value stored at the given index of a value array
      *
-     * @param capacity requested size of hash table
-     * @return the set size of hash table
+     * @param tableValues value array to read
+     * @param index index of the value
+     * @return the value at that index
      */
-    private int checkCapacity(int capacity) {
-        if (capacity < DEFAULT_CAPACITY) {
-            capacity = DEFAULT_CAPACITY;
-        } else if (capacity > MAX_CAPACITY) {
-            throw new IllegalStateException("You can not create a dictionary with a capacity larger than" +
-                    MAX_CAPACITY);
-        }
-        return capacity;
+    @SuppressWarnings("unchecked")
+    private V valueAt(Object[] tableValues, int index) {
+        return (V) tableValues[index];
     }
 
     /**
-     * Throw exception if hash table is too large
+     * Returns the value stored at the given position, counting through the current table and then
+     * through the table still being migrated
      *
-     * @param size size of hash table to be checked
+     * @param position position of the slot
+     * @return the value at that position
      */
-    private void checkSize(int size) {
-        if (size > MAX_SIZE) {
-            throw new IllegalStateException("Dictionary has become too large.");
+    private V valueAtPosition(int position) {
+        if (position < values.length) {
+            return valueAt(values, position);
         }
+        return valueAt(oldValues, position - values.length);
     }
 
-    private class KeyIterator implements Iterator<K> {
-        private  int currentIndex;
+    private class ValueIterator implements Iterator<V> {
+        private int currentIndex;
         private int numberLeft;
-        private KeyIterator() {
+        private final int expectedModCount;
+        private ValueIterator() {
             currentIndex = 0;
             numberLeft = numberOfEntries;
+            expectedModCount = modCount;
         }
         /**
          * Returns {@code true} if the iteration has more elements.
@@ -413,20 +390,21 @@ public class HashedDictionary<K, V> implements DictionaryInterface<K,V>{
          *
          * @return the next element in the iteration
          * @throws NoSuchElementException if the iteration has no more elements
+         * @throws ConcurrentModificationException if the dictionary has changed since the iterator was created
          */
         @Override
-        public K next() {
-            K result = null;
+        public V next() {
+            V result = null;
 
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
             if (hasNext()) {
-                while ((hashTable[currentIndex] == null) || hashTable[currentIndex] == AVAILABLE) {
-                    currentIndex++;
-                }
-                result = hashTable[currentIndex].getKey();
+                currentIndex = nextOccupiedPosition(currentIndex);
+                result = valueAtPosition(currentIndex);
                 numberLeft--;
                 currentIndex++;
-            }
-            else {
+            } else {
                 throw new NoSuchElementException();
             }
             return result;
@@ -437,87 +415,66 @@ public class HashedDictionary<K, V> implements DictionaryInterface<K,V>{
         }
     }
 
-    private class ValueIterator implements Iterator<V> {
-        private int currentIndex;
-        private int numberLeft;
-        private ValueIterator() {
-            currentIndex = 0;
-            numberLeft = numberOfEntries;
+    private class ValueSpliterator extends SlotSpliterator<V> {
+
+        private ValueSpliterator(int origin, int fence, int estimate, int expectedModCount) {
+            super(origin, fence, estimate, expectedModCount);
         }
+
         /**
-         * Returns {@code true} if the iteration has more elements.
-         * (In other words, returns {@code true} if {@link #next} would
-         * return an element rather than throwing an exception.)
-         *
-         * @return {@code true} if the iteration has more elements
+         * {@inheritDoc}
          */
         @Override
-        public boolean hasNext() {
-            return numberLeft > 0;
+        V elementAt(int position) {
+            return valueAtPosition(position);
         }
 
         /**
-         * Returns the next element in the iteration.
-         *
-         * @return the next element in the iteration
-         * @throws NoSuchElementException if the iteration has no more elements
+         * {@inheritDoc}
          */
         @Override
-        public V next() {
-            V result = null;
-
-            if (hasNext()) {
-                while ((hashTable[currentIndex] == null) || hashTable[currentIndex] == AVAILABLE) {
-                    currentIndex++;
-                }
-                result = hashTable[currentIndex].getValue();
-                numberLeft--;
-                currentIndex++;
-            } else {
-                throw new NoSuchElementException();
-            }
-            return result;
+        SlotSpliterator<V> create(int origin, int fence, int estimate, int expectedModCount) {
+            return new ValueSpliterator(origin, fence, estimate, expectedModCount);
         }
 
-        public void remove() {
-            throw new UnsupportedOperationException();
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int characteristics() {
+            return characteristics(0);
         }
     }
 
-    protected final class TableEntry<K, V> {
-        private K key;
-        private V value;
-        private TableEntry(K key, V value) {
-            this.key = key;
-            this.value = value;
+    private class EntrySpliterator extends SlotSpliterator<Map.Entry<K, V>> {
+
+        private EntrySpliterator(int origin, int fence, int estimate, int expectedModCount) {
+            super(origin, fence, estimate, expectedModCount);
         }
 
         /**
-         * Returns key for table entry
-         *
-         * @return key
+         * {@inheritDoc}
          */
-        private K getKey() {
-            return key;
+        @Override
+        @SuppressWarnings("unchecked")
+        Map.Entry<K, V> elementAt(int position) {
+            return new AbstractMap.SimpleImmutableEntry<>((K) keyAt(position), valueAtPosition(position));
         }
 
         /**
-         * Returns value for table entry
-         *
-         * @return value
+         * {@inheritDoc}
          */
-        private V getValue() {
-            return value;
+        @Override
+        SlotSpliterator<Map.Entry<K, V>> create(int origin, int fence, int estimate, int expectedModCount) {
+            return new EntrySpliterator(origin, fence, estimate, expectedModCount);
         }
 
         /**
-         *  Sets the value for the given table entry
-         *
-         * @param newValue value to be set
+         * {@inheritDoc}
          */
-        private void setValue(V newValue) {
-            value = newValue;
+        @Override
+        public int characteristics() {
+            return characteristics(Spliterator.DISTINCT);
         }
     }
-
 }
@@ -0,0 +1,20 @@
+package Dictionary;
+
+/**
+ * An ObjIntFunction turns a key and its int value into a result, so an entry of an
+ * ObjectIntHashedDictionary can be read in one lookup without boxing the value.
+ *
+ * @param <K> The type of the key.
+ * @param <R> The type of the result.
+ */
+@FunctionalInterface
+public interface ObjIntFunction<K, R> {
+    /**
+     * Applies this function to an entry.
+     *
+     * @param key   the key of the entry
+     * @param value the value of the entry
+     * @return the result
+     */
+    public R apply(K key, int value);
+}
@@ -0,0 +1,61 @@
+package Dictionary;
+
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
+//object to int dictionary interface, the same operations as DictionaryInterface but with
+//primitive int values so nothing is boxed
+public interface ObjectIntDictionaryInterface<K> {
+    /** Value returned in place of null when a key is not in the dictionary. It can not be
+     stored as a value. */
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    /** Adds a new entry to this dictionary. If the given search key already
+     exists in the dictionary, replaces the corresponding value.
+     @param key    An object search key of the new entry.
+     @param value  An int associated with the search key.
+     @return  Either NO_VALUE if the new entry was added to the dictionary
+     or the value that was associated with key if that value
+     was replaced. */
+    public int add(K key, int value);
+
+    /** Removes a specific entry from this dictionary.
+     @param key  An object search key of the entry to be removed.
+     @return  Either the value that was associated with the search key
+     or NO_VALUE if no such object exists. */
+    public int remove(K key);
+
+    /** Retrieves from this dictionary the value associated with a given
+     search key.
+     @param key  An object search key of the entry to be retrieved.
+     @return  Either the value that is associated with the search key
+     or NO_VALUE if no such object exists. */
+    public int getValue(K key);
+
+    /** Sees whether a specific entry is in this dictionary.
+     @param key  An object search key of the desired entry.
+     @return  True if key is associated with an entry in the dictionary. */
+    public boolean contains(K key);
+
+    /** Creates an iterator that traverses all search keys in this dictionary.
+     @return  An iterator that provides sequential access to the search
+     keys in the dictionary. */
+    public Iterator<K> getKeyIterator();
+
+    /** Creates an iterator that traverses all values in this dictionary.
+     @return  An iterator that provides sequential access to the values
+     in this dictionary. */
+    public PrimitiveIterator.OfInt getValueIterator();
+
+    /** Sees whether this dictionary is empty.
+     @return  True if the dictionary is empty. */
+    public boolean isEmpty();
+
+    /** Gets the size of this dictionary.
+     @return  The number of entries (key-value pairs) currently
+     in the dictionary. */
+    public int getSize();
+
+    /** Removes all entries from this dictionary. */
+    public void clear();
+}
@@ -0,0 +1,614 @@
+package Dictionary;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A hash table-based implementation of the ObjectIntDictionaryInterface. Values are kept in an
+ * int array parallel to the keys, so adding, finding and removing entries never boxes a value.
+ *
+ * @param <K> The type of keys in the dictionary.
+ */
+public class ObjectIntHashedDictionary<K> extends AbstractHashedDictionary<K>
+        implements ObjectIntDictionaryInterface<K> {
+
+    // inputs at least this large have their hashes computed in parallel by addAll
+    private static final int PARALLEL_HASH_THRESHOLD = 1 << 13;
+
+    // values parallel to the key arrays of the current and the old table
+    private int[] values;
+    private int[] oldValues;
+
+    /**
+     * Constructs a new ObjectIntHashedDictionary with the specified initial capacity.
+     *
+     * @param initialCapacity The initial capacity of the hash table.
+     */
+    public ObjectIntHashedDictionary(int initialCapacity) {
+        this(initialCapacity, CollisionResolution.QUADRATIC_PROBING);
+    }
+
+    /**
+     * Constructs a new ObjectIntHashedDictionary with the specified initial capacity and collision resolution scheme.
+     *
+     * @param initialCapacity The initial capacity of the hash table.
+     * @param collisionResolution The probing scheme used to resolve collisions.
+     */
+    public ObjectIntHashedDictionary(int initialCapacity, CollisionResolution collisionResolution) {
+        this(initialCapacity, collisionResolution, HashMixing.NONE, false);
+    }
+
+    /**
+     * Constructs a new ObjectIntHashedDictionary with the specified initial capacity, collision resolution scheme
+     * and hash mixing stage.
+     *
+     * @param initialCapacity The initial capacity of the hash table.
+     * @param collisionResolution The probing scheme used to resolve collisions.
+     * @param hashMixing How keys are hashed before they are placed.
+     * @param powerOfTwoTables True to use power-of-two table lengths, which needs a mixing stage.
+     */
+    public ObjectIntHashedDictionary(int initialCapacity, CollisionResolution collisionResolution, HashMixing hashMixing,
+              boolean powerOfTwoTables) {
+        this(initialCapacity, collisionResolution, hashMixing, powerOfTwoTables, HashMixing.PROCESS_SEED);
+    }
+
+    /**
+     * Constructs a new ObjectIntHashedDictionary with an explicit hash seed, so hashes saved by
+     * another process stay valid.
+     *
+     * @param initialCapacity The initial capacity of the hash table.
+     * @param collisionResolution The probing scheme used to resolve collisions.
+     * @param hashMixing How keys are hashed before they are placed.
+     * @param powerOfTwoTables True to use power-of-two table lengths, which needs a mixing stage.
+     * @param hashSeed Seed given to the hash mixing stage.
+     */
+    ObjectIntHashedDictionary(int initialCapacity, CollisionResolution collisionResolution, HashMixing hashMixing,
+              boolean powerOfTwoTables, int hashSeed) {
+        super(initialCapacity, collisionResolution, hashMixing, powerOfTwoTables, hashSeed);
+        values = new int[keys.length];
+    }
+
+    /**
+     * Rebuilds a dictionary from an image without hashing or comparing any key. Each entry is
+     * placed with its saved hash code, and its key is looked up from its value.
+     *
+     * @param image image taken by captureImage, possibly in another process
+     * @param keyForValue returns the key of the entry with the given value
+     * @param <K> The type of keys in the dictionary.
+     * @return a dictionary holding the entries of the image
+     */
+    public static <K> ObjectIntHashedDictionary<K> fromImage(HashIndexImage image,
+                                                             IntFunction<? extends K> keyForValue) {
+        ObjectIntHashedDictionary<K> dictionary = new ObjectIntHashedDictionary<>(DEFAULT_CAPACITY,
+                image.getCollisionResolution(), image.getHashMixing(), image.hasPowerOfTwoTables(),
+                image.getHashSeed());
+        dictionary.ensureCapacity(image.getEntryCount());
+        //Runtime: O(n), where n is the number of entries in the image
+        for (int entry = 0; entry < image.getEntryCount(); entry++) {
+            int value = image.values[entry];
+            K key = keyForValue.apply(value);
+            if ((key == null) || (value == NO_VALUE)) {
+                throw new IllegalArgumentException("Image entry " + entry + " has no key");
+            }
+            int index = dictionary.insertHashed(key, image.hashes[entry]);
+            dictionary.values[index] = value;
+        }
+        return dictionary;
+    }
+
+    /**
+     * Copies the hash code and value of every entry, along with the settings needed to place them
+     * again, into an image that can be saved and later given to fromImage. Keys are not copied.
+     *
+     * @return an image of this dictionary
+     */
+    public HashIndexImage captureImage() {
+        checkIntegrity();
+        int[] imageHashes = new int[numberOfEntries];
+        int[] imageValues = new int[numberOfEntries];
+        //Runtime: O(n), where n is the length of the hash table
+        int position = 0;
+        for (int entry = 0; entry < numberOfEntries; entry++) {
+            position = nextOccupiedPosition(position);
+            imageHashes[entry] = hashAt(position);
+            imageValues[entry] = (position < values.length) ? values[position] : oldValues[position - values.length];
+            position++;
+        }
+        return new HashIndexImage(getCollisionResolution(), getHashMixing(), hasPowerOfTwoTables(), getHashSeed(),
+                imageHashes, imageValues);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int add(K key, int value) {
+        checkIntegrity();
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot put null values into a dictionary.");
+        } else if (value == NO_VALUE) {
+            throw new IllegalArgumentException("NO_VALUE can not be stored in a dictionary.");
+        }
+        beginUpdate();
+        return put(key, hash(key), value);
+    }
+
+    /**
+     * Adds many entries at once. The table is sized for all of them up front and, for large
+     * inputs, the keys are hashed in parallel before being inserted in one pass. Entries are
+     * added in order, so a key given twice keeps its last value.
+     *
+     * @param newKeys keys of the new entries
+     * @param newValues values of the new entries, parallel to the keys
+     * @return the value each key had before this call, or NO_VALUE for keys that were added
+     * @throws IllegalArgumentException if the arrays differ in length or hold a null key or NO_VALUE,
+     * in which case nothing is added
+     */
+    public int[] addAll(K[] newKeys, int[] newValues) {
+        checkIntegrity();
+        if (newKeys.length != newValues.length) {
+            throw new IllegalArgumentException("Every key needs exactly one value");
+        }
+        //Runtime: O(n), where n is the number of new entries
+        for (int index = 0; index < newKeys.length; index++) {
+            if (newKeys[index] == null) {
+                throw new IllegalArgumentException("Cannot put null values into a dictionary.");
+            } else if (newValues[index] == NO_VALUE) {
+                throw new IllegalArgumentException("NO_VALUE can not be stored in a dictionary.");
+            }
+        }
+        ensureCapacity((int) Math.min((long) numberOfEntries + newKeys.length, MAX_CAPACITY));
+        int[] newHashes = new int[newKeys.length];
+        if (newKeys.length >= PARALLEL_HASH_THRESHOLD) {
+            Arrays.parallelSetAll(newHashes, index -> hash(newKeys[index]));
+        } else {
+            Arrays.setAll(newHashes, index -> hash(newKeys[index]));
+        }
+        int[] previousValues = new int[newKeys.length];
+        for (int index = 0; index < newKeys.length; index++) {
+            beginUpdate();
+            previousValues[index] = put(newKeys[index], newHashes[index], newValues[index]);
+        }
+        return previousValues;
+    }
+
+    /**
+     * Adds or replaces the value of a key whose hash has already been computed
+     *
+     * @param key key of the entry
+     * @param hash hash code of the key
+     * @param value value of the entry
+     * @return the replaced value, or NO_VALUE if the key was added
+     */
+    private int put(K key, int hash, int value) {
+        //Runtime: O(n), due to getHashIndex being called
+        int oldValue;
+        //Finds next available index and adds entry or updates new value
+        int index = getHashIndex(keys, hashes, key, hash);
+        // a table that is at most half full always has a free slot on the probe sequence
+        assert(index >= 0) && (index < keys.length);
+
+        if (isOccupied(keys[index])) {
+            oldValue = values[index];
+            values[index] = value;
+        } else {
+            // a key that has not been migrated yet is updated where it is
+            int oldIndex = locateInOldTable(key, hash);
+            if (oldIndex >= 0) {
+                oldValue = oldValues[oldIndex];
+                oldValues[oldIndex] = value;
+            } else {
+                insertKey(index, key, hash);
+                values[index] = value;
+                oldValue = NO_VALUE;
+            }
+        }
+        afterInsert();
+
+        return oldValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int remove(K key) {
+        beginUpdate();
+        int removedValue = NO_VALUE;
+        //Runtime: O(n), due to calling locate();
+        int index = locate(key, hash(key));
+
+        if (index >= 0) {
+            removedValue = values[index];
+            removeKey(false, index);
+        } else if (index < -1) {
+            removedValue = oldValues[-2 - index];
+            removeKey(true, -2 - index);
+        }
+
+        return removedValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getValue(K key) {
+        checkIntegrity();
+        int result = NO_VALUE;
+
+        //Runtime: O(n) due to calling locate
+        int index = locate(key, hash(key));
+
+        if (index >= 0) {
+            result = values[index];
+        } else if (index < -1) {
+            result = oldValues[-2 - index];
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the value of the String key with the given characters without building a String,
+     * so a name held in a reused buffer can be looked up without allocating.
+     *
+     * @param characters characters of the search key
+     * @return the value associated with the key, or NO_VALUE if there is none
+     * @throws IllegalArgumentException if characters is null
+     */
+    public int getValueByCharacters(CharSequence characters) {
+        checkIntegrity();
+        if (characters == null) {
+            throw new IllegalArgumentException("Cannot look up a null key.");
+        }
+        //Runtime: O(n) due to calling locateText
+        return valueAtLocation(locateText(characters, null, 0, 0));
+    }
+
+    /**
+     * Retrieves the value of the String key whose UTF-8 encoding is the given bytes without
+     * building a String, so a name read off the wire can be looked up where it lies.
+     *
+     * @param bytes array holding the UTF-8 bytes of the search key
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return the value associated with the key, or NO_VALUE if there is none
+     * @throws IllegalArgumentException if bytes is null
+     * @throws IndexOutOfBoundsException if the bytes are not within the array
+     */
+    public int getValueByUtf8(byte[] bytes, int offset, int length) {
+        checkIntegrity();
+        //Runtime: O(n) due to calling locateText
+        return valueAtLocation(locateText(null, bytes, offset, length));
+    }
+
+    /**
+     * Finds the entry with the given key and applies a function to the key stored in the dictionary
+     * and its value, so the caller gets the stored key instance along with the value.
+     *
+     * @param key the search key
+     * @param function function to apply to the entry
+     * @param <R> type of the result
+     * @return the result of the function, or null if there is no such entry
+     */
+    public <R> R applyToEntry(K key, ObjIntFunction<? super K, ? extends R> function) {
+        checkIntegrity();
+        //Runtime: O(n) due to calling locate
+        return applyAtLocation(locate(key, hash(key)), function);
+    }
+
+    /**
+     * Finds the entry whose String key has the given characters without building a String, and
+     * applies a function to the stored key and its value.
+     *
+     * @param characters characters of the search key
+     * @param function function to apply to the entry
+     * @param <R> type of the result
+     * @return the result of the function, or null if there is no such entry
+     * @throws IllegalArgumentException if characters is null
+     */
+    public <R> R applyToEntryByCharacters(CharSequence characters, ObjIntFunction<? super K, ? extends R> function) {
+        checkIntegrity();
+        if (characters == null) {
+            throw new IllegalArgumentException("Cannot look up a null key.");
+        }
+        //Runtime: O(n) due to calling locateText
+        return applyAtLocation(locateText(characters, null, 0, 0), function);
+    }
+
+    /**
+     * Finds the entry whose String key is encoded by the given UTF-8 bytes without decoding them,
+     * and applies a function to the stored key and its value.
+     *
+     * @param bytes array holding the UTF-8 bytes of the search key
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @param function function to apply to the entry
+     * @param <R> type of the result
+     * @return the result of the function, or null if there is no such entry
+     * @throws IllegalArgumentException if bytes is null
+     * @throws IndexOutOfBoundsException if the bytes are not within the array
+     */
+    public <R> R applyToEntryByUtf8(byte[] bytes, int offset, int length,
+                                    ObjIntFunction<? super K, ? extends R> function) {
+        checkIntegrity();
+        //Runtime: O(n) due to calling locateText
+        return applyAtLocation(locateText(null, bytes, offset, length), function);
+    }
+
+    /**
+     * Applies a function to the entry at a location found by locate or locateText
+     *
+     * @param index index in the current table, -2 - index in the old table, or -1
+     * @param function function to apply to the entry
+     * @param <R> type of the result
+     * @return the result of the function, or null for -1
+     */
+    @SuppressWarnings("unchecked")
+    private <R> R applyAtLocation(int index, ObjIntFunction<? super K, ? extends R> function) {
+        if (index >= 0) {
+            return function.apply((K) keys[index], values[index]);
+        } else if (index < -1) {
+            return function.apply((K) oldKeys[-2 - index], oldValues[-2 - index]);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value at a location found by locate or locateText
+     *
+     * @param index index in the current table, -2 - index in the old table, or -1
+     * @return the value there, or NO_VALUE for -1
+     */
+    private int valueAtLocation(int index) {
+        if (index >= 0) {
+            return values[index];
+        } else if (index < -1) {
+            return oldValues[-2 - index];
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(K key) {
+        // Runtime: O(n) due to calling get value
+        return getValue(key) != NO_VALUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrimitiveIterator.OfInt getValueIterator() {
+        return new ValueIterator();
+    }
+
+    /**
+     * Creates a spliterator over all values in this dictionary. It splits the slots of the
+     * table into ranges, so the values can feed a parallel IntStream without being boxed.
+     *
+     * @return A spliterator over the values in the dictionary.
+     */
+    public Spliterator.OfInt getValueSpliterator() {
+        return new ValueSpliterator(0, -1, 0, 0);
+    }
+
+    /**
+     * Calls an action with every key and its value, reading the table arrays directly so nothing
+     * is allocated or boxed per entry.
+     *
+     * @param action The action to call with each key and value.
+     * @throws IllegalArgumentException if the action is null
+     * @throws ConcurrentModificationException if the action changes the dictionary
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjIntConsumer<? super K> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action must not be null");
+        }
+        int expectedModCount = modCount;
+        Object[] tableKeys = keys;
+        int[] tableValues = values;
+        //Runtime: O(n), where n is the length of the table
+        for (int index = 0; index < tableKeys.length; index++) {
+            if (isOccupied(tableKeys[index])) {
+                action.accept((K) tableKeys[index], tableValues[index]);
+            }
+        }
+        if (oldKeys != null) {
+            Object[] tableOldKeys = oldKeys;
+            int[] tableOldValues = oldValues;
+            for (int index = 0; index < tableOldKeys.length; index++) {
+                if (isOccupied(tableOldKeys[index])) {
+                    action.accept((K) tableOldKeys[index], tableOldValues[index]);
+                }
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void startValueMigration(int length) {
+        oldValues = values;
+        values = new int[length];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void migrateValue(int oldIndex, int newIndex) {
+        values[newIndex] = oldValues[oldIndex];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void endValueMigration() {
+        oldValues = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void clearValues() {
+        // ints hold no references, so stale values under empty keys can stay
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    String valueToString(boolean inOldTable, int index) {
+        return String.valueOf(inOldTable ? oldValues[index] : values[index]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void writeValue(RecordWriter out, boolean inOldTable, int index) throws IOException {
+        out.field("value", inOldTable ? oldValues[index] : values[index]);
+    }
+
+    private class ValueIterator implements PrimitiveIterator.OfInt {
+        private int currentIndex;
+        private int numberLeft;
+        private final int expectedModCount;
+        private ValueIterator() {
+            currentIndex = 0;
+            numberLeft = numberOfEntries;
+            expectedModCount = modCount;
+        }
+        /**
+         * Returns {@code true} if the iteration has more elements.
+         * (In other words, returns {@code true} if {@link #next} would
+         * return an element rather than throwing an exception.)
+         *
+         * @return {@code true} if the iteration has more elements
+         */
+        @Override
+        public boolean hasNext() {
+            return numberLeft > 0;
+        }
+
+        /**
+         * Returns the next element in the iteration.
+         *
+         * @return the next element in the iteration
+         * @throws NoSuchElementException if the iteration has no more elements
+         * @throws ConcurrentModificationException if the dictionary has changed since the iterator was created
+         */
+        @Override
+        public int nextInt() {
+            int result;
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (hasNext()) {
+                currentIndex = nextOccupiedPosition(currentIndex);
+                if (currentIndex < values.length) {
+                    result = values[currentIndex];
+                } else {
+                    result = oldValues[currentIndex - values.length];
+                }
+                numberLeft--;
+                currentIndex++;
+            } else {
+                throw new NoSuchElementException();
+            }
+            return result;
+        }
+    }
+
+    private class ValueSpliterator extends SlotRange implements Spliterator.OfInt {
+
+        private ValueSpliterator(int origin, int fence, int estimate, int expectedModCount) {
+            super(origin, fence, estimate, expectedModCount);
+        }
+
+        /**
+         * Returns the value at a position, counting through the current table and then through the
+         * table still being migrated
+         *
+         * @param position position of a live slot
+         * @return the value at that position
+         */
+        private int valueAt(int position) {
+            return (position < values.length) ? values[position] : oldValues[position - values.length];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (action == null) {
+                throw new IllegalArgumentException("Action must not be null");
+            }
+            int high = getFence();
+            while (position < high) {
+                int current = position++;
+                if (isOccupied(keyAt(current))) {
+                    action.accept(valueAt(current));
+                    checkForComodification();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            if (action == null) {
+                throw new IllegalArgumentException("Action must not be null");
+            }
+            int high = getFence();
+            //Runtime: O(n), where n is the number of positions in the range
+            for (; position < high; position++) {
+                if (isOccupied(keyAt(position))) {
+                    action.accept(valueAt(position));
+                }
+            }
+            checkForComodification();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Spliterator.OfInt trySplit() {
+            int low = splitOff();
+            return (low < 0) ? null : new ValueSpliterator(low, position, estimate, expectedModCount);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int characteristics() {
+            return characteristics(0);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package Dictionary;
+
+/**
+ * A ProbeListener receives instrumentation events from a HashedDictionary. A dictionary
+ * without a listener skips all reporting, so instrumentation costs nothing when it is off.
+ */
+public interface ProbeListener {
+    /**
+     * Called once for every completed probe sequence.
+     *
+     * @param probeLength       number of slots inspected after the home slot
+     * @param tombstonesSkipped number of removed (available) slots walked past
+     */
+    public void probed(int probeLength, int tombstonesSkipped);
+
+    /**
+     * Called once the hash table has been replaced with a new one. The sizes are equal when a
+     * table full of removed entries was rebuilt rather than enlarged.
+     *
+     * @param oldSize     length of the old hash table
+     * @param newSize     length of the new hash table
+     * @param elapsedNanos time spent on the resize, in nanoseconds
+     */
+    public void resized(int oldSize, int newSize, long elapsedNanos);
+
+    /**
+     * Called whenever the number of available slots changes: an entry is removed and its slot
+     * becomes available, an insert or a migrated entry reuses an available slot, or the dictionary
+     * is cleared. A resize empties the new table of available slots and is reported by resized.
+     *
+     * @param tombstones  number of available slots now in the hash table
+     * @param tableLength length of the hash table
+     */
+    public void tombstonesChanged(int tombstones, int tableLength);
+}
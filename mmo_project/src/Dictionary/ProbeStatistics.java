@@ -0,0 +1,211 @@
+package Dictionary;
+
+import java.util.Arrays;
+
+/**
+ * ProbeStatistics is a ProbeListener that records a probe-length histogram, tombstones
+ * skipped, the tombstone ratio, the longest probe sequence and resize counts and durations so they can be read
+ * programmatically. It is meant for a single dictionary and is not thread-safe.
+ */
+public class ProbeStatistics implements ProbeListener {
+    // probe lengths of HISTOGRAM_SIZE - 1 or more share the last bucket
+    public static final int HISTOGRAM_SIZE = 64;
+
+    private final long[] probeHistogram = new long[HISTOGRAM_SIZE];
+    private long probeSequences;
+    private long totalProbeLength;
+    private long tombstonesSkipped;
+    private int maxProbeLength;
+    private int resizeCount;
+    private int rebuildCount;
+    private double tombstoneRatio;
+    private double maxTombstoneRatio;
+    private long totalResizeNanos;
+    private long maxResizeNanos;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void probed(int probeLength, int tombstonesSkipped) {
+        probeHistogram[Math.min(probeLength, HISTOGRAM_SIZE - 1)]++;
+        probeSequences++;
+        totalProbeLength += probeLength;
+        this.tombstonesSkipped += tombstonesSkipped;
+        if (probeLength > maxProbeLength) {
+            maxProbeLength = probeLength;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void resized(int oldSize, int newSize, long elapsedNanos) {
+        if (newSize == oldSize) {
+            rebuildCount++;
+        } else {
+            resizeCount++;
+        }
+        tombstoneRatio = 0.0;
+        totalResizeNanos += elapsedNanos;
+        if (elapsedNanos > maxResizeNanos) {
+            maxResizeNanos = elapsedNanos;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tombstonesChanged(int tombstones, int tableLength) {
+        tombstoneRatio = (double) tombstones / tableLength;
+        if (tombstoneRatio > maxTombstoneRatio) {
+            maxTombstoneRatio = tombstoneRatio;
+        }
+    }
+
+    /**
+     * Returns the number of probe sequences that had the given length. The last bucket
+     * also counts every longer sequence.
+     *
+     * @param probeLength probe length to look up
+     * @return number of probe sequences with that length
+     */
+    public long getProbeCount(int probeLength) {
+        if (probeLength < 0) {
+            throw new IllegalArgumentException("Probe length must not be negative");
+        }
+        return probeHistogram[Math.min(probeLength, HISTOGRAM_SIZE - 1)];
+    }
+
+    /**
+     * Returns a copy of the probe-length histogram
+     *
+     * @return histogram indexed by probe length
+     */
+    public long[] getProbeHistogram() {
+        return probeHistogram.clone();
+    }
+
+    /**
+     * Returns the number of recorded probe sequences
+     *
+     * @return number of probe sequences
+     */
+    public long getProbeSequences() {
+        return probeSequences;
+    }
+
+    /**
+     * Returns the average probe length over all recorded probe sequences
+     *
+     * @return average probe length, or 0 if nothing was recorded
+     */
+    public double getAverageProbeLength() {
+        return probeSequences == 0 ? 0.0 : (double) totalProbeLength / probeSequences;
+    }
+
+    /**
+     * Returns the longest probe sequence recorded
+     *
+     * @return maximum probe length
+     */
+    public int getMaxProbeLength() {
+        return maxProbeLength;
+    }
+
+    /**
+     * Returns the total number of removed slots walked past while probing
+     *
+     * @return tombstones skipped
+     */
+    public long getTombstonesSkipped() {
+        return tombstonesSkipped;
+    }
+
+    /**
+     * Returns the number of times the hash table was enlarged
+     *
+     * @return resize count
+     */
+    public int getResizeCount() {
+        return resizeCount;
+    }
+
+    /**
+     * Returns the number of times a table full of removed entries was rebuilt at the same size
+     *
+     * @return rebuild count
+     */
+    public int getRebuildCount() {
+        return rebuildCount;
+    }
+
+    /**
+     * Returns the share of the table taken up by removed entries after the last remove
+     *
+     * @return current tombstone ratio
+     */
+    public double getTombstoneRatio() {
+        return tombstoneRatio;
+    }
+
+    /**
+     * Returns the highest tombstone ratio seen
+     *
+     * @return maximum tombstone ratio
+     */
+    public double getMaxTombstoneRatio() {
+        return maxTombstoneRatio;
+    }
+
+    /**
+     * Returns the total time spent resizing, in nanoseconds
+     *
+     * @return total resize duration
+     */
+    public long getTotalResizeNanos() {
+        return totalResizeNanos;
+    }
+
+    /**
+     * Returns the longest single resize, in nanoseconds
+     *
+     * @return maximum resize duration
+     */
+    public long getMaxResizeNanos() {
+        return maxResizeNanos;
+    }
+
+    /**
+     * Clears all recorded statistics
+     */
+    public void reset() {
+        // Runtime: O(1), the histogram has a fixed size
+        Arrays.fill(probeHistogram, 0);
+        probeSequences = 0;
+        totalProbeLength = 0;
+        tombstonesSkipped = 0;
+        maxProbeLength = 0;
+        resizeCount = 0;
+        rebuildCount = 0;
+        tombstoneRatio = 0.0;
+        maxTombstoneRatio = 0.0;
+        totalResizeNanos = 0;
+        maxResizeNanos = 0;
+    }
+
+    /**
+     * Returns a formatted summary of the statistics
+     *
+     * @return summary string
+     */
+    @Override
+    public String toString() {
+        return "Probe sequences: " + probeSequences + ", Average probe length: " + getAverageProbeLength() +
+                ", Max probe length: " + maxProbeLength + ", Tombstones skipped: " + tombstonesSkipped +
+                ", Tombstone ratio: " + tombstoneRatio + ", Resizes: " + resizeCount + ", Rebuilds: " + rebuildCount +
+                ", Resize time (ns): " + totalResizeNanos;
+    }
+}
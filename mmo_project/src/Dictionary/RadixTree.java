@@ -0,0 +1,329 @@
+package Dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The RadixTree class is a sorted set of strings that finds the strings starting with a prefix.
+ * Each edge of the tree is labelled with a run of characters, and a node with a single child is
+ * merged into that child, so the tree has at most two nodes per string however long the strings are.
+ * The children of a node are kept sorted by their first character and found by binary search.
+ * A prefix search walks down the prefix and then visits the tree below it in order, stopping after the
+ * requested number of strings, so it never looks at strings that do not match and stops early.
+ */
+public class RadixTree implements RadixTreeInterface {
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final char[] EMPTY_LABEL = new char[0];
+
+    private final Node root = new Node(EMPTY_LABEL);
+    private int size;
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the key is null
+     */
+    @Override
+    public boolean add(String key) {
+        checkKey(key);
+        Node node = root;
+        int offset = 0;
+        //Runtime: O(l log a), where l is the length of the key and a the size of the alphabet
+        while (offset < key.length()) {
+            int at = node.find(key.charAt(offset));
+            if (at < 0) {
+                Node leaf = new Node(key.substring(offset).toCharArray());
+                leaf.terminal = true;
+                node.insertChild(-at - 1, leaf);
+                size++;
+                return true;
+            }
+            Node child = node.children[at];
+            int common = commonLength(child.label, key, offset);
+            if (common < child.label.length) {
+                // the key leaves this edge part way, so the edge is split where it does
+                Node middle = new Node(Arrays.copyOf(child.label, common));
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                middle.insertChild(0, child);
+                node.children[at] = middle;
+                child = middle;
+            }
+            node = child;
+            offset += common;
+        }
+        if (node.terminal) {
+            return false;
+        }
+        node.terminal = true;
+        size++;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(String key) {
+        if (key == null) {
+            return false;
+        }
+        Node parent = null;
+        int parentAt = -1;
+        Node node = root;
+        int offset = 0;
+        //Runtime: O(l log a), where l is the length of the key and a the size of the alphabet
+        while (offset < key.length()) {
+            int at = node.find(key.charAt(offset));
+            if (at < 0) {
+                return false;
+            }
+            Node child = node.children[at];
+            if (commonLength(child.label, key, offset) < child.label.length) {
+                return false;
+            }
+            parent = node;
+            parentAt = at;
+            node = child;
+            offset += child.label.length;
+        }
+        if (!node.terminal) {
+            return false;
+        }
+        node.terminal = false;
+        size--;
+        // keep every node other than the root either a string or a branch
+        if (node != root) {
+            if (node.childCount == 0) {
+                parent.removeChild(parentAt);
+                if (parent != root && !parent.terminal && parent.childCount == 1) {
+                    parent.mergeWithChild();
+                }
+            } else if (node.childCount == 1) {
+                node.mergeWithChild();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(String key) {
+        if (key == null) {
+            return false;
+        }
+        Node node = root;
+        int offset = 0;
+        //Runtime: O(l log a), where l is the length of the key and a the size of the alphabet
+        while (offset < key.length()) {
+            int at = node.find(key.charAt(offset));
+            if (at < 0) {
+                return false;
+            }
+            node = node.children[at];
+            if (commonLength(node.label, key, offset) < node.label.length) {
+                return false;
+            }
+            offset += node.label.length;
+        }
+        return node.terminal;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Strings are ordered as by String.compareTo.
+     *
+     * @throws IllegalArgumentException if the prefix is null or the limit is negative
+     */
+    @Override
+    public List<String> findByPrefix(String prefix, int limit) {
+        checkKey(prefix);
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative");
+        }
+        List<String> result = new ArrayList<>(Math.min(limit, size));
+        if (limit == 0) {
+            return result;
+        }
+        StringBuilder path = new StringBuilder(prefix.length() + 16);
+        Node node = root;
+        int offset = 0;
+        //Runtime: O(p log a + k l), where p is the length of the prefix, k the number of results
+        //and l the length of the results
+        while (offset < prefix.length()) {
+            int at = node.find(prefix.charAt(offset));
+            if (at < 0) {
+                return result;
+            }
+            Node child = node.children[at];
+            int common = commonLength(child.label, prefix, offset);
+            // the prefix may end inside an edge, but must not leave it
+            if (common < child.label.length && offset + common < prefix.length()) {
+                return result;
+            }
+            path.append(child.label);
+            node = child;
+            offset += child.label.length;
+        }
+        collect(node, path, result, limit);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        root.children = NO_CHILDREN;
+        root.childCount = 0;
+        root.terminal = false;
+        size = 0;
+    }
+
+    /**
+     * Adds the strings of a node and the nodes below it to a list in order, until the list is full
+     *
+     * @param node node to start from
+     * @param path string spelled by the edges down to the node, restored before returning
+     * @param result list to add to, holding fewer than limit strings
+     * @param limit size at which the list is full
+     */
+    private static void collect(Node node, StringBuilder path, List<String> result, int limit) {
+        // a string comes before every longer string that starts with it
+        if (node.terminal) {
+            result.add(path.toString());
+        }
+        for (int at = 0; at < node.childCount && result.size() < limit; at++) {
+            Node child = node.children[at];
+            int length = path.length();
+            path.append(child.label);
+            collect(child, path, result, limit);
+            path.setLength(length);
+        }
+    }
+
+    /**
+     * Returns the number of leading characters a label shares with a key from the given offset
+     *
+     * @param label edge label
+     * @param key key to compare
+     * @param offset position in the key to compare from
+     * @return length of the common prefix
+     */
+    private static int commonLength(char[] label, String key, int offset) {
+        int length = Math.min(label.length, key.length() - offset);
+        int common = 0;
+        while (common < length && label[common] == key.charAt(offset + common)) {
+            common++;
+        }
+        return common;
+    }
+
+    /**
+     * Checks that a key is not null
+     *
+     * @param key key to check
+     * @throws IllegalArgumentException if the key is null
+     */
+    private static void checkKey(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key must not be null");
+        }
+    }
+
+    /**
+     * A Node of the tree, holding the label of the edge that leads to it and its children sorted by
+     * the first character of their labels.
+     */
+    private static final class Node {
+        char[] label;
+        Node[] children = NO_CHILDREN;
+        int childCount;
+        // true if the string spelled down to this node is in the tree
+        boolean terminal;
+
+        Node(char[] label) {
+            this.label = label;
+        }
+
+        /**
+         * Finds the child whose label starts with a character
+         *
+         * @param first first character of the label
+         * @return index of the child, or -(insertion point) - 1 if there is none
+         */
+        int find(char first) {
+            int low = 0;
+            int high = childCount - 1;
+            //Runtime: O(log c), where c is the number of children
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char current = children[middle].label[0];
+                if (current < first) {
+                    low = middle + 1;
+                } else if (current > first) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+
+        /**
+         * Inserts a child, growing the child array by half when it is full
+         *
+         * @param at index to insert at
+         * @param child child to insert
+         */
+        void insertChild(int at, Node child) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, childCount + (childCount >> 1) + 1);
+            }
+            System.arraycopy(children, at, children, at + 1, childCount - at);
+            children[at] = child;
+            childCount++;
+        }
+
+        /**
+         * Removes a child
+         *
+         * @param at index of the child
+         */
+        void removeChild(int at) {
+            System.arraycopy(children, at + 1, children, at, childCount - at - 1);
+            children[--childCount] = null;
+        }
+
+        /**
+         * Merges the only child into this node, joining their labels
+         */
+        void mergeWithChild() {
+            Node only = children[0];
+            char[] joined = Arrays.copyOf(label, label.length + only.label.length);
+            System.arraycopy(only.label, 0, joined, label.length, only.label.length);
+            label = joined;
+            children = only.children;
+            childCount = only.childCount;
+            terminal = only.terminal;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package Dictionary;
+
+import java.util.List;
+
+//radix tree interface defines a sorted set of strings that can be searched by prefix
+public interface RadixTreeInterface {
+    /** Adds a string to this tree.
+     @param key  The string to add.
+     @return  True if the string was added, false if it was already in the tree. */
+    public boolean add(String key);
+
+    /** Removes a string from this tree.
+     @param key  The string to remove.
+     @return  True if the string was removed, false if it was not in the tree. */
+    public boolean remove(String key);
+
+    /** Sees whether a string is in this tree.
+     @param key  The string to look for.
+     @return  True if the string is in the tree. */
+    public boolean contains(String key);
+
+    /** Finds the first strings in sorted order that start with a prefix.
+     @param prefix  The prefix the strings must start with.
+     @param limit   The greatest number of strings to return.
+     @return  The matching strings in ascending order, at most limit of them. */
+    public List<String> findByPrefix(String prefix, int limit);
+
+    /** Counts the strings in this tree.
+     @return  The number of strings in the tree. */
+    public int getSize();
+
+    /** Sees whether this tree is empty.
+     @return  True if the tree holds no strings. */
+    public boolean isEmpty();
+
+    /** Removes all strings from this tree. */
+    public void clear();
+}
@@ -0,0 +1,412 @@
+package Dictionary;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The RecordWriter writes records as CSV or JSON Lines to a Writer or a WritableByteChannel.
+ * Fields are copied character by character into one reusable buffer, and numbers are written digit by
+ * digit, so writing a record allocates nothing. The buffer is handed to the Writer, or encoded as UTF-8
+ * into a reusable byte buffer for the channel, only when it fills up or is flushed, so a long export
+ * makes a few large writes instead of one per record.
+ * A channel must be in blocking mode. The writer does not close what it writes to.
+ */
+public final class RecordWriter implements Flushable {
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    // longest run of characters appended at once without checking for room: an int with its sign
+    private static final int NUMBER_CHARACTERS = 11;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final ExportFormat format;
+    private final Writer writer;
+    private final WritableByteChannel channel;
+    private final char[] chars;
+    private int count;
+    // views for encoding into the channel, null when writing to a Writer
+    private final CharBuffer charView;
+    private final ByteBuffer bytes;
+    private final CharsetEncoder encoder;
+    // true until the first field of the current record has been written
+    private boolean firstField;
+
+    /**
+     * Creates a record writer that writes to a Writer
+     *
+     * @param writer writer to write to
+     * @param format format of the records
+     * @throws IllegalArgumentException if the writer or format is null
+     */
+    public RecordWriter(Writer writer, ExportFormat format) {
+        this(writer, null, format);
+    }
+
+    /**
+     * Creates a record writer that writes UTF-8 to a blocking channel
+     *
+     * @param channel channel to write to
+     * @param format format of the records
+     * @throws IllegalArgumentException if the channel or format is null
+     */
+    public RecordWriter(WritableByteChannel channel, ExportFormat format) {
+        this(null, channel, format);
+    }
+
+    private RecordWriter(Writer writer, WritableByteChannel channel, ExportFormat format) {
+        if ((writer == null && channel == null) || format == null) {
+            throw new IllegalArgumentException("Destination and format must not be null");
+        }
+        this.writer = writer;
+        this.channel = channel;
+        this.format = format;
+        chars = new char[DEFAULT_CAPACITY];
+        if (channel != null) {
+            charView = CharBuffer.wrap(chars);
+            bytes = ByteBuffer.allocate(DEFAULT_CAPACITY);
+            encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        } else {
+            charView = null;
+            bytes = null;
+            encoder = null;
+        }
+    }
+
+    /**
+     * Returns the format records are written in
+     *
+     * @return format of the records
+     */
+    public ExportFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Writes the line naming the columns if the format has one, which only CSV does
+     *
+     * @param columns names of the columns
+     * @throws IOException if the destination can not be written
+     */
+    public void writeHeader(String... columns) throws IOException {
+        if (format == ExportFormat.CSV) {
+            for (int column = 0; column < columns.length; column++) {
+                if (column > 0) {
+                    append(',');
+                }
+                appendCsv(columns[column]);
+            }
+            append('\n');
+        }
+    }
+
+    /**
+     * Starts a new record
+     *
+     * @throws IOException if the destination can not be written
+     */
+    public void startRecord() throws IOException {
+        firstField = true;
+        if (format == ExportFormat.JSON_LINES) {
+            append('{');
+        }
+    }
+
+    /**
+     * Writes a text field of the current record
+     *
+     * @param name name of the field
+     * @param value value of the field, or null for an empty CSV field and a JSON null
+     * @throws IOException if the destination can not be written
+     */
+    public void field(String name, CharSequence value) throws IOException {
+        startField(name);
+        if (format == ExportFormat.CSV) {
+            if (value != null) {
+                appendCsv(value);
+            }
+        } else if (value == null) {
+            append("null");
+        } else {
+            appendJson(value);
+        }
+    }
+
+    /**
+     * Writes a whole number field of the current record
+     *
+     * @param name name of the field
+     * @param value value of the field
+     * @throws IOException if the destination can not be written
+     */
+    public void field(String name, long value) throws IOException {
+        startField(name);
+        appendNumber(value);
+    }
+
+    /**
+     * Writes a decimal field of the current record, given as a whole number of units of a power of ten,
+     * so 7 with a scale of 1 is written as 0.7
+     *
+     * @param name name of the field
+     * @param unscaledValue value of the field times ten to the power of the scale
+     * @param scale number of digits after the decimal point, from 1 to 18
+     * @throws IOException if the destination can not be written
+     * @throws IllegalArgumentException if the scale is out of range
+     */
+    public void field(String name, long unscaledValue, int scale) throws IOException {
+        if (scale < 1 || scale > 18) {
+            throw new IllegalArgumentException("Scale must be from 1 to 18");
+        }
+        startField(name);
+        long unit = 1;
+        for (int digit = 0; digit < scale; digit++) {
+            unit *= 10;
+        }
+        if (unscaledValue < 0) {
+            append('-');
+        }
+        // the quotient and remainder of a negative value are negated separately so Long.MIN_VALUE works
+        long whole = Math.abs(unscaledValue / unit);
+        long fraction = Math.abs(unscaledValue % unit);
+        appendNumber(whole);
+        append('.');
+        for (long place = unit / 10; place > 0; place /= 10) {
+            append((char) ('0' + (fraction / place) % 10));
+        }
+    }
+
+    /**
+     * Ends the current record
+     *
+     * @throws IOException if the destination can not be written
+     */
+    public void endRecord() throws IOException {
+        if (format == ExportFormat.JSON_LINES) {
+            append('}');
+        }
+        append('\n');
+    }
+
+    /**
+     * Copies complete records that were already formatted in the same format, such as those another
+     * RecordWriter wrote to a CharArrayWriter
+     *
+     * @param records characters of the formatted records, each ending with a line break
+     * @param offset index of the first character
+     * @param length number of characters
+     * @throws IOException if the destination can not be written
+     */
+    public void appendRecords(char[] records, int offset, int length) throws IOException {
+        //Runtime: O(n), where n is the number of characters, copied a buffer at a time
+        while (length > 0) {
+            if (count == chars.length) {
+                drain(false);
+            }
+            int copied = Math.min(length, chars.length - count);
+            System.arraycopy(records, offset, chars, count, copied);
+            count += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+
+    /**
+     * Writes everything buffered so far and flushes the destination
+     *
+     * @throws IOException if the destination can not be written
+     */
+    @Override
+    public void flush() throws IOException {
+        drain(true);
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Writes the separator and, for JSON, the key in front of a field
+     *
+     * @param name name of the field
+     * @throws IOException if the destination can not be written
+     */
+    private void startField(String name) throws IOException {
+        if (!firstField) {
+            append(',');
+        }
+        firstField = false;
+        if (format == ExportFormat.JSON_LINES) {
+            appendJson(name);
+            append(':');
+        }
+    }
+
+    /**
+     * Appends a CSV field, quoting it if it holds a comma, quote or line break
+     *
+     * @param value text of the field
+     * @throws IOException if the destination can not be written
+     */
+    private void appendCsv(CharSequence value) throws IOException {
+        boolean quoted = false;
+        //Runtime: O(n), where n is the length of the value
+        for (int index = 0; index < value.length() && !quoted; index++) {
+            char c = value.charAt(index);
+            quoted = (c == ',') || (c == '"') || (c == '\n') || (c == '\r');
+        }
+        if (!quoted) {
+            append(value);
+            return;
+        }
+        append('"');
+        for (int index = 0; index < value.length(); index++) {
+            char c = value.charAt(index);
+            if (c == '"') {
+                append('"');
+            }
+            append(c);
+        }
+        append('"');
+    }
+
+    /**
+     * Appends a JSON string, escaping quotes, backslashes and control characters
+     *
+     * @param value text of the string
+     * @throws IOException if the destination can not be written
+     */
+    private void appendJson(CharSequence value) throws IOException {
+        append('"');
+        //Runtime: O(n), where n is the length of the value
+        for (int index = 0; index < value.length(); index++) {
+            char c = value.charAt(index);
+            if (c == '"' || c == '\\') {
+                append('\\');
+                append(c);
+            } else if (c < 0x20) {
+                append('\\');
+                append('u');
+                append('0');
+                append('0');
+                append(HEX_DIGITS[c >> 4]);
+                append(HEX_DIGITS[c & 0xf]);
+            } else {
+                append(c);
+            }
+        }
+        append('"');
+    }
+
+    /**
+     * Appends the decimal digits of a number
+     *
+     * @param value number to append
+     * @throws IOException if the destination can not be written
+     */
+    private void appendNumber(long value) throws IOException {
+        if (value < 0) {
+            append('-');
+            if (value == Long.MIN_VALUE) {
+                append("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        if (chars.length - count < 2 * NUMBER_CHARACTERS) {
+            drain(false);
+        }
+        // digits are written from the end, after counting them
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int end = count + digits;
+        for (int index = end - 1; index >= count; index--) {
+            chars[index] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        count = end;
+    }
+
+    /**
+     * Appends the characters of a text
+     *
+     * @param text text to append
+     * @throws IOException if the destination can not be written
+     */
+    private void append(CharSequence text) throws IOException {
+        //Runtime: O(n), where n is the length of the text
+        for (int index = 0; index < text.length(); index++) {
+            append(text.charAt(index));
+        }
+    }
+
+    /**
+     * Appends one character, writing out the buffer first if it is full
+     *
+     * @param c character to append
+     * @throws IOException if the destination can not be written
+     */
+    private void append(char c) throws IOException {
+        if (count == chars.length) {
+            drain(false);
+        }
+        chars[count++] = c;
+    }
+
+    /**
+     * Writes the buffered characters to the destination. When encoding for a channel, a high surrogate
+     * at the end of the buffer is kept back until its low surrogate arrives, unless this is the end of
+     * the input.
+     *
+     * @param endOfInput true if no more characters follow for now
+     * @throws IOException if the destination can not be written
+     */
+    private void drain(boolean endOfInput) throws IOException {
+        if (writer != null) {
+            writer.write(chars, 0, count);
+            count = 0;
+            return;
+        }
+        charView.limit(count).position(0);
+        //Runtime: O(n), where n is the number of buffered characters
+        while (true) {
+            CoderResult result = encoder.encode(charView, bytes, endOfInput);
+            if (result.isOverflow()) {
+                writeBytes();
+            } else {
+                break;
+            }
+        }
+        if (endOfInput) {
+            while (encoder.flush(bytes).isOverflow()) {
+                writeBytes();
+            }
+            encoder.reset();
+        }
+        int left = charView.remaining();
+        System.arraycopy(chars, charView.position(), chars, 0, left);
+        count = left;
+        writeBytes();
+    }
+
+    /**
+     * Writes the encoded bytes to the channel
+     *
+     * @throws IOException if the channel can not be written
+     */
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
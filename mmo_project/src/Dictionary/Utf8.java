@@ -0,0 +1,129 @@
+package Dictionary;
+
+/**
+ * Utf8 decodes UTF-8 bytes one code point at a time, so keys received as bytes can be hashed and compared
+ * against stored String keys without building a String.
+ */
+final class Utf8 {
+    // code point given for a malformed sequence, as a String decoded from the bytes would hold
+    static final int REPLACEMENT = 0xfffd;
+
+    private Utf8() {
+    }
+
+    /**
+     * Decodes the code point starting at an index. Overlong forms, encoded surrogates, code points past
+     * U+10FFFF and sequences cut short by the end are malformed.
+     *
+     * @param bytes bytes to decode
+     * @param index index of the first byte of the code point
+     * @param end index after the last byte that may be read
+     * @return the code point shifted left by 3 with its byte count in the low 3 bits, or -1 if the
+     * sequence is malformed
+     */
+    static int decode(byte[] bytes, int index, int end) {
+        int first = bytes[index];
+        if (first >= 0) {
+            return (first << 3) | 1;
+        }
+        int count;
+        int codePoint;
+        int min;
+        if ((first & 0xe0) == 0xc0) {
+            count = 2;
+            codePoint = first & 0x1f;
+            min = 0x80;
+        } else if ((first & 0xf0) == 0xe0) {
+            count = 3;
+            codePoint = first & 0x0f;
+            min = 0x800;
+        } else if ((first & 0xf8) == 0xf0) {
+            count = 4;
+            codePoint = first & 0x07;
+            min = 0x10000;
+        } else {
+            return -1;
+        }
+        if (end - index < count) {
+            return -1;
+        }
+        //Runtime: O(1), at most three continuation bytes
+        for (int next = index + 1; next < index + count; next++) {
+            int continuation = bytes[next];
+            if ((continuation & 0xc0) != 0x80) {
+                return -1;
+            }
+            codePoint = (codePoint << 6) | (continuation & 0x3f);
+        }
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            return -1;
+        }
+        return (codePoint << 3) | count;
+    }
+
+    /**
+     * Returns the hash code a String decoded from well-formed UTF-8 bytes would have. Each malformed
+     * byte counts as a replacement character, since malformed bytes match no key anyway.
+     *
+     * @param bytes bytes of the text
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return the String hash code of the text
+     */
+    static int stringHashCode(byte[] bytes, int offset, int length) {
+        int hash = 0;
+        int end = offset + length;
+        //Runtime: O(n), where n is the number of bytes
+        for (int index = offset; index < end; ) {
+            int decoded = decode(bytes, index, end);
+            int codePoint = (decoded < 0) ? REPLACEMENT : decoded >>> 3;
+            index += (decoded < 0) ? 1 : decoded & 7;
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                hash = 31 * hash + codePoint;
+            } else {
+                hash = 31 * hash + Character.highSurrogate(codePoint);
+                hash = 31 * hash + Character.lowSurrogate(codePoint);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Sees whether a String holds exactly the text of some UTF-8 bytes. Malformed bytes match no String.
+     *
+     * @param key String to compare
+     * @param bytes bytes of the text
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return true if the String has the same characters as the bytes
+     */
+    static boolean equals(String key, byte[] bytes, int offset, int length) {
+        // every character takes one to three bytes, so most lengths rule a match out straight away
+        int keyLength = key.length();
+        if (keyLength > length || 3L * keyLength < length) {
+            return false;
+        }
+        int end = offset + length;
+        int position = 0;
+        //Runtime: O(n), where n is the number of bytes
+        for (int index = offset; index < end; ) {
+            int decoded = decode(bytes, index, end);
+            if (decoded < 0) {
+                return false;
+            }
+            int codePoint = decoded >>> 3;
+            index += decoded & 7;
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                if (position >= keyLength || key.charAt(position++) != codePoint) {
+                    return false;
+                }
+            } else if (position + 1 >= keyLength
+                    || key.charAt(position++) != Character.highSurrogate(codePoint)
+                    || key.charAt(position++) != Character.lowSurrogate(codePoint)) {
+                return false;
+            }
+        }
+        return position == keyLength;
+    }
+}
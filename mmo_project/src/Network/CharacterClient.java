@@ -0,0 +1,309 @@
+package Network;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The CharacterClient reaches a CharacterDatabase served by a CharacterServer in another process.
+ * The single request methods send one request and wait for its answer. execute sends a whole RequestBatch,
+ * packing its requests into frames and pipelining the frames: it keeps sending while earlier frames are
+ * still being answered, up to Protocol.MAX_IN_FLIGHT_REQUESTS unanswered requests, so a large batch costs
+ * about as many round trips as it has windows of requests rather than one per request.
+ * A client holds one connection and must be used by one thread at a time.
+ */
+public class CharacterClient implements Closeable {
+    private static final int BUFFER_BYTES = 1 << 16;
+    // requests packed into one frame
+    private static final int FRAME_REQUESTS = 1024;
+
+    private final SocketChannel channel;
+    private ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+    // received bytes not yet read, kept ready for reading
+    private ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES).flip();
+    // batch reused by the single request methods
+    private final RequestBatch single = new RequestBatch();
+    // request count of each frame sent but not yet answered, oldest first
+    private final int[] frameSizes = new int[Protocol.MAX_IN_FLIGHT_REQUESTS];
+
+    /**
+     * Connects to a server
+     *
+     * @param address address of the server
+     * @throws IOException if the connection can not be made
+     */
+    public CharacterClient(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    /**
+     * Adds a character, replacing the character with the same name if there is one
+     *
+     * @param name name of character
+     * @param height height of character
+     * @param weight weight of character
+     * @param moralAlign moral alignment of character
+     * @throws IOException if the server can not be reached
+     * @throws IllegalArgumentException if the server rejects the attributes
+     * @throws IllegalStateException if the request fails on the server
+     */
+    public void addCharacter(String name, int height, int weight, double moralAlign) throws IOException {
+        single.clear();
+        executeSingle(single.add(name, height, weight, moralAlign));
+    }
+
+    /**
+     * Removes a character. Nothing happens if there is no character with the given name.
+     *
+     * @param name name of character to be removed
+     * @throws IOException if the server can not be reached
+     * @throws IllegalStateException if the request fails on the server
+     */
+    public void removeCharacter(String name) throws IOException {
+        single.clear();
+        executeSingle(single.remove(name));
+    }
+
+    /**
+     * Returns a copy of a character's attributes
+     *
+     * @param name name of character
+     * @return the character, or null if there is none with the name
+     * @throws IOException if the server can not be reached
+     * @throws IllegalStateException if the request fails on the server
+     */
+    public CharacterRecord getCharacter(String name) throws IOException {
+        single.clear();
+        int index = single.get(name);
+        executeSingle(index);
+        return single.getCharacter(index);
+    }
+
+    /**
+     * Heals a character
+     *
+     * @param name name of character
+     * @param healAmount amount to be healed
+     * @return true if the character was found
+     * @throws IOException if the server can not be reached
+     * @throws IllegalArgumentException if the server rejects the amount
+     * @throws IllegalStateException if the request fails on the server
+     */
+    public boolean heal(String name, int healAmount) throws IOException {
+        single.clear();
+        return executeSingle(single.heal(name, healAmount));
+    }
+
+    /**
+     * Injures a character
+     *
+     * @param name name of character
+     * @param injureAmount amount to be injured
+     * @return true if the character was found
+     * @throws IOException if the server can not be reached
+     * @throws IllegalArgumentException if the server rejects the amount
+     * @throws IllegalStateException if the request fails on the server
+     */
+    public boolean injure(String name, int injureAmount) throws IOException {
+        single.clear();
+        return executeSingle(single.injure(name, injureAmount));
+    }
+
+    /**
+     * Changes a character's moral alignment
+     *
+     * @param name name of character
+     * @param moralAlign amount to change the moral alignment by
+     * @return true if the character was found
+     * @throws IOException if the server can not be reached
+     * @throws IllegalArgumentException if the server rejects the change
+     * @throws IllegalStateException if the request fails on the server
+     */
+    public boolean change(String name, double moralAlign) throws IOException {
+        single.clear();
+        return executeSingle(single.change(name, moralAlign));
+    }
+
+    /**
+     * Sends every request of a batch and reads every response into it. Requests are carried out in
+     * the order they were added. A rejected request does not stop the ones after it; its status and
+     * message are in the batch.
+     *
+     * @param batch batch to execute
+     * @throws IOException if the server can not be reached or answers with a malformed frame
+     * @throws IllegalArgumentException if the batch is null
+     */
+    public void execute(RequestBatch batch) throws IOException {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch must not be null");
+        }
+        int size = batch.getSize();
+        int sent = 0;
+        int received = 0;
+        // frames in flight are kept in a ring of their request counts
+        int firstFrame = 0;
+        int framesInFlight = 0;
+        //Runtime: O(n), where n is the number of requests
+        while (received < size) {
+            if (sent < size && sent - received < Protocol.MAX_IN_FLIGHT_REQUESTS) {
+                int frameSize = writeFrame(batch, sent, received + Protocol.MAX_IN_FLIGHT_REQUESTS);
+                frameSizes[(firstFrame + framesInFlight++) % frameSizes.length] = frameSize;
+                sent += frameSize;
+                // keep filling the output buffer while the window allows, and send it as one write
+                if (sent < size && sent - received < Protocol.MAX_IN_FLIGHT_REQUESTS
+                        && out.position() < BUFFER_BYTES) {
+                    continue;
+                }
+                send();
+            } else {
+                int frameSize = frameSizes[firstFrame];
+                readFrame(batch, received, frameSize);
+                firstFrame = (firstFrame + 1) % frameSizes.length;
+                framesInFlight--;
+                received += frameSize;
+            }
+        }
+    }
+
+    /**
+     * Closes the connection
+     *
+     * @throws IOException if the connection can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Executes the single request of the reused batch and turns a rejection into an exception
+     *
+     * @param index index of the request
+     * @return true if the request found its character
+     * @throws IOException if the server can not be reached
+     */
+    private boolean executeSingle(int index) throws IOException {
+        execute(single);
+        ResponseStatus status = single.getStatus(index);
+        if (status == ResponseStatus.INVALID) {
+            throw new IllegalArgumentException(single.getMessage(index));
+        }
+        if (status == ResponseStatus.FAILED) {
+            throw new IllegalStateException(single.getMessage(index));
+        }
+        return status == ResponseStatus.OK;
+    }
+
+    /**
+     * Encodes a frame of requests into the output buffer, as many as fit in one frame
+     *
+     * @param batch batch holding the requests
+     * @param from index of the first request
+     * @param limit index the frame must end before, at most
+     * @return number of requests in the frame
+     */
+    private int writeFrame(RequestBatch batch, int from, int limit) {
+        int to = Math.min(Math.min(batch.getSize(), limit), from + FRAME_REQUESTS);
+        int start = batch.getStart(from);
+        // a frame is cut short where its bytes would pass the largest frame
+        //Runtime: O(r), where r is the number of requests in the frame
+        for (int index = from + 1; index < to; index++) {
+            if (batch.getEnd(index) - start + 2 > Protocol.MAX_FRAME_BYTES) {
+                to = index;
+            }
+        }
+        int bytes = batch.getEnd(to - 1) - start;
+        if (out.remaining() < bytes + Protocol.FRAME_HEADER_BYTES) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2,
+                    out.position() + bytes + Protocol.FRAME_HEADER_BYTES));
+            larger.put(out.flip());
+            out = larger;
+        }
+        out.putInt(bytes + 2);
+        out.putShort((short) (to - from));
+        out.put(batch.getEncoded(), start, bytes);
+        return to - from;
+    }
+
+    /**
+     * Writes the whole output buffer to the server
+     *
+     * @throws IOException if the server can not be reached
+     */
+    private void send() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Reads the answer to the oldest frame in flight into a batch
+     *
+     * @param batch batch the frame's requests are from
+     * @param from index of the first request in the frame
+     * @param frameSize number of requests in the frame
+     * @throws IOException if the server can not be reached or the frame is malformed
+     */
+    private void readFrame(RequestBatch batch, int from, int frameSize) throws IOException {
+        fill(4);
+        int length = in.getInt();
+        if (length < 2 || length > Protocol.MAX_FRAME_BYTES) {
+            throw new ProtocolException("Response frame of " + length + " bytes");
+        }
+        fill(length);
+        int end = in.position() + length;
+        int limit = in.limit();
+        in.limit(end);
+        try {
+            if (Short.toUnsignedInt(in.getShort()) != frameSize) {
+                throw new ProtocolException("Response frame does not answer every request of its frame");
+            }
+            //Runtime: O(r), where r is the number of requests in the frame
+            for (int index = from; index < from + frameSize; index++) {
+                batch.readResponse(index, in);
+            }
+            if (in.hasRemaining()) {
+                throw new ProtocolException("Response frame is longer than its responses");
+            }
+        } catch (RuntimeException e) {
+            // a response that runs past its frame
+            throw new ProtocolException("Malformed response frame: " + e);
+        } finally {
+            in.limit(limit);
+        }
+    }
+
+    /**
+     * Reads from the server until the input buffer holds at least the given number of bytes
+     *
+     * @param bytes number of bytes needed
+     * @throws IOException if the server can not be reached or closes the connection
+     */
+    private void fill(int bytes) throws IOException {
+        if (in.remaining() >= bytes) {
+            return;
+        }
+        if (in.capacity() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(in.capacity() * 2, bytes));
+            larger.put(in);
+            in = larger;
+        } else {
+            in.compact();
+        }
+        //Runtime: O(b), where b is the number of bytes needed
+        while (in.position() < bytes) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Server closed the connection");
+            }
+        }
+        in.flip();
+    }
+}
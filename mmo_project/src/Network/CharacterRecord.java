@@ -0,0 +1,77 @@
+package Network;
+
+/**
+ * A CharacterRecord is a copy of a character's attributes as a CharacterServer sent them. It does not
+ * change when the character on the server does.
+ */
+public final class CharacterRecord {
+    private final String name;
+    private final int height;
+    private final int weight;
+    private final int health;
+    private final double moralAlign;
+
+    CharacterRecord(String name, int height, int weight, int health, double moralAlign) {
+        this.name = name;
+        this.height = height;
+        this.weight = weight;
+        this.health = health;
+        this.moralAlign = moralAlign;
+    }
+
+    /**
+     * Returns the name of the character
+     *
+     * @return name of character
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the height of the character
+     *
+     * @return height of character
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the weight of the character
+     *
+     * @return weight of character
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns the health of the character, from 0 to 100
+     *
+     * @return health of character
+     */
+    public int getHealth() {
+        return health;
+    }
+
+    /**
+     * Returns the moral alignment of the character, from 0.0 to 1.0
+     *
+     * @return moral alignment of character
+     */
+    public double getMoralAlign() {
+        return moralAlign;
+    }
+
+    /**
+     * Returns a formatted string of the character's stats
+     *
+     * @return the character as a string
+     */
+    @Override
+    public String toString() {
+        return "Name: " + name + ", Height: " + height + ", Weight: " + weight + ", Health: " +
+                health + " Moral Alignment: " + moralAlign;
+    }
+}
@@ -0,0 +1,464 @@
+package Network;
+
+import CharacterStuff.CharacterDatabaseInterface;
+import CharacterStuff.CharacterInterface;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The CharacterServer serves a CharacterDatabase over TCP, so game frontends in other processes can add,
+ * remove, get, heal, injure and change characters. One thread runs a Selector over every connection: it
+ * reads whatever has arrived, carries out every complete frame in order, and writes the answers back in
+ * as few writes as it can. Since a client may send many frames without waiting, and every frame may hold
+ * many requests, a busy frontend pays for a system call per buffer rather than per request.
+ * Every request is carried out on the server thread, so a CharacterDatabase, which allows one writer,
+ * may be served as long as no other thread adds or removes its characters.
+ */
+public class CharacterServer implements Closeable {
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final CharacterDatabaseInterface database;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread thread;
+    private volatile boolean closed;
+    // written by the server thread only
+    private volatile long requestCount;
+    private volatile int connectionCount;
+
+    /**
+     * Creates a server for a database and binds it to an address. The server answers nothing until
+     * it is started.
+     *
+     * @param database database to serve
+     * @param address address to listen on, with port 0 for any free port
+     * @throws IOException if the address can not be bound
+     * @throws IllegalArgumentException if the database or address is null
+     */
+    public CharacterServer(CharacterDatabaseInterface database, InetSocketAddress address) throws IOException {
+        if (database == null || address == null) {
+            throw new IllegalArgumentException("Database and address must not be null");
+        }
+        this.database = database;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        thread = new Thread(this::run, "character-server");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts answering requests on a thread of the server's own
+     *
+     * @throws IllegalStateException if the server has been started or closed
+     */
+    public void start() {
+        if (closed || thread.getState() != Thread.State.NEW) {
+            throw new IllegalStateException("Server can only be started once");
+        }
+        thread.start();
+    }
+
+    /**
+     * Returns the address the server listens on, with the port it was given if it asked for any
+     *
+     * @return address of the server
+     */
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the number of requests answered so far
+     *
+     * @return number of requests
+     */
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Returns the number of open connections
+     *
+     * @return number of connections
+     */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * Stops the server and closes every connection, waiting for the server thread to finish
+     *
+     * @throws IOException if the listening socket can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        selector.wakeup();
+        if (thread.getState() != Thread.State.NEW) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeAll();
+    }
+
+    /**
+     * Runs the selector loop until the server is closed
+     */
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select(this::handle);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * Accepts a connection or moves a connection's bytes along, closing it if it fails
+     *
+     * @param key key that is ready
+     */
+    private void handle(SelectionKey key) {
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.write();
+            }
+        } catch (IOException e) {
+            // the client went away or broke the protocol, and other clients are not affected
+            connection.close();
+        }
+    }
+
+    /**
+     * Accepts every waiting connection
+     */
+    private void accept() {
+        //Runtime: O(c), where c is the number of waiting connections
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                return;
+            }
+            if (channel == null) {
+                return;
+            }
+            Connection connection = new Connection(channel);
+            connectionCount++;
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (IOException e) {
+                // a connection that fails while being accepted is dropped
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Closes every connection, the listening socket and the selector
+     */
+    private synchronized void closeAll() {
+        if (!selector.isOpen()) {
+            return;
+        }
+        //Runtime: O(c), where c is the number of connections
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            // nothing is left to release
+        }
+    }
+
+    /**
+     * Carries out one request and appends its response. Names are looked up by their UTF-8 bytes where
+     * they lie in the frame; a String is only made for the name of an added character.
+     *
+     * @param in frame positioned at the request
+     * @param out buffer to append the response to, with room for Protocol.MAX_RESPONSE_BYTES
+     * @throws ProtocolException if the request is malformed
+     */
+    private void execute(ByteBuffer in, ByteBuffer out) throws ProtocolException {
+        byte operation = in.get();
+        int nameLength = Protocol.getStringLength(in);
+        byte[] frame = in.array();
+        int nameOffset = in.arrayOffset() + in.position();
+        in.position(in.position() + nameLength);
+        // the fields are read before the database is called, so a rejected request keeps the frame in step
+        int height = 0;
+        int weight = 0;
+        int amount = 0;
+        double moralAlign = 0;
+        switch (operation) {
+            case Protocol.ADD:
+                height = in.getInt();
+                weight = in.getInt();
+                moralAlign = in.getDouble();
+                break;
+            case Protocol.REMOVE:
+            case Protocol.GET:
+                break;
+            case Protocol.HEAL:
+            case Protocol.INJURE:
+                amount = in.getInt();
+                break;
+            case Protocol.CHANGE:
+                moralAlign = in.getDouble();
+                break;
+            default:
+                throw new ProtocolException("Unknown operation " + operation);
+        }
+        try {
+            if (operation == Protocol.ADD) {
+                database.addCharacter(new String(frame, nameOffset, nameLength, StandardCharsets.UTF_8),
+                        height, weight, moralAlign);
+                out.put(ResponseStatus.OK.code());
+                return;
+            }
+            if (operation == Protocol.REMOVE) {
+                database.removeCharacter(frame, nameOffset, nameLength);
+                out.put(ResponseStatus.OK.code());
+                return;
+            }
+            CharacterInterface character = database.getCharacter(frame, nameOffset, nameLength);
+            if (character == null) {
+                out.put(ResponseStatus.NOT_FOUND.code());
+                return;
+            }
+            if (operation == Protocol.GET) {
+                int characterHeight = character.getHeight();
+                int characterWeight = character.getWeight();
+                int health = character.getHealth();
+                double characterAlign = character.getMoralAlign();
+                out.put(ResponseStatus.OK.code());
+                out.putInt(characterHeight);
+                out.putInt(characterWeight);
+                out.put((byte) health);
+                out.putDouble(characterAlign);
+                return;
+            }
+            if (operation == Protocol.HEAL) {
+                character.heal(amount);
+            } else if (operation == Protocol.INJURE) {
+                character.injure(amount);
+            } else {
+                character.change(moralAlign);
+            }
+            out.put(ResponseStatus.OK.code());
+        } catch (IllegalArgumentException e) {
+            Protocol.putMessage(out, ResponseStatus.INVALID, e.getMessage());
+        } catch (RuntimeException e) {
+            Protocol.putMessage(out, ResponseStatus.FAILED, e.toString());
+        }
+    }
+
+    /**
+     * A Connection holds the buffers of one client. Frames are read into the input buffer and answered
+     * into the output buffer, which is written out as the socket allows. While the output holds more than
+     * Protocol.OUTPUT_LIMIT_BYTES the connection stops reading, so a client that does not read its answers
+     * can not make the server buffer without bound.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        // received bytes, kept ready for writing more into
+        private ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        // answers not yet written, kept ready for appending
+        private ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Reads what has arrived, then answers and writes out
+         *
+         * @throws IOException if the client closed the connection or broke the protocol
+         */
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                throw new IOException("Client closed the connection");
+            }
+            write();
+        }
+
+        /**
+         * Answers the complete frames received and writes as much of the answers as the socket takes.
+         * Frames held back because the output was full are answered once the write has drained it.
+         *
+         * @throws IOException if the client can not be written to or broke the protocol
+         */
+        void write() throws IOException {
+            boolean heldBack = process();
+            flush();
+            if (heldBack && out.position() <= Protocol.OUTPUT_LIMIT_BYTES) {
+                process();
+                flush();
+            }
+            int interest = (out.position() > 0) ? SelectionKey.OP_WRITE : 0;
+            if (out.position() <= Protocol.OUTPUT_LIMIT_BYTES) {
+                interest |= SelectionKey.OP_READ;
+            }
+            key.interestOps(interest);
+        }
+
+        /**
+         * Answers the complete frames in the input buffer until the output is full
+         *
+         * @return true if complete frames were held back because the output is full
+         * @throws ProtocolException if a frame is malformed
+         */
+        private boolean process() throws ProtocolException {
+            in.flip();
+            //Runtime: O(n), where n is the number of bytes received
+            while (in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < 2 || length > Protocol.MAX_FRAME_BYTES) {
+                    throw new ProtocolException("Request frame of " + length + " bytes");
+                }
+                if (in.remaining() < 4 + length) {
+                    if (in.capacity() < 4 + length) {
+                        ByteBuffer larger = ByteBuffer.allocate(Math.max(in.capacity() * 2, 4 + length));
+                        larger.put(in);
+                        in = larger;
+                        return false;
+                    }
+                    break;
+                }
+                if (out.position() > Protocol.OUTPUT_LIMIT_BYTES) {
+                    in.compact();
+                    return true;
+                }
+                in.position(in.position() + 4);
+                processFrame(length);
+            }
+            in.compact();
+            return false;
+        }
+
+        /**
+         * Writes as much of the output buffer as the socket takes
+         *
+         * @throws IOException if the client can not be written to
+         */
+        private void flush() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+        }
+
+        /**
+         * Answers one frame
+         *
+         * @param length number of bytes in the frame after its length
+         * @throws ProtocolException if the frame is malformed
+         */
+        private void processFrame(int length) throws ProtocolException {
+            int end = in.position() + length;
+            int limit = in.limit();
+            in.limit(end);
+            try {
+                int count = Short.toUnsignedInt(in.getShort());
+                reserve(Protocol.FRAME_HEADER_BYTES);
+                int start = out.position();
+                out.putInt(0);
+                out.putShort((short) count);
+                //Runtime: O(r), where r is the number of requests in the frame
+                for (int request = 0; request < count; request++) {
+                    reserve(Protocol.MAX_RESPONSE_BYTES);
+                    execute(in, out);
+                }
+                if (in.hasRemaining()) {
+                    throw new ProtocolException("Request frame is longer than its requests");
+                }
+                out.putInt(start, out.position() - start - 4);
+                requestCount += count;
+            } catch (BufferUnderflowException e) {
+                throw new ProtocolException("Request runs past the end of its frame");
+            } finally {
+                in.limit(limit);
+            }
+        }
+
+        /**
+         * Makes room in the output buffer
+         *
+         * @param bytes number of bytes needed
+         */
+        private void reserve(int bytes) {
+            if (out.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+                larger.put(out.flip());
+                out = larger;
+            }
+        }
+
+        /**
+         * Closes the connection, dropping any answers not yet written
+         */
+        void close() {
+            if (!channel.isOpen()) {
+                return;
+            }
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // the connection is gone either way
+            }
+            connectionCount--;
+        }
+    }
+}
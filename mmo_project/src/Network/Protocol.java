@@ -0,0 +1,106 @@
+package Network;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Protocol holds the layout of the frames a CharacterClient and a CharacterServer exchange.
+ * Every frame is an int giving the number of bytes after it, a short giving the number of requests or
+ * responses it holds, and then those requests or responses, so a single request is simply a frame of one.
+ * A request is an operation byte and the name as a short byte count and UTF-8 bytes, followed by
+ * the operation's fields:
+ * ADD: int height, int weight, double moral alignment;
+ * REMOVE and GET: nothing;
+ * HEAL and INJURE: int amount;
+ * CHANGE: double moral alignment.
+ * A response is a status byte; a found GET is followed by int height, int weight, byte health and double
+ * moral alignment, and INVALID and FAILED by a message encoded like a name.
+ * The server answers the frames of a connection in the order they arrive, so a client may send many frames
+ * before reading any answer. The server stops reading from a connection whose answers pile up past
+ * OUTPUT_LIMIT_BYTES, so a client must keep fewer than MAX_IN_FLIGHT_REQUESTS requests unanswered.
+ */
+final class Protocol {
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+    static final byte GET = 3;
+    static final byte HEAL = 4;
+    static final byte INJURE = 5;
+    static final byte CHANGE = 6;
+
+    // bytes of the length and count in front of every frame
+    static final int FRAME_HEADER_BYTES = 6;
+    static final int MAX_FRAME_BYTES = 1 << 20;
+    static final int MAX_FRAME_REQUESTS = 0xffff;
+    static final int MAX_NAME_BYTES = 0xffff;
+    // messages are cut short so every response fits in MAX_RESPONSE_BYTES
+    static final int MAX_MESSAGE_CHARS = 100;
+    static final int MAX_RESPONSE_BYTES = 3 + 3 * MAX_MESSAGE_CHARS;
+    static final int OUTPUT_LIMIT_BYTES = 2 << 20;
+    static final int MAX_IN_FLIGHT_REQUESTS = 4096;
+
+    private Protocol() {
+    }
+
+    /**
+     * Appends a text as its UTF-8 byte count and bytes
+     *
+     * @param out buffer to append to, with room for the text
+     * @param text UTF-8 bytes of the text, at most MAX_NAME_BYTES of them
+     */
+    static void putString(ByteBuffer out, byte[] text) {
+        out.putShort((short) text.length);
+        out.put(text);
+    }
+
+    /**
+     * Reads a text written by putString from a heap buffer
+     *
+     * @param in buffer to read from
+     * @return the text
+     * @throws ProtocolException if the text runs past the end of the buffer
+     */
+    static String getString(ByteBuffer in) throws ProtocolException {
+        int length = getStringLength(in);
+        String name = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return name;
+    }
+
+    /**
+     * Reads the length of a text written by putString, leaving the buffer at the text's first byte,
+     * so the text can be used where it lies in the buffer's array
+     *
+     * @param in buffer to read from
+     * @return number of bytes in the text
+     * @throws ProtocolException if the text runs past the end of the buffer
+     */
+    static int getStringLength(ByteBuffer in) throws ProtocolException {
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length > in.remaining()) {
+            throw new ProtocolException("Text runs past the end of its frame");
+        }
+        return length;
+    }
+
+    /**
+     * Appends a status followed by a message, cut short to MAX_MESSAGE_CHARS characters
+     *
+     * @param out buffer to append to, with room for MAX_RESPONSE_BYTES
+     * @param status status of the response
+     * @param message message, or null for an empty one
+     */
+    static void putMessage(ByteBuffer out, ResponseStatus status, String message) {
+        String text = (message == null) ? "" : message;
+        if (text.length() > MAX_MESSAGE_CHARS) {
+            int end = MAX_MESSAGE_CHARS;
+            // a surrogate pair is never cut in half
+            if (Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--;
+            }
+            text = text.substring(0, end);
+        }
+        out.put(status.code());
+        putString(out, text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,277 @@
+package Network;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A RequestBatch collects requests for a CharacterClient to send together, and holds their responses
+ * once the client has executed it. Requests are encoded as they are added, and the client sends them
+ * in as few frames as it can without waiting for each frame's answer, so a batch of thousands of
+ * requests costs a handful of round trips.
+ * Each add method returns the index of its request, which is used to look up its response. A batch can
+ * be cleared and reused.
+ */
+public final class RequestBatch {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int INITIAL_BYTES = 1 << 10;
+
+    // encoded requests one after another, and the offset each request ends at
+    private ByteBuffer requests = ByteBuffer.allocate(INITIAL_BYTES);
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int count;
+    // responses, filled in by the client
+    private ResponseStatus[] statuses = new ResponseStatus[INITIAL_CAPACITY];
+    private CharacterRecord[] characters = new CharacterRecord[INITIAL_CAPACITY];
+    private String[] messages = new String[INITIAL_CAPACITY];
+
+    /**
+     * Adds a request to add a character, replacing the character with the same name if there is one
+     *
+     * @param name name of character
+     * @param height height of character
+     * @param weight weight of character
+     * @param moralAlign moral alignment of character
+     * @return index of the request
+     * @throws IllegalArgumentException if the name is null or longer than 65535 UTF-8 bytes
+     */
+    public int add(String name, int height, int weight, double moralAlign) {
+        ByteBuffer out = start(Protocol.ADD, name, 16);
+        out.putInt(height);
+        out.putInt(weight);
+        out.putDouble(moralAlign);
+        return finish();
+    }
+
+    /**
+     * Adds a request to remove a character
+     *
+     * @param name name of character
+     * @return index of the request
+     * @throws IllegalArgumentException if the name is null or longer than 65535 UTF-8 bytes
+     */
+    public int remove(String name) {
+        start(Protocol.REMOVE, name, 0);
+        return finish();
+    }
+
+    /**
+     * Adds a request for a character's attributes
+     *
+     * @param name name of character
+     * @return index of the request
+     * @throws IllegalArgumentException if the name is null or longer than 65535 UTF-8 bytes
+     */
+    public int get(String name) {
+        start(Protocol.GET, name, 0);
+        return finish();
+    }
+
+    /**
+     * Adds a request to heal a character
+     *
+     * @param name name of character
+     * @param healAmount amount to be healed
+     * @return index of the request
+     * @throws IllegalArgumentException if the name is null or longer than 65535 UTF-8 bytes
+     */
+    public int heal(String name, int healAmount) {
+        start(Protocol.HEAL, name, 4).putInt(healAmount);
+        return finish();
+    }
+
+    /**
+     * Adds a request to injure a character
+     *
+     * @param name name of character
+     * @param injureAmount amount to be injured
+     * @return index of the request
+     * @throws IllegalArgumentException if the name is null or longer than 65535 UTF-8 bytes
+     */
+    public int injure(String name, int injureAmount) {
+        start(Protocol.INJURE, name, 4).putInt(injureAmount);
+        return finish();
+    }
+
+    /**
+     * Adds a request to change a character's moral alignment
+     *
+     * @param name name of character
+     * @param moralAlign amount to change the moral alignment by
+     * @return index of the request
+     * @throws IllegalArgumentException if the name is null or longer than 65535 UTF-8 bytes
+     */
+    public int change(String name, double moralAlign) {
+        start(Protocol.CHANGE, name, 8).putDouble(moralAlign);
+        return finish();
+    }
+
+    /**
+     * Returns the number of requests in the batch
+     *
+     * @return number of requests
+     */
+    public int getSize() {
+        return count;
+    }
+
+    /**
+     * Removes every request and response, keeping the space they used
+     */
+    public void clear() {
+        Arrays.fill(names, 0, count, null);
+        Arrays.fill(statuses, 0, count, null);
+        Arrays.fill(characters, 0, count, null);
+        Arrays.fill(messages, 0, count, null);
+        requests.clear();
+        count = 0;
+    }
+
+    /**
+     * Returns the status of a request's response
+     *
+     * @param index index of the request
+     * @return status of the response, or null if the batch has not been executed since it was added
+     * @throws IndexOutOfBoundsException if there is no request with the index
+     */
+    public ResponseStatus getStatus(int index) {
+        return statuses[checkIndex(index)];
+    }
+
+    /**
+     * Returns the character a get request found
+     *
+     * @param index index of the request
+     * @return the character, or null if the request is not a get request or found no character
+     * @throws IndexOutOfBoundsException if there is no request with the index
+     */
+    public CharacterRecord getCharacter(int index) {
+        return characters[checkIndex(index)];
+    }
+
+    /**
+     * Returns the message of a request the server rejected or failed
+     *
+     * @param index index of the request
+     * @return the message, or null if the request did not fail
+     * @throws IndexOutOfBoundsException if there is no request with the index
+     */
+    public String getMessage(int index) {
+        return messages[checkIndex(index)];
+    }
+
+    /**
+     * Returns the offset in the encoded requests that a request starts at
+     *
+     * @param index index of the request
+     * @return offset of the request
+     */
+    int getStart(int index) {
+        return (index == 0) ? 0 : ends[index - 1];
+    }
+
+    /**
+     * Returns the offset in the encoded requests that a request ends at
+     *
+     * @param index index of the request
+     * @return offset just past the request
+     */
+    int getEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Returns the encoded requests, one after another, from the start of the array
+     *
+     * @return array of the encoded requests
+     */
+    byte[] getEncoded() {
+        return requests.array();
+    }
+
+    /**
+     * Reads the response to a request
+     *
+     * @param index index of the request
+     * @param in buffer holding the response
+     * @throws ProtocolException if the response is malformed
+     */
+    void readResponse(int index, ByteBuffer in) throws ProtocolException {
+        ResponseStatus status = ResponseStatus.of(in.get());
+        if (status == null) {
+            throw new ProtocolException("Unknown response status");
+        }
+        statuses[index] = status;
+        characters[index] = null;
+        messages[index] = null;
+        if (status == ResponseStatus.INVALID || status == ResponseStatus.FAILED) {
+            messages[index] = Protocol.getString(in);
+        } else if (status == ResponseStatus.OK && requests.get(getStart(index)) == Protocol.GET) {
+            int height = in.getInt();
+            int weight = in.getInt();
+            int health = in.get();
+            characters[index] = new CharacterRecord(names[index], height, weight, health, in.getDouble());
+        }
+    }
+
+    /**
+     * Encodes the operation and name of a new request and makes room for its fields
+     *
+     * @param operation operation of the request
+     * @param name name of character
+     * @param fieldBytes number of bytes of the fields that follow the name
+     * @return buffer to put the fields in
+     */
+    private ByteBuffer start(byte operation, String name, int fieldBytes) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name must not be null");
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Protocol.MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Name must be at most " + Protocol.MAX_NAME_BYTES + " UTF-8 bytes");
+        }
+        int needed = 3 + bytes.length + fieldBytes;
+        if (requests.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(requests.capacity() * 2, requests.position() + needed));
+            larger.put(requests.flip());
+            requests = larger;
+        }
+        if (count == ends.length) {
+            int capacity = count * 2;
+            ends = Arrays.copyOf(ends, capacity);
+            names = Arrays.copyOf(names, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+            characters = Arrays.copyOf(characters, capacity);
+            messages = Arrays.copyOf(messages, capacity);
+        }
+        names[count] = name;
+        requests.put(operation);
+        Protocol.putString(requests, bytes);
+        return requests;
+    }
+
+    /**
+     * Ends the request being added
+     *
+     * @return index of the request
+     */
+    private int finish() {
+        ends[count] = requests.position();
+        return count++;
+    }
+
+    /**
+     * Checks that a request index is in the batch
+     *
+     * @param index index of the request
+     * @return the index
+     */
+    private int checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("No request " + index + " in a batch of " + count);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,36 @@
+package Network;
+
+/**
+ * The outcomes a CharacterServer can report for a request.
+ */
+public enum ResponseStatus {
+    /** The request was carried out. */
+    OK,
+    /** There is no character with the requested name. */
+    NOT_FOUND,
+    /** The request was rejected because an argument was invalid, as with an IllegalArgumentException. */
+    INVALID,
+    /** The request failed on the server for another reason. */
+    FAILED;
+
+    private static final ResponseStatus[] VALUES = values();
+
+    /**
+     * Returns the byte that stands for this status in a response
+     *
+     * @return code of the status
+     */
+    byte code() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Returns the status a response byte stands for
+     *
+     * @param code code of the status
+     * @return the status, or null if the code stands for none
+     */
+    static ResponseStatus of(byte code) {
+        return (code >= 0 && code < VALUES.length) ? VALUES[code] : null;
+    }
+}
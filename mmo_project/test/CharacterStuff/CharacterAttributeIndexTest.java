@@ -0,0 +1,93 @@
+package CharacterStuff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that a CharacterAttributeIndex follows changes made from many threads at once.
+ */
+public class CharacterAttributeIndexTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        parallelChangesEndInTheRightBuckets();
+        System.out.println("CharacterAttributeIndexTest passed");
+    }
+
+    /**
+     * Threads heal, injure and change their own characters while others are added and removed. Once they
+     * are done, every character must sit in the buckets of its final health and alignment. The dictionary
+     * is not safe to read while it is written, so the threads look their characters up beforehand.
+     */
+    private static void parallelChangesEndInTheRightBuckets() throws InterruptedException {
+        int threadCount = 8;
+        int perThread = 500;
+        ColumnarCharacterStore store = new ColumnarCharacterStore();
+        // the columns must not grow under the threads changing characters
+        store.ensureCapacity(threadCount * perThread + 2_000);
+        CharacterDatabase database = new CharacterDatabase(store);
+        CharacterInterface[] players = new CharacterInterface[threadCount * perThread];
+        for (int index = 0; index < players.length; index++) {
+            database.addCharacter("Player" + index, 100, 100, 0.5);
+            players[index] = database.getCharacter("Player" + index);
+        }
+        CharacterAttributeIndex index = new CharacterAttributeIndex(database);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int thread = 0; thread < threadCount; thread++) {
+            int first = thread * perThread;
+            threads.add(new Thread(() -> {
+                Random random = new Random(first);
+                for (int round = 0; round < 20_000; round++) {
+                    CharacterInterface character = players[first + random.nextInt(perThread)];
+                    int action = random.nextInt(3);
+                    if (action == 0) {
+                        character.heal(1 + random.nextInt(30));
+                    } else if (action == 1) {
+                        character.injure(1 + random.nextInt(30));
+                    } else {
+                        character.change(random.nextInt(11) / 10.0 - character.getMoralAlign());
+                    }
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            for (int round = 0; round < 2_000; round++) {
+                database.addCharacter("Visitor" + round, 100, 100, 0.5);
+                if (round % 2 == 0) {
+                    database.removeCharacter("Visitor" + round);
+                }
+            }
+        }));
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((failed, failure) -> failures.add(failure));
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        check(failures.isEmpty(), "a thread failed: " + failures);
+
+        int characters = threadCount * perThread + 1_000;
+        check(index.getSize() == characters, "index holds " + index.getSize() + " characters");
+        check(index.countByHealth(0, 100) == characters, "health buckets lost characters");
+        check(index.countByMoralAlign(0.0, 1.0) == characters, "alignment buckets lost characters");
+        for (int player = 0; player < threadCount * perThread; player++) {
+            String name = "Player" + player;
+            CharacterInterface character = database.getCharacter(name);
+            int health = character.getHealth();
+            double moralAlign = character.getMoralAlign();
+            check(index.findByHealth(health, health).contains(name), name + " is not under health " + health);
+            check(index.findByMoralAlign(moralAlign, moralAlign).contains(name),
+                    name + " is not under alignment " + moralAlign);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package CharacterStuff;
+
+import Dictionary.CollisionResolution;
+import Dictionary.HashMixing;
+import Dictionary.ProbeStatistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the name index, slot reuse and metrics of a CharacterDatabase.
+ */
+public class CharacterDatabaseTest {
+
+    public static void main(String[] args) {
+        collidingNamesKeepShortProbes();
+        removalCostDoesNotGrowWithFreeSlots();
+        removalsKeepOtherViewsValid();
+        freeSlotsAreReusedAndCompacted();
+        for (CharacterStore store : new CharacterStore[]{new HeapCharacterStore(), new ColumnarCharacterStore(),
+                new OffHeapCharacterStore()}) {
+            metricsTimeEveryOperation(store);
+        }
+        for (CharacterStore store : new CharacterStore[]{new HeapCharacterStore(), new ColumnarCharacterStore(),
+                new OffHeapCharacterStore()}) {
+            staleViewsMissReaddedCharacters(store);
+        }
+        offHeapChangesReportTheIndexedName();
+        System.out.println("CharacterDatabaseTest passed");
+    }
+
+    /**
+     * Names built from "Aa" and "BB" all have the same String hash code. The default index mixes
+     * them with a seed, so they spread out instead of sharing one probe sequence.
+     */
+    private static void collidingNamesKeepShortProbes() {
+        CharacterDatabase database = new CharacterDatabase();
+        check(database.getHashTable().getHashMixing() == HashMixing.SEEDED_FINALIZER, "index is not seeded");
+        ProbeStatistics statistics = new ProbeStatistics();
+        database.getHashTable().setProbeListener(statistics);
+        String[] names = collidingNames(12);
+        for (String name : names) {
+            database.addCharacter(name, 100, 100, 0.5);
+        }
+        for (String name : names) {
+            check(database.getCharacter(name) != null, name + " not found");
+        }
+        check(statistics.getAverageProbeLength() < 2.0, "average probe length " + statistics.getAverageProbeLength());
+
+        CharacterDatabase unmixed = new CharacterDatabase(new HeapCharacterStore(),
+                CollisionResolution.QUADRATIC_PROBING, HashMixing.NONE);
+        ProbeStatistics unmixedStatistics = new ProbeStatistics();
+        unmixed.getHashTable().setProbeListener(unmixedStatistics);
+        for (int index = 0; index < 512; index++) {
+            unmixed.addCharacter(names[index], 100, 100, 0.5);
+        }
+        check(unmixedStatistics.getAverageProbeLength() > 10 * statistics.getAverageProbeLength(),
+                "unmixed names did not collide");
+    }
+
+    /**
+     * Removing characters in random order costs a bounded number of store calls each, however
+     * many empty slots the store already has
+     */
+    private static void removalCostDoesNotGrowWithFreeSlots() {
+        for (int size : new int[]{20_000, 200_000}) {
+            CountingCharacterStore store = new CountingCharacterStore();
+            CharacterDatabase database = new CharacterDatabase(store);
+            List<String> names = new ArrayList<>();
+            for (int index = 0; index < size; index++) {
+                names.add("Player" + index);
+                database.addCharacter(names.get(index), 100, 100, 0.5);
+            }
+            Collections.shuffle(names, new Random(size));
+            store.calls = 0;
+            for (String name : names) {
+                database.removeCharacter(name);
+            }
+            double callsPerRemoval = (double) store.calls / size;
+            check(callsPerRemoval < 10, size + " removals made " + callsPerRemoval + " store calls each");
+            check(store.getSlotCount() == 0, "empty store kept " + store.getSlotCount() + " slots");
+        }
+    }
+
+    /**
+     * Characters of a store that hands out views of a slot stay usable while other characters are removed
+     */
+    private static void removalsKeepOtherViewsValid() {
+        CharacterDatabase database = new CharacterDatabase(new ColumnarCharacterStore());
+        List<String> names = new ArrayList<>();
+        for (int index = 0; index < 1000; index++) {
+            names.add("Player" + index);
+            database.addCharacter(names.get(index), 100, 100, 0.5);
+        }
+        CharacterInterface kept = database.getCharacter("Player0");
+        Collections.shuffle(names, new Random(7));
+        for (String name : names) {
+            if (!name.equals("Player0")) {
+                database.removeCharacter(name);
+            }
+        }
+        kept.injure(30);
+        check(kept.getHealth() == 70 && database.getCharacter("Player0").getHealth() == 70, "view of Player0 broke");
+    }
+
+    /**
+     * Removing a character and adding it again under the same String reuses its slot, whether or not
+     * the store was compacted in between. A view of the removed character must not reach the new one.
+     */
+    private static void staleViewsMissReaddedCharacters(CharacterStore store) {
+        CharacterDatabase database = new CharacterDatabase(store);
+        for (boolean compact : new boolean[]{false, true}) {
+            database.addCharacter("Bob", 100, 100, 0.5);
+            CharacterInterface stale = database.getCharacter("Bob");
+            database.removeCharacter("Bob");
+            if (compact) {
+                database.compact();
+            }
+            database.addCharacter("Bob", 100, 100, 0.5);
+            try {
+                stale.injure(40);
+            } catch (IllegalStateException e) {
+                // views that notice the slot was refilled refuse the change
+            }
+            check(database.getCharacter("Bob").getHealth() == 100, store.getClass().getSimpleName()
+                    + " let a stale view injure the new Bob" + (compact ? " after compaction" : ""));
+            database.removeCharacter("Bob");
+        }
+    }
+
+    /**
+     * Changes to off-heap characters are reported under the String the name index holds, however the
+     * character was looked up, instead of a name decoded from the arena for each change. Tick batches
+     * report the name they were queued with.
+     */
+    private static void offHeapChangesReportTheIndexedName() {
+        CharacterDatabase database = new CharacterDatabase(new OffHeapCharacterStore());
+        String bob = new String("Bob");
+        database.addCharacter(bob, 100, 100, 0.5);
+        List<String> reported = new ArrayList<>();
+        database.addCharacterListener(new CharacterListener() {
+            @Override
+            public void characterAdded(String name, int height, int weight, int health, double moralAlign) {
+            }
+
+            @Override
+            public void characterRemoved(String name) {
+            }
+
+            @Override
+            public void characterChanged(String name, int health, double moralAlign, int version) {
+                reported.add(name);
+            }
+        });
+        database.getCharacter("Bob").injure(10);
+        database.getCharacter(new StringBuilder("Bob")).heal(5);
+        byte[] bytes = {'B', 'o', 'b'};
+        database.getCharacter(bytes, 0, bytes.length).change(0.2);
+        TickBatchEngine engine = new TickBatchEngine(database, 1);
+        engine.queueInjure("Bob", 20);
+        engine.endTick();
+        check(reported.size() == 4, reported.size() + " changes reported");
+        for (String name : reported.subList(0, 3)) {
+            check(name == bob, "change reported under a copy of the name");
+        }
+        // a tick reports the name its events were queued under
+        check(reported.get(3).equals("Bob"), "tick reported " + reported.get(3));
+    }
+
+    /**
+     * Slots of removed characters are handed to new ones, and compact closes the gaps that are left
+     */
+    private static void freeSlotsAreReusedAndCompacted() {
+        HeapCharacterStore store = new HeapCharacterStore();
+        CharacterDatabase database = new CharacterDatabase(store);
+        for (int index = 0; index < 1000; index++) {
+            database.addCharacter("Player" + index, 100, 100, 0.5);
+        }
+        for (int index = 0; index < 1000; index += 2) {
+            database.removeCharacter("Player" + index);
+        }
+        for (int index = 0; index < 500; index++) {
+            database.addCharacter("Newcomer" + index, 100, 100, 0.5);
+        }
+        check(store.getSlotCount() == 1000, "freed slots were not reused: " + store.getSlotCount() + " slots");
+        for (int index = 0; index < 1000; index += 3) {
+            database.removeCharacter("Newcomer" + index / 2);
+            database.removeCharacter("Player" + (index | 1));
+        }
+        int live = database.getHashTable().getSize();
+        check(database.compact(0) == store.getSlotCount() - live, "empty slot count");
+        database.compact();
+        check(store.getSlotCount() == live, "compact left " + store.getSlotCount() + " slots for " + live);
+        for (int slot = 0; slot < live; slot++) {
+            String name = store.getName(slot);
+            check(database.getCharacter(name) != null, name + " lost by compaction");
+        }
+    }
+
+    /**
+     * With metrics enabled, lookups hand out the store's own characters, and their heals, injuries and
+     * changes are still timed. A bulk add counts one add per character.
+     */
+    private static void metricsTimeEveryOperation(CharacterStore store) {
+        CharacterDatabase database = new CharacterDatabase(store);
+        DatabaseMetrics metrics = database.enableMetrics();
+        List<CharacterInterface> characters = new ArrayList<>();
+        for (int index = 0; index < 10; index++) {
+            characters.add(new Character("Player" + index, 100, 100, 0.5));
+        }
+        database.addCharacters(characters);
+        database.addCharacter("Solo", 100, 100, 0.5);
+        CharacterInterface solo = database.getCharacter("Solo");
+        check(solo.getClass().getEnclosingClass() == store.getClass() || solo == store.get(10),
+                "lookup wrapped the character");
+        solo.injure(10);
+        solo.injure(10);
+        solo.heal(5);
+        solo.change(0.2);
+        String name = store.getClass().getSimpleName();
+        check(metrics.getOperationCount(DatabaseOperation.ADD) == 11, name + " add count");
+        check(metrics.getOperationCount(DatabaseOperation.GET) == 1, name + " get count");
+        check(metrics.getOperationCount(DatabaseOperation.INJURE) == 2, name + " injure count");
+        check(metrics.getOperationCount(DatabaseOperation.HEAL) == 1, name + " heal count");
+        check(metrics.getOperationCount(DatabaseOperation.CHANGE) == 1, name + " change count");
+        check(solo.getHealth() == 85, name + " health");
+    }
+
+    /**
+     * Returns 2^blocks names that all have the same String hash code
+     *
+     * @param blocks number of two-character blocks in each name
+     * @return the names
+     */
+    static String[] collidingNames(int blocks) {
+        String[] names = new String[1 << blocks];
+        for (int index = 0; index < names.length; index++) {
+            StringBuilder name = new StringBuilder();
+            for (int block = 0; block < blocks; block++) {
+                name.append(((index >>> block) & 1) == 0 ? "Aa" : "BB");
+            }
+            names[index] = name.toString();
+        }
+        return names;
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package CharacterStuff;
+
+/**
+ * A HeapCharacterStore that counts every call made to it, so tests can check how much work a
+ * database operation does without timing it.
+ */
+class CountingCharacterStore extends HeapCharacterStore {
+    long calls;
+
+    @Override
+    public int getSlotCount() {
+        calls++;
+        return super.getSlotCount();
+    }
+
+    @Override
+    public boolean isOccupied(int slot) {
+        calls++;
+        return super.isOccupied(slot);
+    }
+
+    @Override
+    public int add(String name, int height, int weight, double moralAlign) {
+        calls++;
+        return super.add(name, height, weight, moralAlign);
+    }
+
+    @Override
+    public void set(int slot, String name, int height, int weight, double moralAlign) {
+        calls++;
+        super.set(slot, name, height, weight, moralAlign);
+    }
+
+    @Override
+    public void clear(int slot) {
+        calls++;
+        super.clear(slot);
+    }
+
+    @Override
+    public void move(int fromSlot, int toSlot) {
+        calls++;
+        super.move(fromSlot, toSlot);
+    }
+
+    @Override
+    public void truncate(int slotCount) {
+        calls++;
+        super.truncate(slotCount);
+    }
+
+    @Override
+    public String getName(int slot) {
+        calls++;
+        return super.getName(slot);
+    }
+
+    @Override
+    public Character get(int slot) {
+        calls++;
+        return super.get(slot);
+    }
+
+    @Override
+    public Character get(int slot, String name) {
+        calls++;
+        return super.get(slot, name);
+    }
+}
@@ -0,0 +1,55 @@
+package CharacterStuff;
+
+import Dictionary.ExportFormat;
+import Dictionary.RecordWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Checks the paged export of a ShardedCharacterDatabase.
+ */
+public class ShardedCharacterDatabaseTest {
+
+    public static void main(String[] args) throws IOException {
+        for (int shardCount : new int[]{1, 2, 3, 8}) {
+            pagedExportWritesEveryCharacterOnce(shardCount);
+        }
+        System.out.println("ShardedCharacterDatabaseTest passed");
+    }
+
+    /**
+     * Following the cursor page by page writes each character exactly once, whatever the shard count.
+     * A single shard gives its slots all 31 bits of the cursor.
+     */
+    private static void pagedExportWritesEveryCharacterOnce(int shardCount) throws IOException {
+        ShardedCharacterDatabase database = new ShardedCharacterDatabase(shardCount);
+        int characters = 95;
+        for (int index = 0; index < characters; index++) {
+            database.addCharacter("Player" + index, 100, 100, 0.5);
+        }
+        StringWriter text = new StringWriter();
+        RecordWriter out = new RecordWriter(text, ExportFormat.CSV);
+        int pages = 0;
+        for (int cursor = 0; cursor >= 0; pages++) {
+            cursor = database.exportCharacters(out, cursor, 10);
+            check(pages <= characters, "export with " + shardCount + " shards never ends");
+        }
+        out.flush();
+
+        String[] lines = text.toString().split("\n");
+        Set<String> names = new HashSet<>();
+        for (int line = 1; line < lines.length; line++) {
+            check(names.add(lines[line].substring(0, lines[line].indexOf(','))), "duplicate " + lines[line]);
+        }
+        check(names.size() == characters, shardCount + " shards exported " + names.size() + " characters");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
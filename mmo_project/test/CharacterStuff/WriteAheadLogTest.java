@@ -0,0 +1,154 @@
+package CharacterStuff;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Checks that a WriteAheadLog brings a database back to the state it was logged in.
+ */
+public class WriteAheadLogTest {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("wal-test");
+        replayRestoresVersions(directory.resolve("versions.wal"));
+        resetKeepsChangesAfterTheMark(directory, true);
+        resetKeepsChangesAfterTheMark(directory, false);
+        snapshotVersionsOutrankOlderLoggedChanges(directory);
+        backgroundFlushWritesWithoutSync(directory.resolve("flush.wal"));
+        namesRoundTripAsUtf8(directory.resolve("names.wal"));
+        System.out.println("WriteAheadLogTest passed");
+    }
+
+    /**
+     * Heals at full health change nothing but the version. Replay must put the version back too, or
+     * the changes logged after recovery look older than the replayed ones and are skipped next time.
+     */
+    private static void replayRestoresVersions(Path path) throws IOException {
+        CharacterDatabase database = new CharacterDatabase();
+        WriteAheadLog log = WriteAheadLog.recover(path, database, true);
+        database.addCharacter("a", 100, 100, 0.5);
+        for (int heal = 0; heal < 10; heal++) {
+            database.getCharacter("a").heal(5);
+        }
+        log.close();
+
+        database = new CharacterDatabase();
+        log = WriteAheadLog.recover(path, database, true);
+        database.getCharacter("a").injure(50);
+        log.close();
+
+        database = new CharacterDatabase();
+        WriteAheadLog.replay(path, database);
+        check(database.getCharacter("a").getHealth() == 50, "injury logged after recovery was lost");
+    }
+
+    /**
+     * A change made after the mark, while the snapshot is being taken, must survive the reset
+     */
+    private static void resetKeepsChangesAfterTheMark(Path directory, boolean waitForDurability)
+            throws IOException {
+        Path logPath = directory.resolve("reset-" + waitForDurability + ".wal");
+        Path snapshotPath = directory.resolve("reset-" + waitForDurability + ".snapshot");
+        CharacterDatabase database = new CharacterDatabase();
+        WriteAheadLog log = WriteAheadLog.recover(logPath, database, waitForDurability);
+        database.addCharacter("a", 100, 100, 0.5);
+        database.addCharacter("b", 100, 100, 0.5);
+        database.getCharacter("a").injure(5);
+
+        long mark = log.mark();
+        CharacterSnapshot snapshot = CharacterSnapshot.capture(database);
+        database.getCharacter("a").injure(10);
+        database.addCharacter("c", 100, 100, 0.5);
+        snapshot.writeTo(snapshotPath);
+        log.reset(mark);
+        database.getCharacter("b").change(0.2);
+        log.close();
+
+        database = CharacterSnapshot.load(snapshotPath, new HeapCharacterStore());
+        WriteAheadLog.recover(logPath, database, waitForDurability).close();
+        check(database.getCharacter("a").getHealth() == 85, "change made during the snapshot was dropped");
+        check(database.getCharacter("b").getMoralAlign() == 0.7, "change made after the reset was dropped");
+        check(database.getCharacter("c") != null, "character added during the snapshot was dropped");
+    }
+
+    /**
+     * Two threads can log their changes to one character out of order around the mark, so the snapshot
+     * holds the newer change while the log keeps only the older one. The snapshot saves versions, and
+     * replay must not roll the character back to the older change.
+     */
+    private static void snapshotVersionsOutrankOlderLoggedChanges(Path directory) throws IOException {
+        Path logPath = directory.resolve("outranked.wal");
+        Path snapshotPath = directory.resolve("outranked.snapshot");
+        CharacterDatabase snapshotted = new CharacterDatabase();
+        snapshotted.addCharacter("a", 100, 100, 0.5);
+        for (int injury = 0; injury < 5; injury++) {
+            snapshotted.getCharacter("a").injure(10);
+        }
+        CharacterSnapshot.save(snapshotted, snapshotPath);
+
+        // the log keeps only the fourth injury, which the snapshot's fifth has already overtaken
+        CharacterDatabase logged = new CharacterDatabase();
+        WriteAheadLog log = WriteAheadLog.recover(logPath, logged, true);
+        logged.addCharacter("a", 100, 100, 0.5);
+        for (int injury = 0; injury < 3; injury++) {
+            logged.getCharacter("a").injure(10);
+        }
+        long mark = log.mark();
+        logged.getCharacter("a").injure(10);
+        log.reset(mark);
+        log.close();
+
+        CharacterDatabase database = CharacterSnapshot.load(snapshotPath, new ColumnarCharacterStore());
+        int slot = database.dictionary.getValue("a");
+        check(CharacterState.version(database.characterStore.getState(slot)) == 5, "snapshot lost the version");
+        WriteAheadLog.recover(logPath, database, true).close();
+        check(database.getCharacter("a").getHealth() == 50, "older logged change rolled the snapshot back");
+    }
+
+    /**
+     * Without waitForDurability, records reach the file without anyone calling sync
+     */
+    private static void backgroundFlushWritesWithoutSync(Path path) throws IOException, InterruptedException {
+        CharacterDatabase database = new CharacterDatabase();
+        WriteAheadLog log = WriteAheadLog.recover(path, database, false);
+        for (int index = 0; index < 100; index++) {
+            database.addCharacter("Player" + index, 100, 100, 0.5);
+        }
+        long expected = log.mark();
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (WriteAheadLog.replay(path, null) < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        check(WriteAheadLog.replay(path, null) == expected, "pending records were not flushed");
+        log.close();
+    }
+
+    /**
+     * Names outside ASCII are logged as the same UTF-8 String.getBytes gives
+     */
+    private static void namesRoundTripAsUtf8(Path path) throws IOException {
+        String[] names = {"Zoë", "龍騎士", "Dragon🐉", "Lone\uD800"};
+        CharacterDatabase database = new CharacterDatabase();
+        WriteAheadLog log = WriteAheadLog.recover(path, database, true);
+        for (String name : names) {
+            database.addCharacter(name, 100, 100, 0.5);
+            database.getCharacter(name).injure(20);
+        }
+        log.close();
+
+        database = new CharacterDatabase();
+        WriteAheadLog.replay(path, database);
+        for (String name : names) {
+            String logged = name.replace('\uD800', '?');
+            check(database.getCharacter(logged) != null && database.getCharacter(logged).getHealth() == 80,
+                    logged + " was not replayed");
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
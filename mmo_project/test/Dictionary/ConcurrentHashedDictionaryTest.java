@@ -0,0 +1,107 @@
+package Dictionary;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks that lock-free readers of a ConcurrentHashedDictionary always find the entries that are not
+ * being changed, while writers on other threads add and remove keys and keep resizing the segments.
+ */
+public class ConcurrentHashedDictionaryTest {
+    private static final int STABLE_KEYS = 2000;
+    private static final int WRITERS = 4;
+    private static final int WRITER_KEYS = 20_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        readersSeeStableKeysDuringResizes();
+        System.out.println("ConcurrentHashedDictionaryTest passed");
+    }
+
+    private static void readersSeeStableKeysDuringResizes() throws InterruptedException {
+        // a small dictionary, so the writers make every segment copy its table many times
+        ConcurrentHashedDictionary<String, Integer> dictionary =
+                new ConcurrentHashedDictionary<>(8, 4, HashMixing.SEEDED_FINALIZER);
+        for (int key = 0; key < STABLE_KEYS; key++) {
+            dictionary.add("stable" + key, key);
+        }
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread[] readers = new Thread[2];
+        for (int reader = 0; reader < readers.length; reader++) {
+            readers[reader] = new Thread(() -> {
+                try {
+                    while (writing.get()) {
+                        for (int key = 0; key < STABLE_KEYS; key++) {
+                            Integer value = dictionary.getValue("stable" + key);
+                            check(value != null && value == key, "stable" + key + " read as " + value);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        Thread[] writers = new Thread[WRITERS];
+        for (int writer = 0; writer < WRITERS; writer++) {
+            String prefix = "writer" + writer + "-";
+            writers[writer] = new Thread(() -> {
+                try {
+                    for (int key = 0; key < WRITER_KEYS; key++) {
+                        dictionary.add(prefix + key, key);
+                        check(dictionary.getValue(prefix + key) == key, "own write of " + prefix + key + " lost");
+                        if (key % 2 == 1) {
+                            check(dictionary.remove(prefix + (key - 1)) == key - 1, "remove of " + prefix + (key - 1));
+                            check(dictionary.getValue(prefix + (key - 1)) == null, prefix + (key - 1) + " still found");
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        for (Thread thread : readers) {
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        writing.set(false);
+        for (Thread thread : readers) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("concurrent check failed", failure.get());
+        }
+
+        Map<String, Integer> expected = new HashMap<>();
+        for (int key = 0; key < STABLE_KEYS; key++) {
+            expected.put("stable" + key, key);
+        }
+        for (int writer = 0; writer < WRITERS; writer++) {
+            for (int key = 1; key < WRITER_KEYS; key += 2) {
+                expected.put("writer" + writer + "-" + key, key);
+            }
+        }
+        check(dictionary.getSize() == expected.size(), "size " + dictionary.getSize() + " != " + expected.size());
+        Map<String, Integer> iterated = new HashMap<>();
+        Iterator<String> keys = dictionary.getKeyIterator();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            iterated.put(key, dictionary.getValue(key));
+        }
+        check(iterated.equals(expected), "iterated entries differ from the expected ones");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
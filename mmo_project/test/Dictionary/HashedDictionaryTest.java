@@ -0,0 +1,105 @@
+package Dictionary;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks that lookups, updates and removes find every live entry while a resize is still
+ * migrating entries out of the old table, and that ensureCapacity leaves room for what it was asked for.
+ */
+public class HashedDictionaryTest {
+
+    public static void main(String[] args) {
+        lookupsDuringMigration();
+        removesDuringMigration();
+        ensuredCapacityCountsRemovedSlots();
+        System.out.println("HashedDictionaryTest passed");
+    }
+
+    /**
+     * Every key added so far is found after each add, so keys still in the old table are found
+     * past slots that were already migrated
+     */
+    private static void lookupsDuringMigration() {
+        for (CollisionResolution resolution : CollisionResolution.values()) {
+            HashedDictionary<String, Integer> dictionary = new HashedDictionary<>(5, resolution);
+            for (int key = 0; key < 2000; key++) {
+                dictionary.add("key" + key, key);
+                for (int earlier = 0; earlier <= key; earlier++) {
+                    Integer value = dictionary.getValue("key" + earlier);
+                    check(value != null && value == earlier, resolution + ": key" + earlier + " lost after adding key" + key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes and updates made while a migration is in progress reach the entry wherever it is
+     */
+    private static void removesDuringMigration() {
+        Random random = new Random(2);
+        Map<String, Integer> expected = new HashMap<>();
+        ObjectIntHashedDictionary<String> dictionary = new ObjectIntHashedDictionary<>(5);
+        for (int operation = 0; operation < 200_000; operation++) {
+            String key = "key" + random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(key);
+                int value = dictionary.remove(key);
+                check(value == (removed == null ? ObjectIntHashedDictionary.NO_VALUE : removed), "remove of " + key);
+            } else {
+                expected.put(key, operation);
+                dictionary.add(key, operation);
+            }
+            String probe = "key" + random.nextInt(5000);
+            Integer value = expected.get(probe);
+            check(dictionary.getValue(probe) == (value == null ? ObjectIntHashedDictionary.NO_VALUE : value),
+                    "lookup of " + probe);
+        }
+        check(dictionary.getSize() == expected.size(), "size " + dictionary.getSize() + " != " + expected.size());
+    }
+
+    /**
+     * A table that is big enough for the requested entries but full of removed slots is rebuilt by
+     * ensureCapacity, so filling it up to that capacity afterwards does not resize it again
+     */
+    private static void ensuredCapacityCountsRemovedSlots() {
+        ObjectIntHashedDictionary<String> dictionary = new ObjectIntHashedDictionary<>(10);
+        for (int key = 0; key < 1000; key++) {
+            dictionary.add("key" + key, key);
+        }
+        for (int key = 100; key < 1000; key++) {
+            dictionary.remove("key" + key);
+        }
+        int capacity = (dictionary.keys.length - 1) / 2;
+        check(capacity + dictionary.getTombstoneCount() > dictionary.keys.length / 2, "too few removed slots");
+        dictionary.ensureCapacity(capacity);
+
+        int[] resizes = {0};
+        dictionary.setProbeListener(new ProbeListener() {
+            @Override
+            public void probed(int probeLength, int tombstonesSkipped) {
+            }
+
+            @Override
+            public void resized(int oldSize, int newSize, long elapsedNanos) {
+                resizes[0]++;
+            }
+
+            @Override
+            public void tombstonesChanged(int tombstones, int tableLength) {
+            }
+        });
+        for (int key = dictionary.getSize(); key < capacity; key++) {
+            dictionary.add("new" + key, key);
+        }
+        check(resizes[0] == 0, resizes[0] + " resizes after ensureCapacity(" + capacity + ")");
+        check(dictionary.getSize() == capacity && dictionary.getValue("key99") == 99, "entries lost");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
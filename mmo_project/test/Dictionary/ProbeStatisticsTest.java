@@ -0,0 +1,44 @@
+package Dictionary;
+
+import java.util.Random;
+
+/**
+ * Checks that a ProbeStatistics listener sees the same tombstone ratio as the dictionary it listens
+ * to, as removes create available slots and inserts and migrations reuse them.
+ */
+public class ProbeStatisticsTest {
+
+    public static void main(String[] args) {
+        tombstoneRatioFollowsDictionary();
+        System.out.println("ProbeStatisticsTest passed");
+    }
+
+    private static void tombstoneRatioFollowsDictionary() {
+        Random random = new Random(3);
+        ObjectIntHashedDictionary<String> dictionary = new ObjectIntHashedDictionary<>(5);
+        ProbeStatistics statistics = new ProbeStatistics();
+        dictionary.setProbeListener(statistics);
+        boolean reused = false;
+        for (int operation = 0; operation < 100_000; operation++) {
+            String key = "key" + random.nextInt(2000);
+            int tombstonesBefore = dictionary.getTombstoneCount();
+            if (random.nextBoolean()) {
+                dictionary.remove(key);
+            } else {
+                dictionary.add(key, operation);
+                reused |= dictionary.getTombstoneCount() < tombstonesBefore;
+            }
+            check(statistics.getTombstoneRatio() == dictionary.getTombstoneRatio(),
+                    "listener ratio " + statistics.getTombstoneRatio() + " != " + dictionary.getTombstoneRatio());
+        }
+        check(reused, "no insert reused an available slot");
+        dictionary.clear();
+        check(statistics.getTombstoneRatio() == 0.0, "ratio not cleared");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package Network;
+
+import CharacterStuff.CharacterDatabase;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks a CharacterServer and CharacterClient talking over a localhost connection.
+ */
+public class CharacterServerTest {
+
+    public static void main(String[] args) throws Exception {
+        CharacterDatabase database = new CharacterDatabase();
+        try (CharacterServer server = new CharacterServer(database,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            server.start();
+            pipelinedBatchIsAnsweredInOrder(server);
+            malformedFrameClosesOnlyItsConnection(server);
+            slowReaderStopsTheServerReading(server);
+        }
+        System.out.println("CharacterServerTest passed");
+    }
+
+    /**
+     * A batch larger than the in-flight window is sent as many pipelined frames, and every request,
+     * rejected ones included, gets its own answer in order
+     */
+    private static void pipelinedBatchIsAnsweredInOrder(CharacterServer server) throws IOException {
+        int characters = 3 * Protocol.MAX_IN_FLIGHT_REQUESTS;
+        try (CharacterClient client = new CharacterClient(server.getAddress())) {
+            RequestBatch batch = new RequestBatch();
+            for (int index = 0; index < characters; index++) {
+                batch.add("Player" + index, 100, 100, 0.5);
+                batch.injure("Player" + index, index % 100);
+            }
+            int missing = batch.get("Nobody");
+            int found = batch.get("Player42");
+            client.execute(batch);
+
+            for (int index = 0; index < characters; index++) {
+                check(batch.getStatus(2 * index) == ResponseStatus.OK, "add " + index + " not answered in order");
+                ResponseStatus expected = (index % 100 == 0) ? ResponseStatus.INVALID : ResponseStatus.OK;
+                check(batch.getStatus(2 * index + 1) == expected, "injure " + index + " got the wrong answer");
+            }
+            check(batch.getStatus(missing) == ResponseStatus.NOT_FOUND, "missing character was found");
+            check(batch.getCharacter(found).getHealth() == 58, "Player42 has the wrong health");
+            check(client.getCharacter("Player99").getHealth() == 1, "single request after a batch");
+        }
+    }
+
+    /**
+     * A frame with a bad length or an unknown operation drops that client, and the server goes on
+     * serving the others
+     */
+    private static void malformedFrameClosesOnlyItsConnection(CharacterServer server) throws IOException {
+        try (CharacterClient bystander = new CharacterClient(server.getAddress())) {
+            check(bystander.getCharacter("Player1") != null, "bystander can not reach the server");
+
+            byte[] name = "Player1".getBytes(StandardCharsets.UTF_8);
+            ByteBuffer unknownOperation = ByteBuffer.allocate(4 + 2 + 3 + name.length);
+            unknownOperation.putInt(2 + 3 + name.length).putShort((short) 1).put((byte) 99);
+            Protocol.putString(unknownOperation, name);
+            byte[][] malformed = {{0, 0, 0, 1}, {(byte) 0x7f, 0, 0, 0}, unknownOperation.array()};
+            for (byte[] frame : malformed) {
+                try (Socket socket = connect(server)) {
+                    socket.getOutputStream().write(frame);
+                    check(socket.getInputStream().read() == -1, "server answered a malformed frame");
+                }
+            }
+            check(bystander.getCharacter("Player1") != null, "malformed frame broke another connection");
+        }
+    }
+
+    /**
+     * A client that sends without reading is answered until its answers pile up past the output limit.
+     * The server then stops reading from it, and catches up once the client reads again.
+     */
+    private static void slowReaderStopsTheServerReading(CharacterServer server) throws Exception {
+        int frames = 1000;
+        int frameRequests = 1000;
+        byte[] name = "Player1".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(4 + 2 + frameRequests * (3 + name.length));
+        frame.putInt(frame.capacity() - 4).putShort((short) frameRequests);
+        for (int request = 0; request < frameRequests; request++) {
+            frame.put(Protocol.GET);
+            Protocol.putString(frame, name);
+        }
+        long before = server.getRequestCount();
+
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(1 << 16);
+            socket.connect(server.getAddress());
+            socket.setSoTimeout(10_000);
+            OutputStream output = socket.getOutputStream();
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int sent = 0; sent < frames; sent++) {
+                        output.write(frame.array());
+                    }
+                    output.flush();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            writer.start();
+
+            // wait until the server stops making progress on this connection
+            long answered = -1;
+            while (server.getRequestCount() != answered) {
+                answered = server.getRequestCount();
+                Thread.sleep(200);
+            }
+            check(answered - before < (long) frames * frameRequests, "server kept reading from a client that "
+                    + "does not read its answers");
+            check(writer.isAlive(), "client sent everything while the server was not reading");
+
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            byte[] body = new byte[Protocol.MAX_FRAME_BYTES];
+            for (int received = 0; received < frames; received++) {
+                int length = input.readInt();
+                input.readFully(body, 0, length);
+                check(Short.toUnsignedInt(ByteBuffer.wrap(body).getShort()) == frameRequests, "short answer");
+                check(body[2] == ResponseStatus.OK.code(), "GET was not answered");
+            }
+            writer.join();
+            check(server.getRequestCount() - before == (long) frames * frameRequests, "requests were lost");
+        }
+    }
+
+    /**
+     * Opens a plain socket to the server that gives up reading after a few seconds
+     *
+     * @param server server to connect to
+     * @return the connected socket
+     * @throws IOException if the server can not be reached
+     */
+    private static Socket connect(CharacterServer server) throws IOException {
+        Socket socket = new Socket(server.getAddress().getAddress(), server.getAddress().getPort());
+        socket.setSoTimeout(10_000);
+        return socket;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}